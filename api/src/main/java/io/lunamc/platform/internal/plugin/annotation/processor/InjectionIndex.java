@@ -0,0 +1,188 @@
+/*
+ *  Copyright 2017 LunaMC.io
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package io.lunamc.platform.internal.plugin.annotation.processor;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Reader;
+import java.io.Writer;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.security.AccessController;
+import java.security.PrivilegedAction;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Enumeration;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Properties;
+import java.util.TreeMap;
+import java.util.WeakHashMap;
+import java.util.stream.Collectors;
+
+/**
+ * Maps injectable classes to the parameters of the constructor chosen for them. The index is generated by
+ * {@link LunaPluginAnnotationProcessor} at compile time, so the constructor and its service types can be looked up at
+ * runtime without scanning all constructors of the class.
+ */
+public class InjectionIndex {
+
+    public static final String DEFAULT_LOCATION = "LUNAMC-RESOURCES/injectionIndex.properties";
+    private static final InjectionIndex EMPTY = new InjectionIndex();
+    private static final Map<ClassLoader, InjectionIndex> CLASS_LOADER_INDICES = Collections.synchronizedMap(new WeakHashMap<>());
+
+    private final Map<String, List<Parameter>> entries = new TreeMap<>();
+
+    public void put(String className, List<Parameter> parameters) {
+        Objects.requireNonNull(className, "className must not be null");
+        Objects.requireNonNull(parameters, "parameters must not be null");
+        entries.put(className, Collections.unmodifiableList(new ArrayList<>(parameters)));
+    }
+
+    /**
+     * @param className The binary name of the class
+     * @return The constructor parameters, or {@code null} if the class is not indexed
+     */
+    public List<Parameter> get(String className) {
+        return entries.get(className);
+    }
+
+    public void clear() {
+        entries.clear();
+    }
+
+    public boolean isEmpty() {
+        return entries.isEmpty();
+    }
+
+    public void write(OutputStream out) throws IOException {
+        Writer writer = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8));
+        for (Map.Entry<String, List<Parameter>> entry : entries.entrySet()) {
+            writer.write(entry.getKey());
+            writer.write('=');
+            writer.write(entry.getValue().stream().map(Parameter::toString).collect(Collectors.joining(",")));
+            writer.write('\n');
+        }
+        writer.flush();
+    }
+
+    public static InjectionIndex load(InputStream in) throws IOException {
+        InjectionIndex index = new InjectionIndex();
+        index.read(new InputStreamReader(in, StandardCharsets.UTF_8));
+        return index;
+    }
+
+    /**
+     * Returns all indices visible to a class loader merged into one. The result is cached for the lifetime of the class
+     * loader.
+     */
+    public static InjectionIndex forClassLoader(ClassLoader classLoader) {
+        if (classLoader == null)
+            return EMPTY;
+        InjectionIndex index = CLASS_LOADER_INDICES.get(classLoader);
+        if (index == null) {
+            index = AccessController.doPrivileged((PrivilegedAction<InjectionIndex>) () -> loadAll(classLoader));
+            CLASS_LOADER_INDICES.put(classLoader, index);
+        }
+        return index;
+    }
+
+    private void read(Reader reader) throws IOException {
+        Properties properties = new Properties();
+        properties.load(reader);
+        for (String className : properties.stringPropertyNames()) {
+            String value = properties.getProperty(className).trim();
+            List<Parameter> parameters = new ArrayList<>();
+            if (!value.isEmpty()) {
+                for (String parameter : value.split(","))
+                    parameters.add(Parameter.parse(parameter));
+            }
+            entries.put(className, Collections.unmodifiableList(parameters));
+        }
+    }
+
+    private static InjectionIndex loadAll(ClassLoader classLoader) {
+        InjectionIndex index = new InjectionIndex();
+        try {
+            Enumeration<URL> resources = classLoader.getResources(DEFAULT_LOCATION);
+            while (resources.hasMoreElements()) {
+                try (InputStream in = resources.nextElement().openStream()) {
+                    index.read(new InputStreamReader(in, StandardCharsets.UTF_8));
+                }
+            }
+        } catch (IOException | IllegalArgumentException ignore) {
+            return EMPTY;
+        }
+        return index.isEmpty() ? EMPTY : index;
+    }
+
+    /**
+     * A constructor parameter written as {@code type<serviceType>}, e.g.
+     * {@code io.lunamc.platform.service.ServiceRegistration<com.example.Service>}.
+     */
+    public static final class Parameter {
+
+        private final String type;
+        private final String serviceType;
+
+        public Parameter(String type, String serviceType) {
+            this.type = Objects.requireNonNull(type, "type must not be null");
+            this.serviceType = Objects.requireNonNull(serviceType, "serviceType must not be null");
+        }
+
+        public String getType() {
+            return type;
+        }
+
+        public String getServiceType() {
+            return serviceType;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o)
+                return true;
+            if (!(o instanceof Parameter))
+                return false;
+            Parameter parameter = (Parameter) o;
+            return type.equals(parameter.type) && serviceType.equals(parameter.serviceType);
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * type.hashCode() + serviceType.hashCode();
+        }
+
+        @Override
+        public String toString() {
+            return type + '<' + serviceType + '>';
+        }
+
+        public static Parameter parse(String value) {
+            value = value.trim();
+            int start = value.indexOf('<');
+            if (start < 1 || !value.endsWith(">") || start == value.length() - 2)
+                throw new IllegalArgumentException("Invalid parameter: " + value);
+            return new Parameter(value.substring(0, start), value.substring(start + 1, value.length() - 1));
+        }
+    }
+}
@@ -19,7 +19,10 @@ package io.lunamc.platform.internal.plugin.annotation.processor;
 import com.github.zafarkhaja.semver.Version;
 import io.lunamc.platform.plugin.Plugin;
 import io.lunamc.platform.plugin.annotation.LunaPlugin;
+import io.lunamc.platform.service.ServiceRegistration;
+import io.lunamc.platform.service.di.PreferredConstructor;
 import io.lunamc.platform.utils.XMLUtils;
+import org.xml.sax.SAXException;
 
 import javax.annotation.processing.AbstractProcessor;
 import javax.annotation.processing.Messager;
@@ -30,15 +33,26 @@ import javax.annotation.processing.SupportedOptions;
 import javax.annotation.processing.SupportedSourceVersion;
 import javax.lang.model.SourceVersion;
 import javax.lang.model.element.Element;
+import javax.lang.model.element.ElementKind;
+import javax.lang.model.element.ExecutableElement;
+import javax.lang.model.element.Modifier;
 import javax.lang.model.element.Name;
+import javax.lang.model.element.NestingKind;
 import javax.lang.model.element.QualifiedNameable;
 import javax.lang.model.element.TypeElement;
+import javax.lang.model.element.VariableElement;
+import javax.lang.model.type.DeclaredType;
+import javax.lang.model.type.MirroredTypesException;
+import javax.lang.model.type.TypeKind;
 import javax.lang.model.type.TypeMirror;
+import javax.lang.model.util.ElementFilter;
+import javax.lang.model.util.Elements;
+import javax.lang.model.util.Types;
 import javax.tools.Diagnostic;
 import javax.tools.StandardLocation;
-import javax.xml.bind.JAXBContext;
-import javax.xml.bind.JAXBException;
-import javax.xml.bind.Marshaller;
+import javax.xml.transform.stream.StreamSource;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.OutputStream;
 import java.util.ArrayList;
@@ -47,23 +61,35 @@ import java.util.List;
 import java.util.Set;
 import java.util.stream.Collectors;
 
-@SupportedAnnotationTypes({ "io.lunamc.platform.plugin.annotation.LunaPlugin" })
+// Only invoked for plugin sources, but then all types of the compilation are inspected to build the injection index
+@SupportedAnnotationTypes({
+        "io.lunamc.platform.plugin.annotation.LunaPlugin",
+        "io.lunamc.platform.service.di.PreferredConstructor"
+})
 @SupportedSourceVersion(SourceVersion.RELEASE_8)
-@SupportedOptions({ LunaPluginAnnotationProcessor.OPTION_OUTPUT_FILE, LunaPluginAnnotationProcessor.OPTION_SKIP_XML_VALIDATION })
+@SupportedOptions({
+        LunaPluginAnnotationProcessor.OPTION_OUTPUT_FILE,
+        LunaPluginAnnotationProcessor.OPTION_SKIP_XML_VALIDATION,
+        LunaPluginAnnotationProcessor.OPTION_INJECTION_INDEX_OUTPUT_FILE
+})
 public class LunaPluginAnnotationProcessor extends AbstractProcessor {
 
     public static final String OPTION_OUTPUT_FILE = "io.lunamc.platform.preprocessor.providedPluginsOutputFile";
     public static final String OPTION_SKIP_XML_VALIDATION = "io.lunamc.platform.preprocessor.skipXmlValidation";
+    public static final String OPTION_INJECTION_INDEX_OUTPUT_FILE = "io.lunamc.platform.preprocessor.injectionIndexOutputFile";
     private static final String PLUGIN_CLASS = Plugin.class.getName();
+    private static final String SERVICE_REGISTRATION_CLASS = ServiceRegistration.class.getName();
     private static final String DEFAULT_OUTPUT_FILE = "LUNAMC-RESOURCES/providedPlugins.xml";
 
     private final List<ProvidedPlugins.ProvidedPlugin> providedPlugins = new ArrayList<>();
+    private final InjectionIndex injectionIndex = new InjectionIndex();
 
     @Override
     public synchronized void init(ProcessingEnvironment processingEnv) {
         super.init(processingEnv);
 
         providedPlugins.clear();
+        injectionIndex.clear();
     }
 
     @Override
@@ -73,9 +99,13 @@ public class LunaPluginAnnotationProcessor extends AbstractProcessor {
 
         if (roundEnv.processingOver()) {
             savePlugins();
+            saveInjectionIndex();
             return false;
         }
 
+        for (TypeElement typeElement : ElementFilter.typesIn(roundEnv.getRootElements()))
+            indexInjectionPoints(typeElement);
+
         Messager messager = processingEnv.getMessager();
         TypeMirror pluginTypeMirror = processingEnv.getElementUtils().getTypeElement(PLUGIN_CLASS).asType();
         for (Element element : roundEnv.getElementsAnnotatedWith(LunaPlugin.class)) {
@@ -101,6 +131,9 @@ public class LunaPluginAnnotationProcessor extends AbstractProcessor {
                             ))
                             .collect(Collectors.toList())
             );
+            List<String> providedServices = getProvidedServices(pluginAnnotation);
+            if (!providedServices.isEmpty())
+                providedPlugin.setProvidedServices(providedServices);
             messager.printMessage(Diagnostic.Kind.NOTE, "Plugin found: " + providedPlugin, element);
             providedPlugins.add(providedPlugin);
         }
@@ -109,20 +142,127 @@ public class LunaPluginAnnotationProcessor extends AbstractProcessor {
     }
 
     private void savePlugins() {
+        if (providedPlugins.isEmpty())
+            return;
         ProvidedPlugins result = new ProvidedPlugins();
         result.setProvidedPlugins(new ArrayList<>(providedPlugins));
-        try (OutputStream out = processingEnv.getFiler().createResource(StandardLocation.CLASS_OUTPUT, "", getOutputFile()).openOutputStream()) {
-            JAXBContext context = JAXBContext.newInstance(ProvidedPlugins.class);
-            Marshaller marshaller = context.createMarshaller();
-            marshaller.setProperty(Marshaller.JAXB_FORMATTED_OUTPUT, Boolean.TRUE);
+        ByteArrayOutputStream document = new ByteArrayOutputStream();
+        result.write(document);
+        try {
             if (!isSkipXmlValidation())
-                marshaller.setSchema(XMLUtils.createSchema("http://static.lunamc.io/xsd/provided-plugin-1.0.xsd"));
-            marshaller.marshal(result, out);
-        } catch (IOException | JAXBException e) {
+                XMLUtils.createSchema("http://static.lunamc.io/xsd/provided-plugin-1.0.xsd").newValidator().validate(new StreamSource(new ByteArrayInputStream(document.toByteArray())));
+            try (OutputStream out = processingEnv.getFiler().createResource(StandardLocation.CLASS_OUTPUT, "", getOutputFile()).openOutputStream()) {
+                document.writeTo(out);
+            }
+        } catch (IOException | SAXException e) {
             throw new RuntimeException(e);
         }
     }
 
+    private void indexInjectionPoints(TypeElement typeElement) {
+        if (typeElement.getKind() == ElementKind.CLASS &&
+                !typeElement.getModifiers().contains(Modifier.ABSTRACT) &&
+                (typeElement.getNestingKind() == NestingKind.TOP_LEVEL || typeElement.getModifiers().contains(Modifier.STATIC))) {
+            ExecutableElement constructor = findAppropriateInstantiableConstructor(typeElement);
+            if (constructor != null && (!constructor.getParameters().isEmpty() || typeElement.getAnnotation(LunaPlugin.class) != null)) {
+                List<InjectionIndex.Parameter> parameters = getInjectionParameters(constructor);
+                if (parameters != null)
+                    injectionIndex.put(processingEnv.getElementUtils().getBinaryName(typeElement).toString(), parameters);
+            }
+        }
+        for (TypeElement nestedType : ElementFilter.typesIn(typeElement.getEnclosedElements()))
+            indexInjectionPoints(nestedType);
+    }
+
+    // Mirrors ServiceRegistryUtils.findAppropriateInstantiableConstructor(Class)
+    private ExecutableElement findAppropriateInstantiableConstructor(TypeElement typeElement) {
+        List<ExecutableElement> constructors = new ArrayList<>();
+        for (ExecutableElement constructor : ElementFilter.constructorsIn(typeElement.getEnclosedElements())) {
+            if (constructor.getModifiers().contains(Modifier.PUBLIC))
+                constructors.add(constructor);
+        }
+
+        for (ExecutableElement constructor : constructors) {
+            if (constructor.getAnnotation(PreferredConstructor.class) != null) {
+                if (!constructor.getParameters().isEmpty() && !hasOnlyServiceConstructorParameters(constructor)) {
+                    processingEnv.getMessager().printMessage(Diagnostic.Kind.WARNING, "Constructor is marked by @PreferredConstructor but declares invalid parameters", constructor);
+                    return null;
+                }
+                return constructor;
+            }
+        }
+
+        ExecutableElement candidate = null;
+        for (ExecutableElement constructor : constructors) {
+            if (!hasOnlyServiceConstructorParameters(constructor))
+                continue;
+            if (candidate == null || constructor.getParameters().size() > candidate.getParameters().size())
+                candidate = constructor;
+        }
+        if (candidate != null)
+            return candidate;
+
+        for (ExecutableElement constructor : constructors) {
+            if (constructor.getParameters().isEmpty())
+                return constructor;
+        }
+        return null;
+    }
+
+    private boolean hasOnlyServiceConstructorParameters(ExecutableElement constructor) {
+        List<? extends VariableElement> parameters = constructor.getParameters();
+        if (parameters.isEmpty())
+            return false;
+        Types types = processingEnv.getTypeUtils();
+        TypeMirror serviceRegistrationType = types.erasure(processingEnv.getElementUtils().getTypeElement(SERVICE_REGISTRATION_CLASS).asType());
+        for (VariableElement parameter : parameters) {
+            if (!types.isAssignable(types.erasure(parameter.asType()), serviceRegistrationType))
+                return false;
+        }
+        return true;
+    }
+
+    /**
+     * @return The parameters of the constructor or {@code null} if any of its service types can not be resolved at
+     *         runtime. Such classes are left to reflective discovery which reports the error.
+     */
+    private List<InjectionIndex.Parameter> getInjectionParameters(ExecutableElement constructor) {
+        Elements elements = processingEnv.getElementUtils();
+        Types types = processingEnv.getTypeUtils();
+        List<InjectionIndex.Parameter> result = new ArrayList<>();
+        for (VariableElement parameter : constructor.getParameters()) {
+            TypeMirror parameterType = parameter.asType();
+            if (parameterType.getKind() != TypeKind.DECLARED)
+                return null;
+            List<? extends TypeMirror> typeArguments = ((DeclaredType) parameterType).getTypeArguments();
+            if (typeArguments.isEmpty() || typeArguments.get(0).getKind() != TypeKind.DECLARED)
+                return null;
+            DeclaredType serviceType = (DeclaredType) typeArguments.get(0);
+            if (!serviceType.getTypeArguments().isEmpty())
+                return null;
+            TypeElement parameterElement = (TypeElement) types.asElement(types.erasure(parameterType));
+            result.add(new InjectionIndex.Parameter(
+                    elements.getBinaryName(parameterElement).toString(),
+                    elements.getBinaryName((TypeElement) serviceType.asElement()).toString()
+            ));
+        }
+        return result;
+    }
+
+    private void saveInjectionIndex() {
+        if (injectionIndex.isEmpty())
+            return;
+        try (OutputStream out = processingEnv.getFiler().createResource(StandardLocation.CLASS_OUTPUT, "", getInjectionIndexOutputFile()).openOutputStream()) {
+            injectionIndex.write(out);
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    private String getInjectionIndexOutputFile() {
+        return processingEnv.getOptions().getOrDefault(OPTION_INJECTION_INDEX_OUTPUT_FILE, InjectionIndex.DEFAULT_LOCATION);
+    }
+
     private String getOutputFile() {
         return processingEnv.getOptions().getOrDefault(OPTION_OUTPUT_FILE, DEFAULT_OUTPUT_FILE);
     }
@@ -131,6 +271,21 @@ public class LunaPluginAnnotationProcessor extends AbstractProcessor {
         return Boolean.parseBoolean(processingEnv.getOptions().get(OPTION_SKIP_XML_VALIDATION));
     }
 
+    private List<String> getProvidedServices(LunaPlugin pluginAnnotation) {
+        List<? extends TypeMirror> typeMirrors;
+        try {
+            // Only succeeds if the classes are already compiled and loadable
+            return Arrays.stream(pluginAnnotation.providedServices()).map(Class::getName).collect(Collectors.toList());
+        } catch (MirroredTypesException e) {
+            typeMirrors = e.getTypeMirrors();
+        }
+        Elements elements = processingEnv.getElementUtils();
+        Types types = processingEnv.getTypeUtils();
+        return typeMirrors.stream()
+                .map(typeMirror -> elements.getBinaryName((TypeElement) types.asElement(typeMirror)).toString())
+                .collect(Collectors.toList());
+    }
+
     private static Name getName(Element element) {
         return element instanceof QualifiedNameable ? ((QualifiedNameable) element).getQualifiedName() : element.getSimpleName();
     }
@@ -18,24 +18,24 @@ package io.lunamc.platform.internal.plugin.annotation.processor;
 
 import com.github.zafarkhaja.semver.Version;
 import io.lunamc.platform.plugin.PluginDescriptor;
-
-import javax.xml.bind.annotation.XmlAccessType;
-import javax.xml.bind.annotation.XmlAccessorType;
-import javax.xml.bind.annotation.XmlAttribute;
-import javax.xml.bind.annotation.XmlElement;
-import javax.xml.bind.annotation.XmlElementWrapper;
-import javax.xml.bind.annotation.XmlRootElement;
+import io.lunamc.platform.utils.XMLUtils;
+
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import javax.xml.stream.XMLStreamWriter;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Objects;
 import java.util.Optional;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
 
-@XmlRootElement(namespace = "http://lunamc.io/provided-plugin/1.0", name = "providedPlugins")
-@XmlAccessorType(XmlAccessType.FIELD)
 public class ProvidedPlugins {
 
-    @XmlElement(namespace = "http://lunamc.io/provided-plugin/1.0", name = "providedPlugin")
+    public static final String NAMESPACE = "http://lunamc.io/provided-plugin/1.0";
+
     private List<ProvidedPlugin> providedPlugins;
 
     public List<ProvidedPlugin> getProvidedPlugins() {
@@ -55,21 +55,144 @@ public class ProvidedPlugins {
         return Optional.empty();
     }
 
-    @XmlAccessorType(XmlAccessType.FIELD)
+    /**
+     * Reads a provided-plugin-1.0 document. Unknown elements are skipped.
+     */
+    public static ProvidedPlugins load(InputStream input) {
+        try {
+            XMLStreamReader reader = XMLUtils.createStreamReader(input);
+            try {
+                XMLUtils.requireRootElement(reader, NAMESPACE, "providedPlugins");
+                ProvidedPlugins result = new ProvidedPlugins();
+                while (XMLUtils.nextChildElement(reader)) {
+                    if (XMLUtils.isElement(reader, NAMESPACE, "providedPlugin")) {
+                        if (result.providedPlugins == null)
+                            result.providedPlugins = new ArrayList<>();
+                        result.providedPlugins.add(readProvidedPlugin(reader));
+                    } else {
+                        XMLUtils.skipElement(reader);
+                    }
+                }
+                return result;
+            } finally {
+                reader.close();
+            }
+        } catch (XMLStreamException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    /**
+     * Writes this instance as a provided-plugin-1.0 document. Attributes and lists which are {@code null} are
+     * omitted.
+     */
+    public void write(OutputStream output) {
+        try {
+            XMLStreamWriter writer = XMLUtils.createStreamWriter(output);
+            try {
+                writer.writeStartDocument("UTF-8", "1.0");
+                XMLUtils.writeIndentation(writer, 0);
+                writer.setDefaultNamespace(NAMESPACE);
+                writer.writeStartElement(NAMESPACE, "providedPlugins");
+                writer.writeDefaultNamespace(NAMESPACE);
+                if (providedPlugins != null) {
+                    for (ProvidedPlugin providedPlugin : providedPlugins)
+                        writeProvidedPlugin(writer, providedPlugin);
+                }
+                XMLUtils.writeIndentation(writer, 0);
+                writer.writeEndElement();
+                writer.writeEndDocument();
+                writer.writeCharacters("\n");
+                writer.flush();
+            } finally {
+                writer.close();
+            }
+        } catch (XMLStreamException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    private static void writeProvidedPlugin(XMLStreamWriter writer, ProvidedPlugin providedPlugin) throws XMLStreamException {
+        List<PluginDependency> pluginDependencies = providedPlugin.getPluginDependencies();
+        List<String> providedServices = providedPlugin.getProvidedServices();
+        XMLUtils.writeIndentation(writer, 1);
+        if (pluginDependencies == null && providedServices == null)
+            writer.writeEmptyElement(NAMESPACE, "providedPlugin");
+        else
+            writer.writeStartElement(NAMESPACE, "providedPlugin");
+        XMLUtils.writeAttribute(writer, "id", providedPlugin.getId());
+        XMLUtils.writeAttribute(writer, "version", providedPlugin.getVersion());
+        XMLUtils.writeAttribute(writer, "impl", providedPlugin.getImpl());
+        if (pluginDependencies == null && providedServices == null)
+            return;
+
+        if (pluginDependencies != null) {
+            XMLUtils.writeIndentation(writer, 2);
+            writer.writeStartElement(NAMESPACE, "pluginDependencies");
+            for (PluginDependency pluginDependency : pluginDependencies) {
+                XMLUtils.writeIndentation(writer, 3);
+                writer.writeEmptyElement(NAMESPACE, "pluginDependency");
+                XMLUtils.writeAttribute(writer, "id", pluginDependency.getId());
+                XMLUtils.writeAttribute(writer, "versionExpression", pluginDependency.getVersionExpression());
+            }
+            XMLUtils.writeIndentation(writer, 2);
+            writer.writeEndElement();
+        }
+        if (providedServices != null) {
+            XMLUtils.writeIndentation(writer, 2);
+            writer.writeStartElement(NAMESPACE, "providedServices");
+            for (String providedService : providedServices) {
+                XMLUtils.writeIndentation(writer, 3);
+                writer.writeStartElement(NAMESPACE, "providedService");
+                writer.writeCharacters(providedService);
+                writer.writeEndElement();
+            }
+            XMLUtils.writeIndentation(writer, 2);
+            writer.writeEndElement();
+        }
+        XMLUtils.writeIndentation(writer, 1);
+        writer.writeEndElement();
+    }
+
+    private static ProvidedPlugin readProvidedPlugin(XMLStreamReader reader) throws XMLStreamException {
+        ProvidedPlugin providedPlugin = new ProvidedPlugin();
+        providedPlugin.setId(XMLUtils.getAttribute(reader, "id"));
+        providedPlugin.setVersion(XMLUtils.getAttribute(reader, "version"));
+        providedPlugin.setImpl(XMLUtils.getAttribute(reader, "impl"));
+        while (XMLUtils.nextChildElement(reader)) {
+            if (XMLUtils.isElement(reader, NAMESPACE, "providedServices")) {
+                List<String> providedServices = new ArrayList<>();
+                while (XMLUtils.nextChildElement(reader)) {
+                    if (XMLUtils.isElement(reader, NAMESPACE, "providedService"))
+                        providedServices.add(reader.getElementText().trim());
+                    else
+                        XMLUtils.skipElement(reader);
+                }
+                providedPlugin.setProvidedServices(providedServices);
+                continue;
+            }
+            if (XMLUtils.isElement(reader, NAMESPACE, "pluginDependencies")) {
+                List<PluginDependency> pluginDependencies = new ArrayList<>();
+                while (XMLUtils.nextChildElement(reader)) {
+                    if (XMLUtils.isElement(reader, NAMESPACE, "pluginDependency"))
+                        pluginDependencies.add(PluginDependency.create(XMLUtils.getAttribute(reader, "id"), XMLUtils.getAttribute(reader, "versionExpression")));
+                    XMLUtils.skipElement(reader);
+                }
+                providedPlugin.setPluginDependencies(pluginDependencies);
+            } else {
+                XMLUtils.skipElement(reader);
+            }
+        }
+        return providedPlugin;
+    }
+
     public static class ProvidedPlugin {
 
-        @XmlAttribute(name = "id")
         private String id;
-
-        @XmlAttribute(name = "version")
         private String version;
-
-        @XmlAttribute(name = "impl")
         private String impl;
-
-        @XmlElementWrapper(namespace = "http://lunamc.io/provided-plugin/1.0", name = "pluginDependencies")
-        @XmlElement(namespace = "http://lunamc.io/provided-plugin/1.0", name = "pluginDependency")
         private List<PluginDependency> pluginDependencies;
+        private List<String> providedServices;
 
         public String getId() {
             return id;
@@ -103,6 +226,14 @@ public class ProvidedPlugins {
             this.pluginDependencies = pluginDependencies;
         }
 
+        public List<String> getProvidedServices() {
+            return providedServices;
+        }
+
+        public void setProvidedServices(List<String> providedServices) {
+            this.providedServices = providedServices;
+        }
+
         public PluginDescriptor toPluginDescriptor() {
             List<PluginDependency> pluginDependencies = getPluginDependencies();
             return new PluginDescriptor(
@@ -120,7 +251,8 @@ public class ProvidedPlugins {
                     "{id=\"" + getId() +
                     "\", version=\"" + getVersion() +
                     "\", impl=\"" + getImpl() +
-                    "\", pluginDependencies=" + getPluginDependencies() + '}';
+                    "\", pluginDependencies=" + getPluginDependencies() +
+                    ", providedServices=" + getProvidedServices() + '}';
         }
 
         public static ProvidedPlugin create(String id, String version, String impl, List<PluginDependency> pluginDependencies) {
@@ -133,13 +265,9 @@ public class ProvidedPlugins {
         }
     }
 
-    @XmlAccessorType(XmlAccessType.FIELD)
     public static class PluginDependency {
 
-        @XmlAttribute(name = "id")
         private String id;
-
-        @XmlAttribute(name = "versionExpression")
         private String versionExpression;
 
         public String getId() {
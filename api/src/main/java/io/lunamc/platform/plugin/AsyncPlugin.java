@@ -0,0 +1,54 @@
+/*
+ *  Copyright 2017 LunaMC.io
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package io.lunamc.platform.plugin;
+
+import java.util.concurrent.CompletionStage;
+
+/**
+ * A plugin whose initialization and start may complete asynchronously, for example while a connection pool is warmed
+ * up. The plugin manager does not block a lifecycle thread while the returned stages are pending, plugins depending on
+ * this plugin however wait for their completion.
+ */
+public interface AsyncPlugin extends Plugin {
+
+    /**
+     * Asynchronous variant of {@link #initialize(PluginContext)}. The plugin is deactivated if the returned stage
+     * completes exceptionally.
+     *
+     * @param context The {@link PluginContext}
+     * @return The stage completing once the plugin is initialized
+     */
+    CompletionStage<Void> initializeAsync(PluginContext context);
+
+    /**
+     * Asynchronous variant of {@link #start(PluginContext)}.
+     *
+     * @param context The {@link PluginContext}
+     * @return The stage completing once the plugin is started
+     */
+    CompletionStage<Void> startAsync(PluginContext context);
+
+    @Override
+    default void initialize(PluginContext context) {
+        initializeAsync(context).toCompletableFuture().join();
+    }
+
+    @Override
+    default void start(PluginContext context) {
+        startAsync(context).toCompletableFuture().join();
+    }
+}
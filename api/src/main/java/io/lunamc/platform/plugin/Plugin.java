@@ -27,4 +27,14 @@ public interface Plugin {
     void initialize(PluginContext context);
 
     void start(PluginContext context);
+
+    /**
+     * Called when the plugin is unregistered at runtime, after all plugins depending on it are stopped. Everything
+     * which references classes of the plugin (threads, listeners, caches) has to be released, so its class loader can be
+     * collected.
+     *
+     * @param context The {@link PluginContext}
+     */
+    default void stop(PluginContext context) {
+    }
 }
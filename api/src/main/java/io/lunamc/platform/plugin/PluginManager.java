@@ -17,11 +17,15 @@
 package io.lunamc.platform.plugin;
 
 import io.lunamc.platform.service.ServiceRegistry;
+import io.lunamc.platform.utils.Snapshot;
 
 import java.io.File;
 import java.security.Permission;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 import java.util.function.Function;
 
@@ -31,6 +35,12 @@ public interface PluginManager {
 
     Collection<? extends PluginDescription> getPlugins();
 
+    /**
+     * Returns an immutable snapshot of all registered plugins. Its generation changes whenever plugins are registered
+     * or unregistered.
+     */
+    Snapshot<? extends PluginDescription> getPluginsSnapshot();
+
     Optional<? extends PluginDescription> getPlugin(String id);
 
     default void register(File file, String id) {
@@ -39,6 +49,40 @@ public interface PluginManager {
 
     void register(File file, String id, Function<ClassLoader, Collection<Permission>> permissionsSupplier);
 
+    /**
+     * Registers several plugins at once. The order of the requests does not matter since dependencies are resolved
+     * among all requested and already registered plugins.
+     *
+     * @return The failures of all requests which could not be registered
+     */
+    default Map<PluginRegistrationRequest, Throwable> registerAll(Collection<PluginRegistrationRequest> requests) {
+        Map<PluginRegistrationRequest, Throwable> failures = new LinkedHashMap<>();
+        for (PluginRegistrationRequest request : requests) {
+            try {
+                register(request.getFile(), request.getId(), request.getPermissionsSupplier());
+            } catch (Throwable throwable) {
+                failures.put(request, throwable);
+            }
+        }
+        return failures;
+    }
+
+    /**
+     * Stops and unregisters a plugin together with all plugins depending on it. Services they own are removed from
+     * the service registry and their class loaders are closed.
+     *
+     * @return The ids of all unregistered plugins, dependents first
+     */
+    List<String> unregister(String id);
+
+    /**
+     * Unregisters a plugin together with all plugins depending on it and registers, initializes and starts them again
+     * from their files.
+     *
+     * @return The failures of all plugins which could not be registered again
+     */
+    Map<PluginRegistrationRequest, Throwable> reload(String id);
+
     void initializePlugins();
 
     void startPlugins();
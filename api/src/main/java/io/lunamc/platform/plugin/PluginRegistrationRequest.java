@@ -0,0 +1,92 @@
+/*
+ *  Copyright 2017 LunaMC.io
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package io.lunamc.platform.plugin;
+
+import java.io.File;
+import java.security.Permission;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Map;
+import java.util.Objects;
+import java.util.OptionalLong;
+import java.util.function.Function;
+
+public final class PluginRegistrationRequest {
+
+    private final File file;
+    private final String id;
+    private final Function<ClassLoader, Collection<Permission>> permissionsSupplier;
+    private final boolean lazy;
+    private final Map<String, Long> lifecycleTimeouts;
+
+    public PluginRegistrationRequest(File file, String id) {
+        this(file, id, (c) -> Collections.emptySet());
+    }
+
+    public PluginRegistrationRequest(File file, String id, Function<ClassLoader, Collection<Permission>> permissionsSupplier) {
+        this(file, id, permissionsSupplier, false);
+    }
+
+    /**
+     * @param lazy Whether the plugin should only be activated once one of its provided services is resolved
+     */
+    public PluginRegistrationRequest(File file, String id, Function<ClassLoader, Collection<Permission>> permissionsSupplier, boolean lazy) {
+        this(file, id, permissionsSupplier, lazy, Collections.emptyMap());
+    }
+
+    /**
+     * @param lifecycleTimeouts Timeouts in milliseconds by lifecycle phase ({@code initialize}, {@code start},
+     *                          {@code stop}) overriding the global ones. A timeout of {@code 0} disables it
+     */
+    public PluginRegistrationRequest(File file, String id, Function<ClassLoader, Collection<Permission>> permissionsSupplier, boolean lazy, Map<String, Long> lifecycleTimeouts) {
+        this.file = file;
+        this.id = Objects.requireNonNull(id, "id must not be null");
+        this.permissionsSupplier = Objects.requireNonNull(permissionsSupplier, "permissionsSupplier must not be null");
+        this.lazy = lazy;
+        this.lifecycleTimeouts = Collections.unmodifiableMap(Objects.requireNonNull(lifecycleTimeouts, "lifecycleTimeouts must not be null"));
+    }
+
+    public File getFile() {
+        return file;
+    }
+
+    public String getId() {
+        return id;
+    }
+
+    public Function<ClassLoader, Collection<Permission>> getPermissionsSupplier() {
+        return permissionsSupplier;
+    }
+
+    public boolean isLazy() {
+        return lazy;
+    }
+
+    public Map<String, Long> getLifecycleTimeouts() {
+        return lifecycleTimeouts;
+    }
+
+    public OptionalLong getLifecycleTimeout(String phase) {
+        Long timeout = lifecycleTimeouts.get(phase);
+        return timeout != null ? OptionalLong.of(timeout) : OptionalLong.empty();
+    }
+
+    @Override
+    public String toString() {
+        return id + (file != null ? " from " + file : "") + (lazy ? " (lazy)" : "");
+    }
+}
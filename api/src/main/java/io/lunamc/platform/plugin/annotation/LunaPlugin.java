@@ -30,4 +30,10 @@ public @interface LunaPlugin {
     String version();
 
     LunaPluginDependency[] pluginDependencies() default {};
+
+    /**
+     * The services the plugin binds when it is initialized. A plugin registered lazily is only activated once one of
+     * them is resolved.
+     */
+    Class<?>[] providedServices() default {};
 }
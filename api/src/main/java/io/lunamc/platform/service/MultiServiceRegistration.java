@@ -0,0 +1,71 @@
+/*
+ *  Copyright 2017 LunaMC.io
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package io.lunamc.platform.service;
+
+import io.lunamc.platform.utils.Snapshot;
+
+import java.util.List;
+
+/**
+ * A service which is implemented by several instances at once, e.g. handlers contributed by different plugins. Each
+ * instance is bound with a rank, instances with a higher rank come first.
+ *
+ * @param <T> The type of the service
+ */
+public interface MultiServiceRegistration<T> {
+
+    Class<T> getService();
+
+    Binding<T> add(T instance, int rank);
+
+    default Binding<T> add(T instance) {
+        return add(instance, 0);
+    }
+
+    /**
+     * Returns an immutable snapshot of all bound instances ordered by rank. Instances of the same rank are ordered by
+     * the time they were bound. The snapshot is replaced whenever a binding is added or removed, so it may be iterated
+     * without locking. Its generation is the {@link #getVersion() version} of the registration.
+     * <p>
+     * Iterating the snapshot with {@link Snapshot#size()} and {@link Snapshot#get(int)} or with
+     * {@link Snapshot#forEach(java.util.function.Consumer)} does not allocate, so it is preferred on hot paths.
+     */
+    Snapshot<T> getSnapshot();
+
+    /**
+     * Returns the instances of the current {@link #getSnapshot() snapshot} as an immutable list. Iterating it with an
+     * iterator allocates one.
+     */
+    List<T> getInstances();
+
+    /**
+     * Returns a number which is increased whenever a binding is added or removed.
+     */
+    long getVersion();
+
+    interface Binding<T> {
+
+        T getInstance();
+
+        int getRank();
+
+        /**
+         * Removes the instance from the registration. Does nothing if it was already removed.
+         */
+        void remove();
+    }
+}
@@ -0,0 +1,33 @@
+/*
+ *  Copyright 2017 LunaMC.io
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package io.lunamc.platform.service;
+
+import java.util.Collection;
+
+/**
+ * Proof of access to a {@link ServiceRegistry}. A capability is handed out by
+ * {@link ServiceRegistry#acquireCapability()} after a single permission check. Lookups through the capability are not
+ * checked again, so it must not be passed to code which should not have access to the services.
+ */
+public interface ServiceCapability {
+
+    <T> ServiceRegistration<T> getService(Class<T> serviceClass);
+
+    <T> ServiceRegistration<T> getService(ServiceKey<T> serviceKey);
+
+    Collection<ServiceRegistration<?>> getServices();
+}
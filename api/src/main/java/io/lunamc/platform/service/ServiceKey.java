@@ -0,0 +1,108 @@
+/*
+ *  Copyright 2017 LunaMC.io
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package io.lunamc.platform.service;
+
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.util.BitSet;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * A handle of a service class. Every service class is assigned a dense index once, which allows a
+ * {@link ServiceRegistry} to resolve a {@link ServiceRegistration} by a plain array access instead of a map lookup.
+ * Once a key is collected, for example after the plugin defining the service class is unregistered, its index is
+ * assigned to the next new key, so the indices stay dense across plugin reloads.
+ *
+ * @param <T> The service type
+ */
+public final class ServiceKey<T> {
+
+    private static final Object INDICES_LOCK = new Object();
+    // Guarded by INDICES_LOCK
+    private static final BitSet USED_INDICES = new BitSet();
+    private static final ReferenceQueue<ServiceKey<?>> COLLECTED_KEYS = new ReferenceQueue<>();
+    // Keeps the references reachable until their keys are collected
+    private static final Set<IndexReference> INDEX_REFERENCES = ConcurrentHashMap.newKeySet();
+    private static final ClassValue<ServiceKey<?>> KEYS = new ClassValue<ServiceKey<?>>() {
+        @Override
+        protected ServiceKey<?> computeValue(Class<?> type) {
+            ServiceKey<?> key;
+            synchronized (INDICES_LOCK) {
+                releaseCollectedIndices();
+                int index = USED_INDICES.nextClearBit(0);
+                USED_INDICES.set(index);
+                key = new ServiceKey<>(type, index);
+            }
+            INDEX_REFERENCES.add(new IndexReference(key));
+            return key;
+        }
+    };
+
+    private final Class<T> service;
+    private final int index;
+
+    private ServiceKey(Class<T> service, int index) {
+        this.service = service;
+        this.index = index;
+    }
+
+    public Class<T> getService() {
+        return service;
+    }
+
+    public int getIndex() {
+        return index;
+    }
+
+    @Override
+    public String toString() {
+        return getClass().getName() + "{service=" + service.getName() + ", index=" + index + '}';
+    }
+
+    @SuppressWarnings("unchecked")
+    public static <T> ServiceKey<T> of(Class<T> service) {
+        return (ServiceKey<T>) KEYS.get(Objects.requireNonNull(service, "service must not be null"));
+    }
+
+    static boolean isUsed(int index) {
+        synchronized (INDICES_LOCK) {
+            releaseCollectedIndices();
+            return USED_INDICES.get(index);
+        }
+    }
+
+    // Must be called while holding INDICES_LOCK
+    private static void releaseCollectedIndices() {
+        IndexReference reference;
+        while ((reference = (IndexReference) COLLECTED_KEYS.poll()) != null) {
+            INDEX_REFERENCES.remove(reference);
+            USED_INDICES.clear(reference.index);
+        }
+    }
+
+    private static class IndexReference extends WeakReference<ServiceKey<?>> {
+
+        private final int index;
+
+        private IndexReference(ServiceKey<?> key) {
+            super(key, COLLECTED_KEYS);
+            this.index = key.index;
+        }
+    }
+}
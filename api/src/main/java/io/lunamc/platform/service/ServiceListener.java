@@ -0,0 +1,36 @@
+/*
+ *  Copyright 2017 LunaMC.io
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package io.lunamc.platform.service;
+
+/**
+ * Receives notifications about changes of the implementation bound to a service.
+ *
+ * @param <T> The type of the service
+ */
+@FunctionalInterface
+public interface ServiceListener<T> {
+
+    /**
+     * Invoked after the implementation of a service was replaced. Notifications of a registration are delivered one
+     * after another in the order of their versions. They may be delivered on any thread changing the registration, but
+     * never while a lock of the registry is held.
+     *
+     * @param serviceRegistration The changed registration
+     * @param version The version of the registration after the change
+     */
+    void serviceChanged(ServiceRegistration<? extends T> serviceRegistration, long version);
+}
@@ -16,10 +16,16 @@
 
 package io.lunamc.platform.service;
 
+import java.util.function.Supplier;
+
 public interface ServiceRegistration<T> {
 
     Class<T> getService();
 
+    default ServiceKey<T> getKey() {
+        return ServiceKey.of(getService());
+    }
+
     T getInstance();
 
     default T requireInstance() {
@@ -30,4 +36,28 @@ public interface ServiceRegistration<T> {
     }
 
     void setInstance(T instance);
+
+    /**
+     * Binds the service lazily. The supplier is invoked exactly once, on the first call of {@link #getInstance()} or
+     * {@link #requireInstance()}. Services which are never accessed are never built.
+     */
+    void setLazyInstance(Supplier<? extends T> supplier);
+
+    /**
+     * @return {@code false} if the service is bound lazily and the instance has not been built yet
+     */
+    default boolean isRealized() {
+        return true;
+    }
+
+    /**
+     * Returns a number which is increased whenever the implementation of the service is replaced by
+     * {@link #setInstance(Object)} or {@link #setLazyInstance(Supplier)}. State derived from the instance may be cached
+     * as long as the version does not change.
+     */
+    long getVersion();
+
+    void addListener(ServiceListener<? super T> listener);
+
+    void removeListener(ServiceListener<? super T> listener);
 }
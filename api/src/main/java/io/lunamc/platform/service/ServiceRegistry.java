@@ -16,34 +16,100 @@
 
 package io.lunamc.platform.service;
 
+import io.lunamc.platform.service.di.InjectionPoint;
+import io.lunamc.platform.service.di.ServiceFactory;
 import io.lunamc.platform.utils.ServiceRegistryUtils;
+import io.lunamc.platform.utils.Snapshot;
 
 import java.lang.reflect.Constructor;
 import java.lang.reflect.InvocationTargetException;
 import java.util.Collection;
+import java.util.function.Supplier;
 
 public interface ServiceRegistry {
 
     <T> ServiceRegistration<T> getService(Class<T> serviceClass);
 
+    default <T> ServiceRegistration<T> getService(ServiceKey<T> serviceKey) {
+        return getService(serviceKey.getService());
+    }
+
     Collection<ServiceRegistration<?>> getServices();
 
+    /**
+     * Returns an immutable snapshot of all service registrations. Its generation changes whenever registrations are
+     * added or removed, changes of bindings are reflected by {@link ServiceRegistration#getVersion()}.
+     */
+    Snapshot<ServiceRegistration<?>> getServicesSnapshot();
+
+    /**
+     * Returns the registration of a service which may be implemented by several instances. Multi-bound instances are
+     * independent of {@link #getService(Class)} and are not started or shut down by the registry.
+     */
+    <T> MultiServiceRegistration<T> getMultiService(Class<T> serviceClass);
+
+    ServiceCapability acquireCapability();
+
     default <T> ServiceRegistration<T> setService(Class<T> serviceClass, T serviceInstance) {
         ServiceRegistration<T> serviceRegistration = getService(serviceClass);
         serviceRegistration.setInstance(serviceInstance);
         return serviceRegistration;
     }
 
+    default <T> ServiceRegistration<T> setLazyService(Class<T> serviceClass, Supplier<? extends T> supplier) {
+        ServiceRegistration<T> serviceRegistration = getService(serviceClass);
+        serviceRegistration.setLazyInstance(supplier);
+        return serviceRegistration;
+    }
+
+    /**
+     * Binds a service to an implementation class which is instantiated on the first access of the service.
+     */
+    default <T> ServiceRegistration<T> setLazyService(Class<T> serviceClass, Class<? extends T> implementationClass) {
+        ServiceFactory<? extends T> factory = getFactory(implementationClass);
+        return setLazyService(serviceClass, () -> {
+            try {
+                return factory.newInstance();
+            } catch (InstantiationException | IllegalAccessException | InvocationTargetException e) {
+                throw new IllegalStateException("Failed to instantiate " + implementationClass.getName(), e);
+            }
+        });
+    }
+
     default <T> T instantiate(Class<T> aClass) throws InstantiationException, IllegalAccessException, IllegalArgumentException, InvocationTargetException {
-        Constructor<T> constructor = ServiceRegistryUtils.findAppropriateInstantiableConstructor(aClass);
-        if (constructor == null)
+        InjectionPoint<T> injectionPoint = ServiceRegistryUtils.findInjectionPoint(aClass);
+        if (injectionPoint == null)
             throw new UnsupportedOperationException("No appropriate constructor found for " + aClass.getName() + '.');
-        return instantiate(constructor);
+        return instantiate(injectionPoint.getConstructor());
     }
 
     <T> T instantiate(Constructor<T> constructor) throws InstantiationException, IllegalAccessException, IllegalArgumentException, InvocationTargetException;
 
+    default <T> ServiceFactory<T> getFactory(Class<T> aClass) {
+        InjectionPoint<T> injectionPoint = ServiceRegistryUtils.findInjectionPoint(aClass);
+        if (injectionPoint == null)
+            throw new UnsupportedOperationException("No appropriate constructor found for " + aClass.getName() + '.');
+        return getFactory(injectionPoint.getConstructor());
+    }
+
+    default <T> ServiceFactory<T> getFactory(Constructor<T> constructor) {
+        return () -> instantiate(constructor);
+    }
+
     void start();
 
     void shutdown();
+
+    /**
+     * Starts the realized services implemented by classes of a class loader, if the registry is already started. Used
+     * for services bound by plugins which are registered at runtime.
+     */
+    void start(ClassLoader classLoader);
+
+    /**
+     * Removes everything a class loader contributed: registrations of services it defines, bindings to its
+     * implementations, multi-service bindings and listeners. Services which are removed are shut down first if the
+     * registry is started.
+     */
+    void unregister(ClassLoader classLoader);
 }
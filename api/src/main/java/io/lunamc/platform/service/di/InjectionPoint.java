@@ -0,0 +1,53 @@
+/*
+ *  Copyright 2017 LunaMC.io
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package io.lunamc.platform.service.di;
+
+import java.lang.reflect.Constructor;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * The constructor used to instantiate a class together with the service types of its
+ * {@link io.lunamc.platform.service.ServiceRegistration} parameters.
+ *
+ * @param <T> The type of the class
+ */
+public final class InjectionPoint<T> {
+
+    private final Constructor<T> constructor;
+    private final List<Class<?>> serviceTypes;
+
+    public InjectionPoint(Constructor<T> constructor, Class<?>[] serviceTypes) {
+        this.constructor = Objects.requireNonNull(constructor, "constructor must not be null");
+        this.serviceTypes = Collections.unmodifiableList(Arrays.asList(serviceTypes.clone()));
+    }
+
+    public Constructor<T> getConstructor() {
+        return constructor;
+    }
+
+    public List<Class<?>> getServiceTypes() {
+        return serviceTypes;
+    }
+
+    @Override
+    public String toString() {
+        return getClass().getName() + "{constructor=" + constructor + ", serviceTypes=" + serviceTypes + '}';
+    }
+}
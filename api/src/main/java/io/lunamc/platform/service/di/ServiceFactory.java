@@ -0,0 +1,31 @@
+/*
+ *  Copyright 2017 LunaMC.io
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package io.lunamc.platform.service.di;
+
+import java.lang.reflect.InvocationTargetException;
+
+/**
+ * Creates instances of a class whose constructor parameters are already resolved, see
+ * {@link io.lunamc.platform.service.ServiceRegistry#getFactory(java.lang.reflect.Constructor)}.
+ *
+ * @param <T> The type of the created instances
+ */
+@FunctionalInterface
+public interface ServiceFactory<T> {
+
+    T newInstance() throws InstantiationException, IllegalAccessException, IllegalArgumentException, InvocationTargetException;
+}
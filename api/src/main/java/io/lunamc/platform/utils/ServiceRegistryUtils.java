@@ -16,13 +16,28 @@
 
 package io.lunamc.platform.utils;
 
+import io.lunamc.platform.internal.plugin.annotation.processor.InjectionIndex;
 import io.lunamc.platform.service.ServiceRegistration;
+import io.lunamc.platform.service.di.InjectionPoint;
 import io.lunamc.platform.service.di.PreferredConstructor;
 
 import java.lang.reflect.Constructor;
+import java.lang.reflect.ParameterizedType;
+import java.lang.reflect.Type;
+import java.security.AccessController;
+import java.security.PrivilegedAction;
+import java.util.List;
+import java.util.Optional;
 
 public class ServiceRegistryUtils {
 
+    private static final ClassValue<Optional<InjectionPoint<?>>> INJECTION_POINTS = new ClassValue<Optional<InjectionPoint<?>>>() {
+        @Override
+        protected Optional<InjectionPoint<?>> computeValue(Class<?> type) {
+            return Optional.ofNullable(createInjectionPoint(type));
+        }
+    };
+
     private ServiceRegistryUtils() {
         throw new UnsupportedOperationException(getClass().getSimpleName() + " is a utility class and should not be constructed");
     }
@@ -63,6 +78,66 @@ public class ServiceRegistryUtils {
         }
     }
 
+    /**
+     * Finds the constructor used to instantiate a class and the service types of its parameters. The
+     * {@link InjectionIndex} generated at compile time is consulted first, classes which are not indexed are inspected
+     * reflectively. The result is cached per class.
+     *
+     * @return The injection point or {@code null} if the class declares no appropriate constructor
+     */
+    @SuppressWarnings("unchecked")
+    public static <T> InjectionPoint<T> findInjectionPoint(Class<T> aClass) {
+        return (InjectionPoint<T>) INJECTION_POINTS.get(aClass).orElse(null);
+    }
+
+    public static Class<?>[] getServiceTypes(Constructor<?> constructor) {
+        Type[] parameterTypes = constructor.getGenericParameterTypes();
+        Class<?>[] result = new Class[parameterTypes.length];
+        for (int i = 0; i < parameterTypes.length; i++) {
+            Type parameterType = parameterTypes[i];
+            if (!(parameterType instanceof ParameterizedType))
+                throw new IllegalArgumentException("Invalid parameter #" + i + ": " + parameterType);
+            Type[] typeArguments = ((ParameterizedType) parameterType).getActualTypeArguments();
+            if (typeArguments.length < 1)
+                throw new IllegalArgumentException("Invalid parameter #" + i + ": " + parameterType);
+            Type typeArgument = typeArguments[0];
+            if (!(typeArgument instanceof Class))
+                throw new IllegalArgumentException("Invalid parameter #" + i + ": " + parameterType);
+            result[i] = (Class<?>) typeArgument;
+        }
+        return result;
+    }
+
+    private static <T> InjectionPoint<T> createInjectionPoint(Class<T> aClass) {
+        InjectionPoint<T> injectionPoint = findIndexedInjectionPoint(aClass);
+        if (injectionPoint != null)
+            return injectionPoint;
+
+        Constructor<T> constructor = findAppropriateInstantiableConstructor(aClass);
+        return constructor != null ? new InjectionPoint<>(constructor, getServiceTypes(constructor)) : null;
+    }
+
+    private static <T> InjectionPoint<T> findIndexedInjectionPoint(Class<T> aClass) {
+        ClassLoader classLoader = AccessController.doPrivileged((PrivilegedAction<ClassLoader>) aClass::getClassLoader);
+        List<InjectionIndex.Parameter> parameters = InjectionIndex.forClassLoader(classLoader).get(aClass.getName());
+        if (parameters == null)
+            return null;
+
+        Class<?>[] parameterTypes = new Class[parameters.size()];
+        Class<?>[] serviceTypes = new Class[parameters.size()];
+        try {
+            for (int i = 0; i < parameterTypes.length; i++) {
+                InjectionIndex.Parameter parameter = parameters.get(i);
+                parameterTypes[i] = Class.forName(parameter.getType(), false, classLoader);
+                serviceTypes[i] = Class.forName(parameter.getServiceType(), false, classLoader);
+            }
+            return new InjectionPoint<>(aClass.getConstructor(parameterTypes), serviceTypes);
+        } catch (ClassNotFoundException | NoSuchMethodException | LinkageError ignore) {
+            // Outdated index, fall back to reflective discovery
+            return null;
+        }
+    }
+
     private static boolean hasOnlyServiceConstructorParameters(Constructor<?> constructor) {
         Class<?>[] parameterTypes = constructor.getParameterTypes();
         if (parameterTypes.length < 1)
@@ -0,0 +1,98 @@
+/*
+ *  Copyright 2017 LunaMC.io
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package io.lunamc.platform.utils;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * An immutable view of a collection at one point in time. Its generation increases with every change of the
+ * collection, so callers can cheaply check whether anything changed since they last looked.
+ * <p>
+ * The elements are kept in an array. Iterating them with {@link #size()} and {@link #get(int)} or with
+ * {@link #forEach(Consumer)} does not allocate, unlike iterating the list returned by {@link #getElements()}.
+ *
+ * @param <T> The type of the elements
+ */
+public final class Snapshot<T> {
+
+    private static final Snapshot<?> EMPTY = new Snapshot<>(0, new Object[0]);
+
+    private final long generation;
+    private final Object[] elements;
+    private final List<T> elementsView;
+
+    @SuppressWarnings("unchecked")
+    private Snapshot(long generation, Object[] elements) {
+        this.generation = generation;
+        this.elements = elements;
+        this.elementsView = Collections.unmodifiableList((List<T>) Arrays.asList(elements));
+    }
+
+    @SuppressWarnings("unchecked")
+    public static <T> Snapshot<T> empty() {
+        return (Snapshot<T>) EMPTY;
+    }
+
+    public long getGeneration() {
+        return generation;
+    }
+
+    public List<T> getElements() {
+        return elementsView;
+    }
+
+    public int size() {
+        return elements.length;
+    }
+
+    @SuppressWarnings("unchecked")
+    public T get(int index) {
+        return (T) elements[index];
+    }
+
+    @SuppressWarnings("unchecked")
+    public void forEach(Consumer<? super T> action) {
+        for (Object element : elements)
+            action.accept((T) element);
+    }
+
+    /**
+     * @return Whether this snapshot was taken after a snapshot of the given generation
+     */
+    public boolean isNewerThan(long generation) {
+        return this.generation > generation;
+    }
+
+    /**
+     * Creates the snapshot succeeding this one.
+     *
+     * @param elements The elements of the new snapshot, which are copied
+     * @return The new snapshot
+     */
+    public Snapshot<T> next(Collection<? extends T> elements) {
+        return new Snapshot<>(generation + 1, elements.toArray());
+    }
+
+    @Override
+    public String toString() {
+        return "Snapshot{generation=" + generation + ", elements=" + elementsView + '}';
+    }
+}
@@ -19,13 +19,31 @@ package io.lunamc.platform.utils;
 import org.xml.sax.SAXException;
 
 import javax.xml.XMLConstants;
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLOutputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import javax.xml.stream.XMLStreamWriter;
 import javax.xml.validation.Schema;
 import javax.xml.validation.SchemaFactory;
+import java.io.InputStream;
+import java.io.OutputStream;
 import java.net.MalformedURLException;
 import java.net.URL;
 
 public class XMLUtils {
 
+    private static final XMLInputFactory INPUT_FACTORY;
+    private static final XMLOutputFactory OUTPUT_FACTORY = XMLOutputFactory.newInstance();
+
+    static {
+        INPUT_FACTORY = XMLInputFactory.newInstance();
+        INPUT_FACTORY.setProperty(XMLInputFactory.SUPPORT_DTD, Boolean.FALSE);
+        INPUT_FACTORY.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, Boolean.FALSE);
+        INPUT_FACTORY.setProperty(XMLInputFactory.IS_NAMESPACE_AWARE, Boolean.TRUE);
+    }
+
     private XMLUtils() {
         throw new UnsupportedOperationException(getClass().getSimpleName() + " is a utility class and should not be constructed");
     }
@@ -38,4 +56,81 @@ public class XMLUtils {
             throw new RuntimeException(e);
         }
     }
+
+    public static XMLStreamReader createStreamReader(InputStream input) throws XMLStreamException {
+        return INPUT_FACTORY.createXMLStreamReader(input);
+    }
+
+    public static XMLStreamWriter createStreamWriter(OutputStream output) throws XMLStreamException {
+        return OUTPUT_FACTORY.createXMLStreamWriter(output, "UTF-8");
+    }
+
+    /**
+     * Writes a line break followed by the indentation of an element at the given depth.
+     */
+    public static void writeIndentation(XMLStreamWriter writer, int depth) throws XMLStreamException {
+        StringBuilder builder = new StringBuilder("\n");
+        for (int i = 0; i < depth; i++)
+            builder.append("    ");
+        writer.writeCharacters(builder.toString());
+    }
+
+    /**
+     * Writes an attribute unless its value is {@code null}.
+     */
+    public static void writeAttribute(XMLStreamWriter writer, String localName, String value) throws XMLStreamException {
+        if (value != null)
+            writer.writeAttribute(localName, value);
+    }
+
+    /**
+     * Advances the reader to the root element and verifies its namespace and local name.
+     */
+    public static void requireRootElement(XMLStreamReader reader, String namespace, String localName) throws XMLStreamException {
+        if (reader.nextTag() != XMLStreamConstants.START_ELEMENT || !isElement(reader, namespace, localName))
+            throw new XMLStreamException("Unexpected root element " + reader.getName() + ", expected {" + namespace + '}' + localName, reader.getLocation());
+    }
+
+    /**
+     * Advances the reader to the next child element of the current element. Returns {@code false} if the reader is
+     * positioned on the end tag of the current element instead.
+     */
+    public static boolean nextChildElement(XMLStreamReader reader) throws XMLStreamException {
+        while (reader.hasNext()) {
+            switch (reader.next()) {
+                case XMLStreamConstants.START_ELEMENT:
+                    return true;
+                case XMLStreamConstants.END_ELEMENT:
+                    return false;
+            }
+        }
+        throw new XMLStreamException("Unexpected end of document", reader.getLocation());
+    }
+
+    /**
+     * Skips the current element including all of its children. The reader is positioned on its end tag afterwards.
+     */
+    public static void skipElement(XMLStreamReader reader) throws XMLStreamException {
+        int depth = 1;
+        while (depth > 0) {
+            switch (reader.next()) {
+                case XMLStreamConstants.START_ELEMENT:
+                    depth++;
+                    break;
+                case XMLStreamConstants.END_ELEMENT:
+                    depth--;
+                    break;
+                case XMLStreamConstants.END_DOCUMENT:
+                    throw new XMLStreamException("Unexpected end of document", reader.getLocation());
+            }
+        }
+    }
+
+    public static boolean isElement(XMLStreamReader reader, String namespace, String localName) {
+        return localName.equals(reader.getLocalName()) && namespace.equals(reader.getNamespaceURI());
+    }
+
+    public static String getAttribute(XMLStreamReader reader, String localName) {
+        return reader.getAttributeValue(null, localName);
+    }
 }
@@ -0,0 +1,59 @@
+/*
+ *  Copyright 2017 LunaMC.io
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package io.lunamc.platform.internal.plugin.annotation.processor;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Collections;
+
+public class InjectionIndexTest {
+
+    private static final String SERVICE_REGISTRATION = "io.lunamc.platform.service.ServiceRegistration";
+
+    @Test
+    public void testWriteAndLoad() throws Throwable {
+        InjectionIndex index = new InjectionIndex();
+        index.put("com.example.B", Arrays.asList(
+                new InjectionIndex.Parameter(SERVICE_REGISTRATION, "com.example.Service1"),
+                new InjectionIndex.Parameter(SERVICE_REGISTRATION, "com.example.Outer$Service2")
+        ));
+        index.put("com.example.A", Collections.emptyList());
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        index.write(out);
+        Assert.assertEquals(
+                "com.example.A=\n" +
+                "com.example.B=" + SERVICE_REGISTRATION + "<com.example.Service1>," + SERVICE_REGISTRATION + "<com.example.Outer$Service2>\n",
+                new String(out.toByteArray(), StandardCharsets.UTF_8)
+        );
+
+        InjectionIndex loaded = InjectionIndex.load(new ByteArrayInputStream(out.toByteArray()));
+        Assert.assertEquals(index.get("com.example.A"), loaded.get("com.example.A"));
+        Assert.assertEquals(index.get("com.example.B"), loaded.get("com.example.B"));
+        Assert.assertNull(loaded.get("com.example.C"));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testParseInvalidParameter() {
+        InjectionIndex.Parameter.parse(SERVICE_REGISTRATION);
+    }
+}
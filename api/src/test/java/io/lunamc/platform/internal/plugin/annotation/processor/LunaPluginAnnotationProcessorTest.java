@@ -0,0 +1,140 @@
+/*
+ *  Copyright 2017 LunaMC.io
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package io.lunamc.platform.internal.plugin.annotation.processor;
+
+import io.lunamc.platform.service.di.InjectionPoint;
+import io.lunamc.platform.utils.ServiceRegistryUtils;
+import org.junit.Assert;
+import org.junit.Assume;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import javax.tools.DiagnosticCollector;
+import javax.tools.JavaCompiler;
+import javax.tools.JavaFileObject;
+import javax.tools.SimpleJavaFileObject;
+import javax.tools.ToolProvider;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.InputStream;
+import java.net.URI;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+public class LunaPluginAnnotationProcessorTest {
+
+    // Not the default location, so the runtime lookup below does not consult the generated index
+    private static final String INDEX_FILE = "generatedInjectionIndex.properties";
+    private static final String[] INDEXED_CLASSES = {
+            "com.example.TestPlugin",
+            "com.example.Preferred",
+            "com.example.MostParameters",
+            "com.example.Outer$Nested"
+    };
+
+    @Rule
+    public final TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    @Test
+    public void testInjectionIndexMatchesRuntimeLookup() throws Throwable {
+        JavaCompiler compiler = ToolProvider.getSystemJavaCompiler();
+        Assume.assumeNotNull(compiler);
+
+        File output = temporaryFolder.newFolder("classes");
+        List<JavaFileObject> sources = Arrays.asList(
+                source("com.example.Service1", "public interface Service1 {}"),
+                source("com.example.Service2", "public interface Service2 {}"),
+                source("com.example.TestPlugin",
+                        "@io.lunamc.platform.plugin.annotation.LunaPlugin(id = \"test\", version = \"1.0.0\")\n" +
+                        "public class TestPlugin implements io.lunamc.platform.plugin.Plugin {\n" +
+                        "    public void initialize(io.lunamc.platform.plugin.PluginContext context) {}\n" +
+                        "    public void start(io.lunamc.platform.plugin.PluginContext context) {}\n" +
+                        "}"),
+                source("com.example.Preferred",
+                        "public class Preferred {\n" +
+                        "    @io.lunamc.platform.service.di.PreferredConstructor\n" +
+                        "    public Preferred(io.lunamc.platform.service.ServiceRegistration<Service1> service1) {}\n" +
+                        "    public Preferred(io.lunamc.platform.service.ServiceRegistration<Service1> service1, io.lunamc.platform.service.ServiceRegistration<Service2> service2) {}\n" +
+                        "}"),
+                source("com.example.MostParameters",
+                        "public class MostParameters {\n" +
+                        "    public MostParameters(io.lunamc.platform.service.ServiceRegistration<Service1> service1) {}\n" +
+                        "    public MostParameters(io.lunamc.platform.service.ServiceRegistration<Service1> service1, io.lunamc.platform.service.ServiceRegistration<Service2> service2) {}\n" +
+                        "    public MostParameters(String invalid, io.lunamc.platform.service.ServiceRegistration<Service1> service1, io.lunamc.platform.service.ServiceRegistration<Service2> service2) {}\n" +
+                        "}"),
+                source("com.example.Outer",
+                        "public class Outer {\n" +
+                        "    public static class Nested {\n" +
+                        "        public Nested(io.lunamc.platform.service.ServiceRegistration<Service2> service2) {}\n" +
+                        "    }\n" +
+                        "    public class Inner {\n" +
+                        "        public Inner(io.lunamc.platform.service.ServiceRegistration<Service2> service2) {}\n" +
+                        "    }\n" +
+                        "}"),
+                source("com.example.NoServices", "public class NoServices {}")
+        );
+        List<String> options = Arrays.asList(
+                "-d", output.getPath(),
+                "-classpath", System.getProperty("java.class.path"),
+                "-processor", LunaPluginAnnotationProcessor.class.getName(),
+                "-A" + LunaPluginAnnotationProcessor.OPTION_SKIP_XML_VALIDATION + "=true",
+                "-A" + LunaPluginAnnotationProcessor.OPTION_INJECTION_INDEX_OUTPUT_FILE + '=' + INDEX_FILE
+        );
+        DiagnosticCollector<JavaFileObject> diagnostics = new DiagnosticCollector<>();
+        Assert.assertTrue(diagnostics.getDiagnostics().toString(), compiler.getTask(null, null, diagnostics, options, null, sources).call());
+
+        InjectionIndex index;
+        try (InputStream in = new FileInputStream(new File(output, INDEX_FILE))) {
+            index = InjectionIndex.load(in);
+        }
+        Assert.assertNull(index.get("com.example.Outer$Inner"));
+        Assert.assertNull(index.get("com.example.NoServices"));
+
+        try (URLClassLoader classLoader = new URLClassLoader(new URL[] { output.toURI().toURL() }, getClass().getClassLoader())) {
+            for (String className : INDEXED_CLASSES) {
+                List<InjectionIndex.Parameter> parameters = index.get(className);
+                Assert.assertNotNull(className, parameters);
+
+                InjectionPoint<?> injectionPoint = ServiceRegistryUtils.findInjectionPoint(classLoader.loadClass(className));
+                List<InjectionIndex.Parameter> expected = new ArrayList<>();
+                Class<?>[] parameterTypes = injectionPoint.getConstructor().getParameterTypes();
+                for (int i = 0; i < parameterTypes.length; i++)
+                    expected.add(new InjectionIndex.Parameter(parameterTypes[i].getName(), injectionPoint.getServiceTypes().get(i).getName()));
+                Assert.assertEquals(className, expected, parameters);
+            }
+        }
+        Assert.assertEquals(1, index.get("com.example.Preferred").size());
+        Assert.assertEquals(2, index.get("com.example.MostParameters").size());
+        Assert.assertTrue(index.get("com.example.TestPlugin").isEmpty());
+    }
+
+    private static JavaFileObject source(String className, String body) {
+        int index = className.lastIndexOf('.');
+        String content = "package " + className.substring(0, index) + ";\n" + body;
+        URI uri = URI.create("string:///" + className.replace('.', '/') + JavaFileObject.Kind.SOURCE.extension);
+        return new SimpleJavaFileObject(uri, JavaFileObject.Kind.SOURCE) {
+            @Override
+            public CharSequence getCharContent(boolean ignoreEncodingErrors) {
+                return content;
+            }
+        };
+    }
+}
@@ -0,0 +1,139 @@
+/*
+ *  Copyright 2017 LunaMC.io
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package io.lunamc.platform.internal.plugin.annotation.processor;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import javax.xml.XMLConstants;
+import javax.xml.transform.stream.StreamSource;
+import javax.xml.validation.Schema;
+import javax.xml.validation.SchemaFactory;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+public class ProvidedPluginsTest {
+
+    @Test
+    public void testWriteAndLoad() throws Throwable {
+        ProvidedPlugins providedPlugins = createProvidedPlugins();
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        providedPlugins.write(out);
+
+        ProvidedPlugins loaded = ProvidedPlugins.load(new ByteArrayInputStream(out.toByteArray()));
+        Assert.assertEquals(providedPlugins.getProvidedPlugins().size(), loaded.getProvidedPlugins().size());
+        for (int i = 0; i < providedPlugins.getProvidedPlugins().size(); i++) {
+            ProvidedPlugins.ProvidedPlugin expectedPlugin = providedPlugins.getProvidedPlugins().get(i);
+            ProvidedPlugins.ProvidedPlugin actualPlugin = loaded.getProvidedPlugins().get(i);
+            Assert.assertEquals(expectedPlugin.getId(), actualPlugin.getId());
+            Assert.assertEquals(expectedPlugin.getVersion(), actualPlugin.getVersion());
+            Assert.assertEquals(expectedPlugin.getImpl(), actualPlugin.getImpl());
+            Assert.assertEquals(expectedPlugin.getProvidedServices(), actualPlugin.getProvidedServices());
+            assertDependenciesEqual(expectedPlugin.getPluginDependencies(), actualPlugin.getPluginDependencies());
+        }
+    }
+
+    @Test
+    public void testWriteMatchesSchema() throws Throwable {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        createProvidedPlugins().write(out);
+
+        // Relative to the module directory the tests run in
+        Schema schema = SchemaFactory.newInstance(XMLConstants.W3C_XML_SCHEMA_NS_URI).newSchema(new File("src/resources/xsd/provided-plugin-1.0.xsd"));
+        schema.newValidator().validate(new StreamSource(new ByteArrayInputStream(out.toByteArray())));
+    }
+
+    @Test
+    public void testWriteFormatted() {
+        ProvidedPlugins providedPlugins = new ProvidedPlugins();
+        providedPlugins.setProvidedPlugins(Arrays.asList(
+                ProvidedPlugins.ProvidedPlugin.create("a", "1.0.0", "com.example.A", null),
+                ProvidedPlugins.ProvidedPlugin.create("b", "1.0.0", "com.example.B", Collections.singletonList(ProvidedPlugins.PluginDependency.create("a", "*")))
+        ));
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        providedPlugins.write(out);
+        Assert.assertEquals(
+                "<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n" +
+                "<providedPlugins xmlns=\"" + ProvidedPlugins.NAMESPACE + "\">\n" +
+                "    <providedPlugin id=\"a\" version=\"1.0.0\" impl=\"com.example.A\"/>\n" +
+                "    <providedPlugin id=\"b\" version=\"1.0.0\" impl=\"com.example.B\">\n" +
+                "        <pluginDependencies>\n" +
+                "            <pluginDependency id=\"a\" versionExpression=\"*\"/>\n" +
+                "        </pluginDependencies>\n" +
+                "    </providedPlugin>\n" +
+                "</providedPlugins>\n",
+                new String(out.toByteArray(), StandardCharsets.UTF_8)
+        );
+    }
+
+    @Test
+    public void testLoadSkipsUnknownElements() {
+        String document = "<?xml version=\"1.0\"?>\n" +
+                "<providedPlugins xmlns=\"" + ProvidedPlugins.NAMESPACE + "\">\n" +
+                "    <!-- comment -->\n" +
+                "    <unknown><providedPlugin id=\"ignored\" /></unknown>\n" +
+                "    <providedPlugin id=\"a\" version=\"1.0.0\" impl=\"com.example.A\">\n" +
+                "        <pluginDependencies><pluginDependency id=\"b\" versionExpression=\"*\" /></pluginDependencies>\n" +
+                "    </providedPlugin>\n" +
+                "</providedPlugins>";
+        ProvidedPlugins providedPlugins = ProvidedPlugins.load(new ByteArrayInputStream(document.getBytes(StandardCharsets.UTF_8)));
+        Assert.assertEquals(1, providedPlugins.getProvidedPlugins().size());
+        ProvidedPlugins.ProvidedPlugin providedPlugin = providedPlugins.getProvidedPlugin("a").orElseThrow(AssertionError::new);
+        Assert.assertEquals("com.example.A", providedPlugin.getImpl());
+        Assert.assertEquals(1, providedPlugin.getPluginDependencies().size());
+        Assert.assertEquals("b", providedPlugin.getPluginDependencies().get(0).getId());
+        Assert.assertEquals("*", providedPlugin.getPluginDependencies().get(0).getVersionExpression());
+    }
+
+    @Test(expected = RuntimeException.class)
+    public void testLoadUnexpectedRootElement() {
+        String document = "<providedPlugins xmlns=\"http://lunamc.io/plugin/1.0\" />";
+        ProvidedPlugins.load(new ByteArrayInputStream(document.getBytes(StandardCharsets.UTF_8)));
+    }
+
+    private static ProvidedPlugins createProvidedPlugins() {
+        ProvidedPlugins.ProvidedPlugin withServices = ProvidedPlugins.ProvidedPlugin.create("c", "0.1.0", "com.example.C", null);
+        withServices.setProvidedServices(Arrays.asList("com.example.Service1", "com.example.Outer$Service2"));
+        ProvidedPlugins providedPlugins = new ProvidedPlugins();
+        providedPlugins.setProvidedPlugins(Arrays.asList(
+                ProvidedPlugins.ProvidedPlugin.create("a", "1.0.0", "com.example.A", Collections.emptyList()),
+                ProvidedPlugins.ProvidedPlugin.create("b", "2.1.0", "com.example.B", Arrays.asList(
+                        ProvidedPlugins.PluginDependency.create("a", ">=1.0.0 & <2.0.0"),
+                        ProvidedPlugins.PluginDependency.create("c", null)
+                )),
+                withServices
+        ));
+        return providedPlugins;
+    }
+
+    private static void assertDependenciesEqual(List<ProvidedPlugins.PluginDependency> expected, List<ProvidedPlugins.PluginDependency> actual) {
+        if (expected == null) {
+            Assert.assertNull(actual);
+            return;
+        }
+        Assert.assertEquals(expected.size(), actual.size());
+        for (int i = 0; i < expected.size(); i++) {
+            Assert.assertEquals(expected.get(i).getId(), actual.get(i).getId());
+            Assert.assertEquals(expected.get(i).getVersionExpression(), actual.get(i).getVersionExpression());
+        }
+    }
+}
@@ -0,0 +1,49 @@
+/*
+ *  Copyright 2017 LunaMC.io
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package io.lunamc.platform.service;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.lang.reflect.Proxy;
+import java.net.URL;
+import java.net.URLClassLoader;
+
+public class ServiceKeyTest {
+
+    @Test
+    public void testKeyIsCached() {
+        Assert.assertSame(ServiceKey.of(Runnable.class), ServiceKey.of(Runnable.class));
+        Assert.assertNotEquals(ServiceKey.of(Runnable.class).getIndex(), ServiceKey.of(AutoCloseable.class).getIndex());
+    }
+
+    @Test
+    public void testIndexOfCollectedKeyIsReleased() throws Throwable {
+        int index = ServiceKey.of(createServiceClass()).getIndex();
+        Assert.assertTrue(ServiceKey.isUsed(index));
+        for (int i = 0; i < 50 && ServiceKey.isUsed(index); i++) {
+            System.gc();
+            Thread.sleep(10);
+        }
+        Assert.assertFalse(ServiceKey.isUsed(index));
+    }
+
+    private static Class<?> createServiceClass() {
+        // Proxy classes are defined by the given class loader, which is unreachable afterwards
+        return Proxy.getProxyClass(new URLClassLoader(new URL[0], ServiceKeyTest.class.getClassLoader()), Runnable.class);
+    }
+}
@@ -17,11 +17,13 @@
 package io.lunamc.platform.utils;
 
 import io.lunamc.platform.service.ServiceRegistration;
+import io.lunamc.platform.service.di.InjectionPoint;
 import io.lunamc.platform.service.di.PreferredConstructor;
 import org.junit.Assert;
 import org.junit.Test;
 
 import java.lang.reflect.Constructor;
+import java.util.Arrays;
 
 public class ServiceRegistryUtilsTest {
 
@@ -59,6 +61,31 @@ public class ServiceRegistryUtilsTest {
         ServiceRegistryUtils.findAppropriateInstantiableConstructor(TestClass6.class);
     }
 
+    @Test
+    public void testFindInjectionPointByReflection() throws Throwable {
+        InjectionPoint<TestClass2> injectionPoint = ServiceRegistryUtils.findInjectionPoint(TestClass2.class);
+        Assert.assertEquals(TestClass2.class.getConstructor(ServiceRegistration.class, ServiceRegistration.class), injectionPoint.getConstructor());
+        Assert.assertEquals(Arrays.asList(TestService1.class, TestService2.class), injectionPoint.getServiceTypes());
+    }
+
+    @Test
+    public void testFindInjectionPointFromIndex() throws Throwable {
+        // The test index selects a constructor reflective discovery would not choose
+        InjectionPoint<TestClass7> injectionPoint = ServiceRegistryUtils.findInjectionPoint(TestClass7.class);
+        Assert.assertEquals(TestClass7.class.getConstructor(ServiceRegistration.class), injectionPoint.getConstructor());
+        Assert.assertEquals(Arrays.asList(TestService2.class), injectionPoint.getServiceTypes());
+    }
+
+    @Test
+    public void testFindInjectionPointNoCandidate() throws Throwable {
+        Assert.assertNull(ServiceRegistryUtils.findInjectionPoint(TestClass5.class));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testGetServiceTypesRawParameter() throws Throwable {
+        ServiceRegistryUtils.getServiceTypes(TestClass8.class.getConstructor(ServiceRegistration.class));
+    }
+
     interface TestService1 {
     }
 
@@ -132,4 +159,22 @@ public class ServiceRegistryUtilsTest {
         public TestClass6(String str) {
         }
     }
+
+    // For testFindInjectionPointFromIndex
+    public static class TestClass7 {
+
+        public TestClass7(ServiceRegistration<TestService2> testService2) {
+        }
+
+        public TestClass7(ServiceRegistration<TestService1> testService1, ServiceRegistration<TestService2> testService2) {
+        }
+    }
+
+    // For testGetServiceTypesRawParameter
+    public static class TestClass8 {
+
+        @SuppressWarnings("rawtypes")
+        public TestClass8(ServiceRegistration testService) {
+        }
+    }
 }
@@ -0,0 +1,48 @@
+/*
+ *  Copyright 2017 LunaMC.io
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package io.lunamc.platform.benchmarks;
+
+import io.lunamc.platform.security.LunaSecurityManager;
+import io.lunamc.platform.security.LunaSecurityPolicy;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.security.Policy;
+
+/**
+ * Runs every benchmark once without and once with the Luna security manager installed the same way
+ * {@link io.lunamc.platform.Main} installs it. JMH forks a new JVM for each parameter combination, so the security
+ * manager never leaks into the runs without it. Java 18 and later require {@code -jvmArgsAppend
+ * -Djava.security.manager=allow} to install a security manager at runtime.
+ */
+@State(Scope.Benchmark)
+public abstract class AbstractBenchmark {
+
+    @Param({ "false", "true" })
+    public boolean securityManager;
+
+    @Setup(Level.Trial)
+    public void setupSecurityManager() {
+        if (securityManager && System.getSecurityManager() == null) {
+            Policy.setPolicy(new LunaSecurityPolicy());
+            System.setSecurityManager(new LunaSecurityManager(false));
+        }
+    }
+}
@@ -0,0 +1,110 @@
+/*
+ *  Copyright 2017 LunaMC.io
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package io.lunamc.platform.benchmarks;
+
+import com.github.zafarkhaja.semver.Version;
+import io.lunamc.platform.plugin.DefaultPluginDescription;
+import io.lunamc.platform.plugin.PluginDescription;
+import io.lunamc.platform.plugin.PluginDescriptor;
+import io.lunamc.platform.plugin.classloader.PluginClassLoader;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.Permission;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Set;
+import java.util.jar.JarEntry;
+import java.util.jar.JarOutputStream;
+import java.util.stream.Stream;
+
+final class BenchmarkUtils {
+
+    private BenchmarkUtils() {
+        throw new UnsupportedOperationException(getClass().getSimpleName() + " is a utility class and should not be constructed");
+    }
+
+    /**
+     * Creates the bytecode of an empty public class which extends {@link Object}. The class has no members, which is
+     * enough to load it.
+     */
+    static byte[] createClass(String className) {
+        ByteArrayOutputStream result = new ByteArrayOutputStream();
+        try (DataOutputStream out = new DataOutputStream(result)) {
+            out.writeInt(0xCAFEBABE);
+            out.writeShort(0); // Minor version
+            out.writeShort(52); // Java 8
+            out.writeShort(5); // Constant pool count (entries + 1)
+            out.writeByte(1); // #1 Utf8
+            out.writeUTF(className.replace('.', '/'));
+            out.writeByte(7); // #2 Class #1
+            out.writeShort(1);
+            out.writeByte(1); // #3 Utf8
+            out.writeUTF("java/lang/Object");
+            out.writeByte(7); // #4 Class #3
+            out.writeShort(3);
+            out.writeShort(0x0021); // ACC_PUBLIC | ACC_SUPER
+            out.writeShort(2); // This class
+            out.writeShort(4); // Super class
+            out.writeShort(0); // Interfaces
+            out.writeShort(0); // Fields
+            out.writeShort(0); // Methods
+            out.writeShort(0); // Attributes
+        } catch (IOException e) {
+            throw new AssertionError(e);
+        }
+        return result.toByteArray();
+    }
+
+    static Path createJar(Path file, String... classNames) throws IOException {
+        try (OutputStream fileOut = Files.newOutputStream(file);
+             JarOutputStream out = new JarOutputStream(fileOut)) {
+            for (String className : classNames) {
+                out.putNextEntry(new JarEntry(className.replace('.', '/') + ".class"));
+                out.write(createClass(className));
+                out.closeEntry();
+            }
+        }
+        return file;
+    }
+
+    static PluginDescription initialize(PluginClassLoader classLoader, String id, List<PluginDescription> dependencies, Set<Permission> permissions, Path dataDirectory) {
+        DefaultPluginDescription description = new DefaultPluginDescription(
+                classLoader,
+                new PluginDescriptor(id, Version.valueOf("1.0.0")),
+                dependencies,
+                permissions,
+                false,
+                dataDirectory.toFile()
+        );
+        classLoader.initialize(description);
+        return description;
+    }
+
+    static void delete(Path directory) throws IOException {
+        if (directory == null || !Files.exists(directory))
+            return;
+        try (Stream<Path> paths = Files.walk(directory)) {
+            for (Path path : (Iterable<Path>) paths.sorted(Comparator.reverseOrder())::iterator)
+                Files.delete(path);
+        }
+    }
+}
@@ -0,0 +1,114 @@
+/*
+ *  Copyright 2017 LunaMC.io
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package io.lunamc.platform.benchmarks;
+
+import io.lunamc.platform.plugin.classloader.PluginClassLoader;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Loads thousands of classes of one plugin from several threads at once. Every thread loads all classes starting at a
+ * different offset, so threads define classes and look up classes defined by others concurrently. Each invocation
+ * uses a new class loader.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 10)
+@Measurement(iterations = 20)
+@Fork(1)
+public class ClassLoaderContentionBenchmark extends AbstractBenchmark {
+
+    private static final int CLASS_COUNT = 4000;
+    private static final int PACKAGE_COUNT = 40;
+
+    @Param({ "1", "8" })
+    public int threads;
+
+    private Path directory;
+    private Path jar;
+    private String[] classNames;
+    private ExecutorService executor;
+    private PluginClassLoader classLoader;
+
+    @Setup(Level.Trial)
+    public void setup() throws IOException {
+        directory = Files.createTempDirectory("luna-benchmarks");
+        classNames = new String[CLASS_COUNT];
+        for (int i = 0; i < CLASS_COUNT; i++)
+            classNames[i] = "io.lunamc.benchmarks.contention.p" + (i % PACKAGE_COUNT) + ".Class" + i;
+        jar = BenchmarkUtils.createJar(directory.resolve("contention.jar"), classNames);
+        executor = Executors.newFixedThreadPool(threads);
+    }
+
+    @Setup(Level.Invocation)
+    public void createClassLoader() {
+        classLoader = new PluginClassLoader(jar.toFile(), ClassLoaderContentionBenchmark.class.getClassLoader());
+        BenchmarkUtils.initialize(classLoader, "contention", Collections.emptyList(), Collections.emptySet(), directory);
+    }
+
+    @TearDown(Level.Invocation)
+    public void closeClassLoader() throws IOException {
+        classLoader.close();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        executor.shutdown();
+        BenchmarkUtils.delete(directory);
+    }
+
+    @Benchmark
+    public int loadConcurrently() throws Exception {
+        List<Future<Integer>> futures = new ArrayList<>(threads);
+        for (int thread = 0; thread < threads; thread++) {
+            int offset = thread * (CLASS_COUNT / threads);
+            futures.add(executor.submit(() -> {
+                int hash = 0;
+                for (int i = 0; i < CLASS_COUNT; i++)
+                    hash += classLoader.loadClass(classNames[(offset + i) % CLASS_COUNT]).hashCode();
+                return hash;
+            }));
+        }
+        int result = 0;
+        for (Future<Integer> future : futures)
+            result += future.get();
+        return result;
+    }
+}
@@ -0,0 +1,102 @@
+/*
+ *  Copyright 2017 LunaMC.io
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package io.lunamc.platform.benchmarks;
+
+import io.lunamc.platform.plugin.PluginDescription;
+import io.lunamc.platform.plugin.classloader.PluginClassLoader;
+import io.lunamc.platform.service.ServiceRegistry;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Collections;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures {@link PluginClassLoader#loadClass(String)} for classes of the plugin itself, of the platform, of a
+ * dependency plugin and for classes which do not exist at all.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ClassLoadingBenchmark extends AbstractBenchmark {
+
+    private static final String SELF_CLASS = "io.lunamc.benchmarks.self.SelfClass";
+    private static final String DEPENDENCY_CLASS = "io.lunamc.benchmarks.dependency.DependencyClass";
+    private static final String PARENT_CLASS = ServiceRegistry.class.getName();
+    private static final String MISSING_CLASS = "io.lunamc.benchmarks.missing.MissingClass";
+
+    private Path directory;
+    private PluginClassLoader dependencyClassLoader;
+    private PluginClassLoader classLoader;
+
+    @Setup(Level.Trial)
+    public void setup() throws IOException {
+        ClassLoader parent = ClassLoadingBenchmark.class.getClassLoader();
+        directory = Files.createTempDirectory("luna-benchmarks");
+        dependencyClassLoader = new PluginClassLoader(BenchmarkUtils.createJar(directory.resolve("dependency.jar"), DEPENDENCY_CLASS).toFile(), parent);
+        classLoader = new PluginClassLoader(BenchmarkUtils.createJar(directory.resolve("self.jar"), SELF_CLASS).toFile(), parent);
+        PluginDescription dependency = BenchmarkUtils.initialize(dependencyClassLoader, "dependency", Collections.emptyList(), Collections.emptySet(), directory);
+        BenchmarkUtils.initialize(classLoader, "self", Collections.singletonList(dependency), Collections.emptySet(), directory);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        classLoader.close();
+        dependencyClassLoader.close();
+        BenchmarkUtils.delete(directory);
+    }
+
+    @Benchmark
+    public Class<?> self() throws ClassNotFoundException {
+        return classLoader.loadClass(SELF_CLASS);
+    }
+
+    @Benchmark
+    public Class<?> parent() throws ClassNotFoundException {
+        return classLoader.loadClass(PARENT_CLASS);
+    }
+
+    @Benchmark
+    public Class<?> dependency() throws ClassNotFoundException {
+        return classLoader.loadClass(DEPENDENCY_CLASS);
+    }
+
+    @Benchmark
+    public Class<?> miss() {
+        try {
+            return classLoader.loadClass(MISSING_CLASS);
+        } catch (ClassNotFoundException ignore) {
+            return null;
+        }
+    }
+}
@@ -0,0 +1,114 @@
+/*
+ *  Copyright 2017 LunaMC.io
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package io.lunamc.platform.benchmarks;
+
+import io.lunamc.platform.internal.plugin.annotation.processor.InjectionIndex;
+import io.lunamc.platform.service.ServiceRegistration;
+import io.lunamc.platform.service.di.InjectionPoint;
+import io.lunamc.platform.service.di.PreferredConstructor;
+import io.lunamc.platform.utils.ServiceRegistryUtils;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.lang.reflect.Constructor;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares reflective constructor discovery of {@link ServiceRegistryUtils} with the lookup through the compile-time
+ * {@link InjectionIndex} and the cached {@link InjectionPoint}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ConstructorDiscoveryBenchmark extends AbstractBenchmark {
+
+    @Setup(Level.Trial)
+    public void checkIndex() {
+        if (InjectionIndex.forClassLoader(Target.class.getClassLoader()).get(Target.class.getName()) == null)
+            throw new IllegalStateException(Target.class.getName() + " is missing in " + InjectionIndex.DEFAULT_LOCATION);
+    }
+
+    @Benchmark
+    public Class<?>[] reflective() {
+        Constructor<Target> constructor = ServiceRegistryUtils.findAppropriateInstantiableConstructor(Target.class);
+        return ServiceRegistryUtils.getServiceTypes(constructor);
+    }
+
+    @Benchmark
+    public Constructor<?> index() throws ReflectiveOperationException {
+        ClassLoader classLoader = Target.class.getClassLoader();
+        List<InjectionIndex.Parameter> parameters = InjectionIndex.forClassLoader(classLoader).get(Target.class.getName());
+        Class<?>[] parameterTypes = new Class[parameters.size()];
+        for (int i = 0; i < parameterTypes.length; i++) {
+            InjectionIndex.Parameter parameter = parameters.get(i);
+            parameterTypes[i] = Class.forName(parameter.getType(), false, classLoader);
+            Class.forName(parameter.getServiceType(), false, classLoader);
+        }
+        return Target.class.getConstructor(parameterTypes);
+    }
+
+    @Benchmark
+    public InjectionPoint<Target> injectionPoint() {
+        return ServiceRegistryUtils.findInjectionPoint(Target.class);
+    }
+
+    /**
+     * The annotation processor only runs for compilations which contain one of its annotations. This class makes it
+     * index {@link Target} without marking a constructor of {@link Target} itself, which would shortcut the reflective
+     * discovery.
+     */
+    public static class Preferred {
+
+        @PreferredConstructor
+        public Preferred() {
+        }
+    }
+
+    public static class Target {
+
+        public Target() {
+        }
+
+        public Target(String name) {
+        }
+
+        public Target(ServiceRegistration<Runnable> runnable) {
+        }
+
+        public Target(ServiceRegistration<Runnable> runnable, ServiceRegistration<Thread> thread) {
+        }
+
+        public Target(ServiceRegistration<Runnable> runnable, ServiceRegistration<Thread> thread, ServiceRegistration<Object> object) {
+        }
+
+        public Target(ServiceRegistration<Runnable> runnable, String name) {
+        }
+    }
+}
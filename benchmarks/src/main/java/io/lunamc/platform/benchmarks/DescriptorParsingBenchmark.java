@@ -0,0 +1,158 @@
+/*
+ *  Copyright 2017 LunaMC.io
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package io.lunamc.platform.benchmarks;
+
+import io.lunamc.platform.config.PluginsConfiguration;
+import io.lunamc.platform.internal.plugin.annotation.processor.ProvidedPlugins;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import javax.xml.bind.JAXBContext;
+import javax.xml.bind.JAXBException;
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares reading plugins-1.0 and provided-plugin-1.0 documents through JAXB with the streaming readers. The
+ * {@code cold*} benchmarks run once per forked JVM and therefore include class loading and context creation as they
+ * happen on startup.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class DescriptorParsingBenchmark extends AbstractBenchmark {
+
+    @Param({ "1", "32" })
+    public int plugins;
+
+    private byte[] pluginsDocument;
+    private byte[] providedPluginsDocument;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        pluginsDocument = createPluginsDocument(plugins);
+        providedPluginsDocument = createProvidedPluginsDocument(plugins);
+    }
+
+    @Benchmark
+    public Object pluginsJaxbNewContext() throws JAXBException {
+        return JaxbDescriptors.readPlugins(JaxbDescriptors.createPluginsContext(), new ByteArrayInputStream(pluginsDocument));
+    }
+
+    @Benchmark
+    public Object pluginsJaxbSharedContext(SharedContexts contexts) throws JAXBException {
+        return JaxbDescriptors.readPlugins(contexts.plugins, new ByteArrayInputStream(pluginsDocument));
+    }
+
+    @Benchmark
+    public PluginsConfiguration pluginsStax() {
+        return PluginsConfiguration.load(new ByteArrayInputStream(pluginsDocument));
+    }
+
+    @Benchmark
+    public Object providedPluginsJaxbNewContext() throws JAXBException {
+        return JaxbDescriptors.readProvidedPlugins(JaxbDescriptors.createProvidedPluginsContext(), new ByteArrayInputStream(providedPluginsDocument));
+    }
+
+    @Benchmark
+    public Object providedPluginsJaxbSharedContext(SharedContexts contexts) throws JAXBException {
+        return JaxbDescriptors.readProvidedPlugins(contexts.providedPlugins, new ByteArrayInputStream(providedPluginsDocument));
+    }
+
+    @Benchmark
+    public ProvidedPlugins providedPluginsStax() {
+        return ProvidedPlugins.load(new ByteArrayInputStream(providedPluginsDocument));
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.SingleShotTime)
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    @Warmup(iterations = 0)
+    @Measurement(iterations = 1)
+    @Fork(5)
+    public Object coldJaxb() throws JAXBException {
+        JaxbDescriptors.readPlugins(JaxbDescriptors.createPluginsContext(), new ByteArrayInputStream(pluginsDocument));
+        return JaxbDescriptors.readProvidedPlugins(JaxbDescriptors.createProvidedPluginsContext(), new ByteArrayInputStream(providedPluginsDocument));
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.SingleShotTime)
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    @Warmup(iterations = 0)
+    @Measurement(iterations = 1)
+    @Fork(5)
+    public Object coldStax() {
+        PluginsConfiguration.load(new ByteArrayInputStream(pluginsDocument));
+        return ProvidedPlugins.load(new ByteArrayInputStream(providedPluginsDocument));
+    }
+
+    static byte[] createPluginsDocument(int plugins) {
+        StringBuilder builder = new StringBuilder("<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n<plugins xmlns=\"")
+                .append(PluginsConfiguration.NAMESPACE).append("\">\n");
+        for (int i = 0; i < plugins; i++) {
+            builder.append("    <plugin id=\"plugin-").append(i).append("\" file=\"plugins/plugin-").append(i).append(".jar\">\n")
+                    .append("        <security>\n            <permissions>\n")
+                    .append("                <permission impl=\"java.io.FilePermission\" name=\"plugin-").append(i).append("/-\" action=\"read,write\" />\n")
+                    .append("                <permission impl=\"java.util.PropertyPermission\" name=\"*\" action=\"read\" />\n")
+                    .append("            </permissions>\n        </security>\n    </plugin>\n");
+        }
+        return builder.append("</plugins>\n").toString().getBytes(StandardCharsets.UTF_8);
+    }
+
+    static byte[] createProvidedPluginsDocument(int plugins) {
+        StringBuilder builder = new StringBuilder("<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n<providedPlugins xmlns=\"")
+                .append(ProvidedPlugins.NAMESPACE).append("\">\n");
+        for (int i = 0; i < plugins; i++) {
+            builder.append("    <providedPlugin id=\"plugin-").append(i).append("\" version=\"1.0.0\" impl=\"com.example.Plugin").append(i).append("\">\n")
+                    .append("        <pluginDependencies>\n");
+            if (i > 0)
+                builder.append("            <pluginDependency id=\"plugin-").append(i - 1).append("\" versionExpression=\"&gt;=1.0.0\" />\n");
+            builder.append("        </pluginDependencies>\n    </providedPlugin>\n");
+        }
+        return builder.append("</providedPlugins>\n").toString().getBytes(StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Only created for the benchmarks which use it, so the {@code cold*} benchmarks start without any JAXB context.
+     */
+    @State(Scope.Benchmark)
+    public static class SharedContexts {
+
+        private JAXBContext plugins;
+        private JAXBContext providedPlugins;
+
+        @Setup(Level.Trial)
+        public void setup() throws JAXBException {
+            plugins = JaxbDescriptors.createPluginsContext();
+            providedPlugins = JaxbDescriptors.createProvidedPluginsContext();
+        }
+    }
+}
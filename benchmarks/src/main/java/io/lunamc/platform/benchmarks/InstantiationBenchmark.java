@@ -0,0 +1,96 @@
+/*
+ *  Copyright 2017 LunaMC.io
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package io.lunamc.platform.benchmarks;
+
+import io.lunamc.platform.service.DefaultServiceRegistry;
+import io.lunamc.platform.service.ServiceRegistration;
+import io.lunamc.platform.service.ServiceRegistry;
+import io.lunamc.platform.service.di.ServiceFactory;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.lang.reflect.Constructor;
+import java.util.Objects;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares reflective instantiation with the compiled factories of {@link DefaultServiceRegistry}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class InstantiationBenchmark extends AbstractBenchmark {
+
+    private ServiceRegistry serviceRegistry;
+    private Constructor<Handler> constructor;
+    private ServiceRegistration<?>[] arguments;
+    private ServiceRegistration<Runnable> runnable;
+    private ServiceRegistration<Comparable> comparable;
+    private ServiceFactory<Handler> factory;
+
+    @Setup
+    public void setup() throws NoSuchMethodException {
+        serviceRegistry = new DefaultServiceRegistry();
+        constructor = Handler.class.getConstructor(ServiceRegistration.class, ServiceRegistration.class);
+        runnable = serviceRegistry.getService(Runnable.class);
+        comparable = serviceRegistry.getService(Comparable.class);
+        arguments = new ServiceRegistration[] { runnable, comparable };
+        factory = serviceRegistry.getFactory(constructor);
+    }
+
+    @Benchmark
+    public Handler direct() {
+        return new Handler(runnable, comparable);
+    }
+
+    @Benchmark
+    public Handler reflective() throws ReflectiveOperationException {
+        return constructor.newInstance((Object[]) arguments);
+    }
+
+    @Benchmark
+    public Handler instantiate() throws ReflectiveOperationException {
+        return serviceRegistry.instantiate(constructor);
+    }
+
+    @Benchmark
+    public Handler factory() throws ReflectiveOperationException {
+        return factory.newInstance();
+    }
+
+    public static class Handler {
+
+        private final ServiceRegistration<Runnable> runnable;
+        private final ServiceRegistration<Comparable> comparable;
+
+        public Handler(ServiceRegistration<Runnable> runnable, ServiceRegistration<Comparable> comparable) {
+            this.runnable = Objects.requireNonNull(runnable, "runnable must not be null");
+            this.comparable = Objects.requireNonNull(comparable, "comparable must not be null");
+        }
+    }
+}
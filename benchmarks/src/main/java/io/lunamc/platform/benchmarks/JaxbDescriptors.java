@@ -0,0 +1,152 @@
+/*
+ *  Copyright 2017 LunaMC.io
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package io.lunamc.platform.benchmarks;
+
+import io.lunamc.platform.config.PluginsConfiguration;
+import io.lunamc.platform.internal.plugin.annotation.processor.ProvidedPlugins;
+
+import javax.xml.bind.JAXBContext;
+import javax.xml.bind.JAXBException;
+import javax.xml.bind.annotation.XmlAccessType;
+import javax.xml.bind.annotation.XmlAccessorType;
+import javax.xml.bind.annotation.XmlAttribute;
+import javax.xml.bind.annotation.XmlElement;
+import javax.xml.bind.annotation.XmlElementWrapper;
+import javax.xml.bind.annotation.XmlRootElement;
+import java.io.InputStream;
+import java.util.List;
+
+/**
+ * JAXB bindings of the plugins-1.0 and provided-plugin-1.0 documents, as the platform used them before it switched to
+ * streaming readers. They only exist to compare the streaming readers against JAXB, so the platform itself does not
+ * depend on JAXB.
+ */
+final class JaxbDescriptors {
+
+    private JaxbDescriptors() {
+        throw new UnsupportedOperationException(getClass().getSimpleName() + " is a utility class and should not be constructed");
+    }
+
+    static JAXBContext createPluginsContext() throws JAXBException {
+        return JAXBContext.newInstance(Plugins.class);
+    }
+
+    static JAXBContext createProvidedPluginsContext() throws JAXBException {
+        return JAXBContext.newInstance(ProvidedPluginsDocument.class);
+    }
+
+    static Plugins readPlugins(JAXBContext context, InputStream input) throws JAXBException {
+        return (Plugins) context.createUnmarshaller().unmarshal(input);
+    }
+
+    static ProvidedPluginsDocument readProvidedPlugins(JAXBContext context, InputStream input) throws JAXBException {
+        return (ProvidedPluginsDocument) context.createUnmarshaller().unmarshal(input);
+    }
+
+    @XmlRootElement(namespace = PluginsConfiguration.NAMESPACE, name = "plugins")
+    @XmlAccessorType(XmlAccessType.FIELD)
+    static class Plugins {
+
+        @XmlElement(namespace = PluginsConfiguration.NAMESPACE, name = "plugin")
+        List<Plugin> plugins;
+    }
+
+    @XmlAccessorType(XmlAccessType.FIELD)
+    static class Plugin {
+
+        @XmlAttribute(name = "file")
+        String file;
+
+        @XmlAttribute(name = "id")
+        String id;
+
+        @XmlAttribute(name = "lazy")
+        Boolean lazy;
+
+        @XmlAttribute(name = "initializeTimeout")
+        Long initializeTimeout;
+
+        @XmlAttribute(name = "startTimeout")
+        Long startTimeout;
+
+        @XmlAttribute(name = "stopTimeout")
+        Long stopTimeout;
+
+        @XmlElement(namespace = PluginsConfiguration.NAMESPACE, name = "security")
+        Security security;
+    }
+
+    @XmlAccessorType(XmlAccessType.FIELD)
+    static class Security {
+
+        @XmlElementWrapper(namespace = PluginsConfiguration.NAMESPACE, name = "permissions")
+        @XmlElement(namespace = PluginsConfiguration.NAMESPACE, name = "permission")
+        List<Permission> permissions;
+    }
+
+    @XmlAccessorType(XmlAccessType.FIELD)
+    static class Permission {
+
+        @XmlAttribute(name = "impl")
+        String impl;
+
+        @XmlAttribute(name = "name")
+        String name;
+
+        @XmlAttribute(name = "action")
+        String action;
+    }
+
+    @XmlRootElement(namespace = ProvidedPlugins.NAMESPACE, name = "providedPlugins")
+    @XmlAccessorType(XmlAccessType.FIELD)
+    static class ProvidedPluginsDocument {
+
+        @XmlElement(namespace = ProvidedPlugins.NAMESPACE, name = "providedPlugin")
+        List<ProvidedPlugin> providedPlugins;
+    }
+
+    @XmlAccessorType(XmlAccessType.FIELD)
+    static class ProvidedPlugin {
+
+        @XmlAttribute(name = "id")
+        String id;
+
+        @XmlAttribute(name = "version")
+        String version;
+
+        @XmlAttribute(name = "impl")
+        String impl;
+
+        @XmlElementWrapper(namespace = ProvidedPlugins.NAMESPACE, name = "pluginDependencies")
+        @XmlElement(namespace = ProvidedPlugins.NAMESPACE, name = "pluginDependency")
+        List<PluginDependency> pluginDependencies;
+
+        @XmlElementWrapper(namespace = ProvidedPlugins.NAMESPACE, name = "providedServices")
+        @XmlElement(namespace = ProvidedPlugins.NAMESPACE, name = "providedService")
+        List<String> providedServices;
+    }
+
+    @XmlAccessorType(XmlAccessType.FIELD)
+    static class PluginDependency {
+
+        @XmlAttribute(name = "id")
+        String id;
+
+        @XmlAttribute(name = "versionExpression")
+        String versionExpression;
+    }
+}
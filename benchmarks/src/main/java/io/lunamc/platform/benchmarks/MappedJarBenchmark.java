@@ -0,0 +1,103 @@
+/*
+ *  Copyright 2017 LunaMC.io
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package io.lunamc.platform.benchmarks;
+
+import io.lunamc.platform.plugin.classloader.PluginClassLoader;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Collections;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Loads all classes of a plugin jar through a new class loader, once using the jar handling of
+ * {@link java.net.URLClassLoader} and once using the memory-mapped jar reader. Run with {@code -prof gc} to compare the
+ * allocations per load. {@link MappedJarFootprintBenchmark} measures the memory and file handles of open class
+ * loaders.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 10)
+@Measurement(iterations = 20)
+public class MappedJarBenchmark extends AbstractBenchmark {
+
+    private static final int CLASS_COUNT = 4000;
+    private static final int PACKAGE_COUNT = 40;
+
+    private Path directory;
+    private Path jar;
+    private String[] classNames;
+    private PluginClassLoader classLoader;
+
+    @Setup(Level.Trial)
+    public void setup() throws IOException {
+        directory = Files.createTempDirectory("luna-benchmarks");
+        classNames = new String[CLASS_COUNT];
+        for (int i = 0; i < CLASS_COUNT; i++)
+            classNames[i] = "io.lunamc.benchmarks.mapped.p" + (i % PACKAGE_COUNT) + ".Class" + i;
+        jar = BenchmarkUtils.createJar(directory.resolve("mapped.jar"), classNames);
+    }
+
+    @Setup(Level.Invocation)
+    public void createClassLoader() {
+        classLoader = new PluginClassLoader(jar.toFile(), MappedJarBenchmark.class.getClassLoader());
+        BenchmarkUtils.initialize(classLoader, "mapped", Collections.emptyList(), Collections.emptySet(), directory);
+    }
+
+    @TearDown(Level.Invocation)
+    public void closeClassLoader() throws IOException {
+        classLoader.close();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        BenchmarkUtils.delete(directory);
+    }
+
+    @Benchmark
+    @Fork(value = 1, jvmArgsAppend = "-Dio.lunamc.platform.pluginClassLoaderMappedJars=false")
+    public int urlClassLoader() throws ClassNotFoundException {
+        return loadAll();
+    }
+
+    @Benchmark
+    @Fork(value = 1, jvmArgsAppend = "-Dio.lunamc.platform.pluginClassLoaderMappedJars=true")
+    public int mappedJar() throws ClassNotFoundException {
+        return loadAll();
+    }
+
+    private int loadAll() throws ClassNotFoundException {
+        int hash = 0;
+        for (String className : classNames)
+            hash += classLoader.loadClass(className).hashCode();
+        return hash;
+    }
+}
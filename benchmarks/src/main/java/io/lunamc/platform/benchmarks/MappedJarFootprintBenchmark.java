@@ -0,0 +1,197 @@
+/*
+ *  Copyright 2017 LunaMC.io
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package io.lunamc.platform.benchmarks;
+
+import io.lunamc.platform.plugin.classloader.PluginClassLoader;
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.management.BufferPoolMXBean;
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the footprint of plugin class loaders which loaded all classes and a resource of their jar and are still
+ * open, once using the jar handling of {@link java.net.URLClassLoader} and once using the memory-mapped jar reader.
+ * Besides the time, the following counters are reported as the growth while loading, after a garbage collection
+ * released the class loaders of the previous invocation. JMH sums them over the measurement iterations, so they have to
+ * be divided by the iteration count:
+ * <ul>
+ *     <li>{@code residentKilobytes}: resident set size of the process, only on Linux</li>
+ *     <li>{@code mappedKilobytes} and {@code mappedBuffers}: memory and buffers of the {@code mapped} buffer pool</li>
+ *     <li>{@code openFiles}: open file descriptors of the process, only on Linux</li>
+ * </ul>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 10)
+public class MappedJarFootprintBenchmark extends AbstractBenchmark {
+
+    private static final int CLASS_LOADER_COUNT = 16;
+    private static final int CLASS_COUNT = 1000;
+    private static final int PACKAGE_COUNT = 10;
+
+    private Path directory;
+    private Path[] jars;
+    private String[] classNames;
+    private List<PluginClassLoader> classLoaders;
+
+    @Setup(Level.Trial)
+    public void setup() throws IOException {
+        directory = Files.createTempDirectory("luna-benchmarks");
+        classNames = new String[CLASS_COUNT];
+        for (int i = 0; i < CLASS_COUNT; i++)
+            classNames[i] = "io.lunamc.benchmarks.footprint.p" + (i % PACKAGE_COUNT) + ".Class" + i;
+        // A jar per class loader, like one per plugin
+        jars = new Path[CLASS_LOADER_COUNT];
+        for (int i = 0; i < CLASS_LOADER_COUNT; i++)
+            jars[i] = BenchmarkUtils.createJar(directory.resolve("footprint-" + i + ".jar"), classNames);
+    }
+
+    @TearDown(Level.Invocation)
+    public void closeClassLoaders() throws IOException {
+        for (PluginClassLoader classLoader : classLoaders)
+            classLoader.close();
+        classLoaders = null;
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        BenchmarkUtils.delete(directory);
+    }
+
+    @Benchmark
+    @Fork(value = 1, jvmArgsAppend = "-Dio.lunamc.platform.pluginClassLoaderMappedJars=false")
+    public int urlClassLoader(Footprint footprint) throws ClassNotFoundException, IOException {
+        return loadAll(footprint);
+    }
+
+    @Benchmark
+    @Fork(value = 1, jvmArgsAppend = "-Dio.lunamc.platform.pluginClassLoaderMappedJars=true")
+    public int mappedJar(Footprint footprint) throws ClassNotFoundException, IOException {
+        return loadAll(footprint);
+    }
+
+    private int loadAll(Footprint footprint) throws ClassNotFoundException, IOException {
+        classLoaders = new ArrayList<>(CLASS_LOADER_COUNT);
+        int hash = 0;
+        for (int i = 0; i < CLASS_LOADER_COUNT; i++) {
+            PluginClassLoader classLoader = new PluginClassLoader(jars[i].toFile(), MappedJarFootprintBenchmark.class.getClassLoader());
+            classLoaders.add(classLoader);
+            BenchmarkUtils.initialize(classLoader, "footprint-" + i, Collections.emptyList(), Collections.emptySet(), directory);
+            for (String className : classNames)
+                hash += classLoader.loadClass(className).hashCode();
+            try (InputStream in = classLoader.getResourceAsStream(classNames[0].replace('.', '/') + ".class")) {
+                hash += in.read();
+            }
+        }
+        footprint.record();
+        return hash;
+    }
+
+    private static long getResidentKilobytes() throws IOException {
+        Path status = Paths.get("/proc/self/status");
+        if (!Files.isReadable(status))
+            return 0;
+        for (String line : Files.readAllLines(status, StandardCharsets.UTF_8)) {
+            // Like "VmRSS:     123456 kB"
+            if (line.startsWith("VmRSS:"))
+                return Long.parseLong(line.substring(6).replace("kB", "").trim());
+        }
+        return 0;
+    }
+
+    private static long getOpenFiles() {
+        String[] descriptors = new File("/proc/self/fd").list();
+        return descriptors != null ? descriptors.length : 0;
+    }
+
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.EVENTS)
+    public static class Footprint {
+
+        public long residentKilobytes;
+        public long mappedKilobytes;
+        public long mappedBuffers;
+        public long openFiles;
+        private long residentKilobytesBefore;
+        private long mappedBytesBefore;
+        private long mappedBuffersBefore;
+        private long openFilesBefore;
+
+        @Setup(Level.Iteration)
+        public void reset() {
+            residentKilobytes = 0;
+            mappedKilobytes = 0;
+            mappedBuffers = 0;
+            openFiles = 0;
+        }
+
+        @Setup(Level.Invocation)
+        public void sample() throws IOException {
+            // Mappings and jar files of closed class loaders are only released once they are collected
+            System.gc();
+            System.runFinalization();
+            residentKilobytesBefore = getResidentKilobytes();
+            BufferPoolMXBean mappedPool = getMappedPool();
+            mappedBytesBefore = mappedPool != null ? mappedPool.getMemoryUsed() : 0;
+            mappedBuffersBefore = mappedPool != null ? mappedPool.getCount() : 0;
+            openFilesBefore = getOpenFiles();
+        }
+
+        private void record() throws IOException {
+            residentKilobytes = getResidentKilobytes() - residentKilobytesBefore;
+            BufferPoolMXBean mappedPool = getMappedPool();
+            if (mappedPool != null) {
+                mappedKilobytes = (mappedPool.getMemoryUsed() - mappedBytesBefore) / 1024;
+                mappedBuffers = mappedPool.getCount() - mappedBuffersBefore;
+            }
+            openFiles = getOpenFiles() - openFilesBefore;
+        }
+
+        private static BufferPoolMXBean getMappedPool() {
+            for (BufferPoolMXBean pool : ManagementFactory.getPlatformMXBeans(BufferPoolMXBean.class)) {
+                if ("mapped".equals(pool.getName()))
+                    return pool;
+            }
+            return null;
+        }
+    }
+}
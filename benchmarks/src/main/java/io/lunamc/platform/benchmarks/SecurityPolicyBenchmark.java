@@ -0,0 +1,120 @@
+/*
+ *  Copyright 2017 LunaMC.io
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package io.lunamc.platform.benchmarks;
+
+import io.lunamc.platform.plugin.PluginManagerPermission;
+import io.lunamc.platform.plugin.classloader.PluginClassLoader;
+import io.lunamc.platform.security.LunaSecurityPolicy;
+import io.lunamc.platform.service.ServiceRegistryPermission;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.File;
+import java.io.FilePermission;
+import java.io.IOException;
+import java.net.SocketPermission;
+import java.net.URL;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.CodeSource;
+import java.security.Permission;
+import java.security.ProtectionDomain;
+import java.security.cert.Certificate;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.PropertyPermission;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures {@link LunaSecurityPolicy#implies(ProtectionDomain, Permission)} for a plugin with a typical set of
+ * permissions and for platform code.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SecurityPolicyBenchmark extends AbstractBenchmark {
+
+    private final LunaSecurityPolicy policy = new LunaSecurityPolicy();
+    private final Permission serviceAccessPermission = ServiceRegistryPermission.PERMISSION_ACCESS;
+    private final Permission propertyPermission = new PropertyPermission("io.lunamc.example.debug", "read");
+    private final Permission deniedPermission = new FilePermission("/etc/passwd", "read");
+    private Path directory;
+    private PluginClassLoader classLoader;
+    private ProtectionDomain pluginDomain;
+    private ProtectionDomain platformDomain;
+
+    @Setup(Level.Trial)
+    public void setup() throws IOException {
+        directory = Files.createTempDirectory("luna-benchmarks");
+        classLoader = new PluginClassLoader(new URL[0], SecurityPolicyBenchmark.class.getClassLoader());
+        BenchmarkUtils.initialize(classLoader, "example", Collections.emptyList(), new HashSet<>(Arrays.asList(
+                ServiceRegistryPermission.PERMISSION_ACCESS,
+                PluginManagerPermission.PERMISSION_READ,
+                new RuntimePermission("getClassLoader"),
+                new RuntimePermission("modifyThread"),
+                new FilePermission(directory.toAbsolutePath() + File.separator + "-", "read,write,delete"),
+                new FilePermission("config" + File.separator + "example.xml", "read"),
+                new SocketPermission("*.example.com:443", "connect,resolve"),
+                new SocketPermission("localhost:25565", "listen,accept"),
+                new PropertyPermission("java.version", "read"),
+                new PropertyPermission("io.lunamc.example.*", "read")
+        )), directory);
+        CodeSource codeSource = new CodeSource(directory.toUri().toURL(), (Certificate[]) null);
+        pluginDomain = new ProtectionDomain(codeSource, null, classLoader, null);
+        platformDomain = SecurityPolicyBenchmark.class.getProtectionDomain();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        classLoader.close();
+        BenchmarkUtils.delete(directory);
+    }
+
+    @Benchmark
+    public boolean pluginGrantedServiceAccess() {
+        return policy.implies(pluginDomain, serviceAccessPermission);
+    }
+
+    @Benchmark
+    public boolean pluginGrantedProperty() {
+        return policy.implies(pluginDomain, propertyPermission);
+    }
+
+    @Benchmark
+    public boolean pluginDenied() {
+        return policy.implies(pluginDomain, deniedPermission);
+    }
+
+    @Benchmark
+    public boolean platform() {
+        return policy.implies(platformDomain, deniedPermission);
+    }
+}
@@ -0,0 +1,106 @@
+/*
+ *  Copyright 2017 LunaMC.io
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package io.lunamc.platform.benchmarks;
+
+import io.lunamc.platform.service.DefaultServiceRegistry;
+import io.lunamc.platform.service.ServiceCapability;
+import io.lunamc.platform.service.ServiceKey;
+import io.lunamc.platform.service.ServiceRegistration;
+import io.lunamc.platform.service.ServiceRegistry;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
+/**
+ * Compares the indexed service lookup of {@link DefaultServiceRegistry} with a map based lookup as it was used before
+ * {@link ServiceKey} was introduced.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ServiceLookupBenchmark extends AbstractBenchmark {
+
+    private final Map<Class<?>, ServiceRegistration<?>> serviceRegistrations = new ConcurrentHashMap<>();
+    private Function<Class<?>, ServiceRegistration<?>> registrationFactory;
+    private ServiceRegistry serviceRegistry;
+    private ServiceKey<DemoService> serviceKey;
+    private ServiceCapability serviceCapability;
+
+    @Setup
+    public void setup() {
+        serviceRegistry = new DefaultServiceRegistry();
+        for (Class<?> serviceClass : DemoService.class.getDeclaredClasses())
+            serviceRegistrations.put(serviceClass, serviceRegistry.getService(serviceClass));
+        ServiceRegistration<DemoService> serviceRegistration = serviceRegistry.setService(DemoService.class, () -> {});
+        serviceRegistrations.put(DemoService.class, serviceRegistration);
+        registrationFactory = serviceClass -> serviceRegistry.getService(serviceClass);
+        serviceKey = ServiceKey.of(DemoService.class);
+        serviceCapability = serviceRegistry.acquireCapability();
+    }
+
+    @Benchmark
+    public ServiceRegistration<?> mapLookup() {
+        return serviceRegistrations.computeIfAbsent(DemoService.class, registrationFactory);
+    }
+
+    @Benchmark
+    public ServiceRegistration<?> getServiceByClass() {
+        return serviceRegistry.getService(DemoService.class);
+    }
+
+    @Benchmark
+    public ServiceRegistration<?> getServiceByKey() {
+        return serviceRegistry.getService(serviceKey);
+    }
+
+    @Benchmark
+    public ServiceRegistration<?> getServiceByCapability() {
+        return serviceCapability.getService(serviceKey);
+    }
+
+    public interface DemoService {
+
+        void run();
+
+        interface Service1 {
+        }
+
+        interface Service2 {
+        }
+
+        interface Service3 {
+        }
+
+        interface Service4 {
+        }
+    }
+}
@@ -0,0 +1,134 @@
+/*
+ *  Copyright 2017 LunaMC.io
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package io.lunamc.platform.benchmarks;
+
+import io.lunamc.platform.config.PluginsConfiguration;
+import io.lunamc.platform.internal.plugin.annotation.processor.ProvidedPlugins;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+/**
+ * Verifies the streaming readers produce the same model the JAXB bindings did.
+ */
+public class JaxbDescriptorsTest {
+
+    private static final String PLUGINS_DOCUMENT = "<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n" +
+            "<plugins xmlns=\"" + PluginsConfiguration.NAMESPACE + "\">\n" +
+            "    <plugin id=\"test-1\" file=\"test1.jar\" lazy=\"true\" startTimeout=\"1000\" stopTimeout=\"2000\">\n" +
+            "        <security>\n" +
+            "            <permissions>\n" +
+            "                <permission impl=\"TestPermission1\" action=\"access\" name=\"hello world\" />\n" +
+            "                <permission impl=\"TestPermission2\" name=\"*\" />\n" +
+            "            </permissions>\n" +
+            "        </security>\n" +
+            "    </plugin>\n" +
+            "    <plugin id=\"test-2\" file=\"test2.jar\" lazy=\"false\" initializeTimeout=\"30000\" />\n" +
+            "    <plugin file=\"test3.jar\">\n" +
+            "        <security />\n" +
+            "    </plugin>\n" +
+            "</plugins>\n";
+    private static final String PROVIDED_PLUGINS_DOCUMENT = "<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n" +
+            "<providedPlugins xmlns=\"" + ProvidedPlugins.NAMESPACE + "\">\n" +
+            "    <providedPlugin id=\"a\" version=\"1.0.0\" impl=\"com.example.A\"/>\n" +
+            "    <providedPlugin id=\"b\" version=\"2.1.0\" impl=\"com.example.B\">\n" +
+            "        <pluginDependencies>\n" +
+            "            <pluginDependency id=\"a\" versionExpression=\"&gt;=1.0.0\"/>\n" +
+            "            <pluginDependency id=\"c\"/>\n" +
+            "        </pluginDependencies>\n" +
+            "        <providedServices>\n" +
+            "            <providedService>com.example.Service1</providedService>\n" +
+            "            <providedService>com.example.Outer$Service2</providedService>\n" +
+            "        </providedServices>\n" +
+            "    </providedPlugin>\n" +
+            "    <providedPlugin id=\"c\" version=\"0.1.0\" impl=\"com.example.C\">\n" +
+            "        <pluginDependencies/>\n" +
+            "    </providedPlugin>\n" +
+            "</providedPlugins>\n";
+
+    @Test
+    public void testPluginsMatchJaxb() throws Throwable {
+        assertPluginsMatch(PLUGINS_DOCUMENT.getBytes(StandardCharsets.UTF_8));
+        assertPluginsMatch(DescriptorParsingBenchmark.createPluginsDocument(3));
+    }
+
+    @Test
+    public void testProvidedPluginsMatchJaxb() throws Throwable {
+        assertProvidedPluginsMatch(PROVIDED_PLUGINS_DOCUMENT.getBytes(StandardCharsets.UTF_8));
+        assertProvidedPluginsMatch(DescriptorParsingBenchmark.createProvidedPluginsDocument(3));
+    }
+
+    private static void assertPluginsMatch(byte[] document) throws Throwable {
+        JaxbDescriptors.Plugins expected = JaxbDescriptors.readPlugins(JaxbDescriptors.createPluginsContext(), new ByteArrayInputStream(document));
+        PluginsConfiguration actual = PluginsConfiguration.load(new ByteArrayInputStream(document));
+        Assert.assertEquals(expected.plugins.size(), actual.getPlugins().size());
+        for (int i = 0; i < expected.plugins.size(); i++) {
+            JaxbDescriptors.Plugin expectedPlugin = expected.plugins.get(i);
+            PluginsConfiguration.PluginConfiguration actualPlugin = actual.getPlugins().get(i);
+            Assert.assertEquals(expectedPlugin.id, actualPlugin.getId());
+            Assert.assertEquals(expectedPlugin.file, actualPlugin.getFile());
+            Assert.assertEquals(Boolean.TRUE.equals(expectedPlugin.lazy), actualPlugin.isLazy());
+            Assert.assertEquals(expectedPlugin.initializeTimeout, actualPlugin.getInitializeTimeout());
+            Assert.assertEquals(expectedPlugin.startTimeout, actualPlugin.getStartTimeout());
+            Assert.assertEquals(expectedPlugin.stopTimeout, actualPlugin.getStopTimeout());
+            if (expectedPlugin.security == null) {
+                Assert.assertNull(actualPlugin.getSecurity());
+                continue;
+            }
+            List<JaxbDescriptors.Permission> expectedPermissions = expectedPlugin.security.permissions;
+            List<PluginsConfiguration.PluginPermission> actualPermissions = actualPlugin.getSecurity().getPermissions();
+            if (expectedPermissions == null) {
+                Assert.assertTrue(actualPermissions == null || actualPermissions.isEmpty());
+                continue;
+            }
+            Assert.assertEquals(expectedPermissions.size(), actualPermissions.size());
+            for (int j = 0; j < expectedPermissions.size(); j++) {
+                Assert.assertEquals(expectedPermissions.get(j).impl, actualPermissions.get(j).getImpl());
+                Assert.assertEquals(expectedPermissions.get(j).name, actualPermissions.get(j).getName());
+                Assert.assertEquals(expectedPermissions.get(j).action, actualPermissions.get(j).getAction());
+            }
+        }
+    }
+
+    private static void assertProvidedPluginsMatch(byte[] document) throws Throwable {
+        JaxbDescriptors.ProvidedPluginsDocument expected = JaxbDescriptors.readProvidedPlugins(JaxbDescriptors.createProvidedPluginsContext(), new ByteArrayInputStream(document));
+        ProvidedPlugins actual = ProvidedPlugins.load(new ByteArrayInputStream(document));
+        Assert.assertEquals(expected.providedPlugins.size(), actual.getProvidedPlugins().size());
+        for (int i = 0; i < expected.providedPlugins.size(); i++) {
+            JaxbDescriptors.ProvidedPlugin expectedPlugin = expected.providedPlugins.get(i);
+            ProvidedPlugins.ProvidedPlugin actualPlugin = actual.getProvidedPlugins().get(i);
+            Assert.assertEquals(expectedPlugin.id, actualPlugin.getId());
+            Assert.assertEquals(expectedPlugin.version, actualPlugin.getVersion());
+            Assert.assertEquals(expectedPlugin.impl, actualPlugin.getImpl());
+            Assert.assertEquals(expectedPlugin.providedServices, actualPlugin.getProvidedServices());
+            List<JaxbDescriptors.PluginDependency> expectedDependencies = expectedPlugin.pluginDependencies;
+            List<ProvidedPlugins.PluginDependency> actualDependencies = actualPlugin.getPluginDependencies();
+            if (expectedDependencies == null) {
+                Assert.assertNull(actualDependencies);
+                continue;
+            }
+            Assert.assertEquals(expectedDependencies.size(), actualDependencies.size());
+            for (int j = 0; j < expectedDependencies.size(); j++) {
+                Assert.assertEquals(expectedDependencies.get(j).id, actualDependencies.get(j).getId());
+                Assert.assertEquals(expectedDependencies.get(j).versionExpression, actualDependencies.get(j).getVersionExpression());
+            }
+        }
+    }
+}
@@ -19,10 +19,13 @@ package io.lunamc.platform;
 import io.lunamc.platform.config.PluginsConfiguration;
 import io.lunamc.platform.plugin.DefaultPluginManager;
 import io.lunamc.platform.plugin.PluginManager;
+import io.lunamc.platform.plugin.PluginRegistrationRequest;
 import io.lunamc.platform.service.DefaultServiceRegistry;
 import io.lunamc.platform.service.ServiceRegistry;
 import io.lunamc.platform.utils.PermissionUtils;
 import io.lunamc.platform.utils.InstanceUtils;
+import io.lunamc.platform.utils.StartupTracer;
+import io.lunamc.platform.utils.ThreadUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -32,11 +35,15 @@ import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.security.AllPermission;
 import java.security.Permission;
+import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Collections;
+import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.function.Function;
 
 public class LunaPlatform {
 
@@ -71,10 +78,23 @@ public class LunaPlatform {
         LOGGER.info("Starting Luna...");
         long timer = System.currentTimeMillis();
         threadKillExemptions.addAll(Thread.getAllStackTraces().keySet());
-        loadPlugins();
-        pluginManager.initializePlugins();
-        serviceRegistry.start();
-        pluginManager.startPlugins();
+        StartupTracer.startRecording();
+        try (StartupTracer.Span ignored = StartupTracer.span("phase", "start")) {
+            try (StartupTracer.Span ignored1 = StartupTracer.span("phase", "register plugins")) {
+                loadPlugins();
+            }
+            try (StartupTracer.Span ignored1 = StartupTracer.span("phase", "initialize plugins")) {
+                pluginManager.initializePlugins();
+            }
+            try (StartupTracer.Span ignored1 = StartupTracer.span("phase", "start services")) {
+                serviceRegistry.start();
+            }
+            try (StartupTracer.Span ignored1 = StartupTracer.span("phase", "start plugins")) {
+                pluginManager.startPlugins();
+            }
+        } finally {
+            StartupTracer.stopRecording();
+        }
         started = true;
         timer = System.currentTimeMillis() - timer;
         LOGGER.info("Luna started (took {} ms)", timer);
@@ -119,7 +139,7 @@ public class LunaPlatform {
 
     private void loadPlugins() {
         PluginsConfiguration pluginsConfiguration;
-        try {
+        try (StartupTracer.Span ignored = StartupTracer.span("config", "parse", PLUGINS_FILE.getName())) {
             pluginsConfiguration = loadPluginsConfiguration();
         } catch (IOException e) {
             LOGGER.error("Failed to load plugins declaration file", e);
@@ -130,38 +150,52 @@ public class LunaPlatform {
             LOGGER.warn("No plugins installed.");
             return;
         }
+        List<PluginRegistrationRequest> requests = new ArrayList<>(plugins.size());
         for (PluginsConfiguration.PluginConfiguration pluginConfiguration : plugins) {
             File pluginFile = new File(pluginConfiguration.getFile());
-            try {
-                if (!pluginFile.isFile())
-                    throw new FileNotFoundException(pluginFile.getAbsolutePath());
-                pluginManager.register(
-                        pluginFile,
-                        pluginConfiguration.getId(),
-                        (classLoader -> {
-                            PluginsConfiguration.PluginSecurity pluginSecurity = pluginConfiguration.getSecurity();
-                            if (pluginSecurity == null)
-                                return Collections.emptySet();
-                            List<PluginsConfiguration.PluginPermission> pluginPermissions = pluginSecurity.getPermissions();
-                            if (pluginPermissions == null)
-                                return Collections.emptySet();
-                            Set<Permission> result = new HashSet<>(pluginPermissions.size());
-                            boolean warned = false;
-                            for (PluginsConfiguration.PluginPermission pluginPermission : pluginPermissions) {
-                                Permission permission = PermissionUtils.createPermission(classLoader, pluginPermission.getImpl(), pluginPermission.getName(), pluginPermission.getAction());
-                                if (permission instanceof AllPermission && !warned) {
-                                    warned = true;
-                                    LOGGER.warn("Plugin {} from {} will have all permissions!", pluginConfiguration.getId(), pluginFile.getAbsolutePath());
-                                }
-                                result.add(permission);
-                            }
-                            return result;
-                        })
-                );
-            } catch (Throwable throwable) {
-                LOGGER.error("Error while registering " + pluginConfiguration.getId() + " from " + pluginConfiguration.getFile(), throwable);
+            if (!pluginFile.isFile()) {
+                LOGGER.error("Error while registering " + pluginConfiguration.getId() + " from " + pluginConfiguration.getFile(), new FileNotFoundException(pluginFile.getAbsolutePath()));
+                continue;
             }
+            requests.add(new PluginRegistrationRequest(pluginFile, pluginConfiguration.getId(), createPermissionsSupplier(pluginConfiguration, pluginFile), pluginConfiguration.isLazy(), createLifecycleTimeouts(pluginConfiguration)));
         }
+        for (Map.Entry<PluginRegistrationRequest, Throwable> failure : pluginManager.registerAll(requests).entrySet()) {
+            PluginRegistrationRequest request = failure.getKey();
+            LOGGER.error("Error while registering " + request.getId() + " from " + request.getFile(), failure.getValue());
+        }
+    }
+
+    private static Function<ClassLoader, Collection<Permission>> createPermissionsSupplier(PluginsConfiguration.PluginConfiguration pluginConfiguration, File pluginFile) {
+        return classLoader -> {
+            PluginsConfiguration.PluginSecurity pluginSecurity = pluginConfiguration.getSecurity();
+            if (pluginSecurity == null)
+                return Collections.emptySet();
+            List<PluginsConfiguration.PluginPermission> pluginPermissions = pluginSecurity.getPermissions();
+            if (pluginPermissions == null)
+                return Collections.emptySet();
+            Set<Permission> result = new HashSet<>(pluginPermissions.size());
+            boolean warned = false;
+            for (PluginsConfiguration.PluginPermission pluginPermission : pluginPermissions) {
+                Permission permission = PermissionUtils.createPermission(classLoader, pluginPermission.getImpl(), pluginPermission.getName(), pluginPermission.getAction());
+                if (permission instanceof AllPermission && !warned) {
+                    warned = true;
+                    LOGGER.warn("Plugin {} from {} will have all permissions!", pluginConfiguration.getId(), pluginFile.getAbsolutePath());
+                }
+                result.add(permission);
+            }
+            return result;
+        };
+    }
+
+    private static Map<String, Long> createLifecycleTimeouts(PluginsConfiguration.PluginConfiguration pluginConfiguration) {
+        Map<String, Long> result = new HashMap<>();
+        if (pluginConfiguration.getInitializeTimeout() != null)
+            result.put("initialize", pluginConfiguration.getInitializeTimeout());
+        if (pluginConfiguration.getStartTimeout() != null)
+            result.put("start", pluginConfiguration.getStartTimeout());
+        if (pluginConfiguration.getStopTimeout() != null)
+            result.put("stop", pluginConfiguration.getStopTimeout());
+        return result;
     }
 
     private PluginsConfiguration loadPluginsConfiguration() throws IOException {
@@ -185,14 +219,7 @@ public class LunaPlatform {
             if (!thread.isAlive()) {
                 LOGGER.info("Thread \"{}\" killed successfully", thread.getName());
             } else {
-                StringBuilder sb = new StringBuilder("Thread does not finished and will be interrupted: ")
-                        .append(thread.getName())
-                        .append(" (current state: ")
-                        .append(thread.getState())
-                        .append(')');
-                for (StackTraceElement stackTraceElement : entry.getValue())
-                    sb.append(System.lineSeparator()).append('\t').append(stackTraceElement);
-                LOGGER.warn(sb.toString());
+                LOGGER.warn("Thread does not finished and will be interrupted: {}", ThreadUtils.describe(thread, entry.getValue()));
 
                 thread.interrupt();
             }
@@ -16,23 +16,18 @@
 
 package io.lunamc.platform.config;
 
-import javax.xml.bind.JAXBContext;
-import javax.xml.bind.JAXBException;
-import javax.xml.bind.Unmarshaller;
-import javax.xml.bind.annotation.XmlAccessType;
-import javax.xml.bind.annotation.XmlAccessorType;
-import javax.xml.bind.annotation.XmlAttribute;
-import javax.xml.bind.annotation.XmlElement;
-import javax.xml.bind.annotation.XmlElementWrapper;
-import javax.xml.bind.annotation.XmlRootElement;
+import io.lunamc.platform.utils.XMLUtils;
+
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
 import java.io.InputStream;
+import java.util.ArrayList;
 import java.util.List;
 
-@XmlRootElement(namespace = "http://lunamc.io/plugin/1.0", name = "plugins")
-@XmlAccessorType(XmlAccessType.FIELD)
 public class PluginsConfiguration {
 
-    @XmlElement(namespace = "http://lunamc.io/plugin/1.0", name = "plugin")
+    public static final String NAMESPACE = "http://lunamc.io/plugin/1.0";
+
     private List<PluginConfiguration> plugins;
 
     public List<PluginConfiguration> getPlugins() {
@@ -45,24 +40,101 @@ public class PluginsConfiguration {
 
     public static PluginsConfiguration load(InputStream input) {
         try {
-            JAXBContext jaxbContext = JAXBContext.newInstance(PluginsConfiguration.class);
-            Unmarshaller unmarshaller = jaxbContext.createUnmarshaller();
-            return (PluginsConfiguration) unmarshaller.unmarshal(input);
-        } catch (JAXBException e) {
+            XMLStreamReader reader = XMLUtils.createStreamReader(input);
+            try {
+                XMLUtils.requireRootElement(reader, NAMESPACE, "plugins");
+                PluginsConfiguration result = new PluginsConfiguration();
+                while (XMLUtils.nextChildElement(reader)) {
+                    if (XMLUtils.isElement(reader, NAMESPACE, "plugin")) {
+                        if (result.plugins == null)
+                            result.plugins = new ArrayList<>();
+                        result.plugins.add(readPlugin(reader));
+                    } else {
+                        XMLUtils.skipElement(reader);
+                    }
+                }
+                return result;
+            } finally {
+                reader.close();
+            }
+        } catch (XMLStreamException e) {
             throw new RuntimeException(e);
         }
     }
 
-    @XmlAccessorType(XmlAccessType.FIELD)
+    private static PluginConfiguration readPlugin(XMLStreamReader reader) throws XMLStreamException {
+        PluginConfiguration plugin = new PluginConfiguration();
+        plugin.setFile(XMLUtils.getAttribute(reader, "file"));
+        plugin.setId(XMLUtils.getAttribute(reader, "id"));
+        String lazy = XMLUtils.getAttribute(reader, "lazy");
+        if (lazy != null)
+            plugin.setLazy(parseBoolean(lazy, reader));
+        plugin.setInitializeTimeout(parseLong(XMLUtils.getAttribute(reader, "initializeTimeout"), reader));
+        plugin.setStartTimeout(parseLong(XMLUtils.getAttribute(reader, "startTimeout"), reader));
+        plugin.setStopTimeout(parseLong(XMLUtils.getAttribute(reader, "stopTimeout"), reader));
+        while (XMLUtils.nextChildElement(reader)) {
+            if (XMLUtils.isElement(reader, NAMESPACE, "security"))
+                plugin.setSecurity(readSecurity(reader));
+            else
+                XMLUtils.skipElement(reader);
+        }
+        return plugin;
+    }
+
+    private static boolean parseBoolean(String value, XMLStreamReader reader) throws XMLStreamException {
+        switch (value.trim()) {
+            case "true":
+            case "1":
+                return true;
+            case "false":
+            case "0":
+                return false;
+            default:
+                throw new XMLStreamException("Invalid boolean: " + value, reader.getLocation());
+        }
+    }
+
+    private static Long parseLong(String value, XMLStreamReader reader) throws XMLStreamException {
+        if (value == null)
+            return null;
+        try {
+            return Long.parseLong(value.trim());
+        } catch (NumberFormatException e) {
+            throw new XMLStreamException("Invalid long: " + value, reader.getLocation(), e);
+        }
+    }
+
+    private static PluginSecurity readSecurity(XMLStreamReader reader) throws XMLStreamException {
+        PluginSecurity security = new PluginSecurity();
+        while (XMLUtils.nextChildElement(reader)) {
+            if (XMLUtils.isElement(reader, NAMESPACE, "permissions")) {
+                List<PluginPermission> permissions = new ArrayList<>();
+                while (XMLUtils.nextChildElement(reader)) {
+                    if (XMLUtils.isElement(reader, NAMESPACE, "permission")) {
+                        PluginPermission permission = new PluginPermission();
+                        permission.setImpl(XMLUtils.getAttribute(reader, "impl"));
+                        permission.setName(XMLUtils.getAttribute(reader, "name"));
+                        permission.setAction(XMLUtils.getAttribute(reader, "action"));
+                        permissions.add(permission);
+                    }
+                    XMLUtils.skipElement(reader);
+                }
+                security.setPermissions(permissions);
+            } else {
+                XMLUtils.skipElement(reader);
+            }
+        }
+        return security;
+    }
+
     public static class PluginConfiguration {
 
-        @XmlAttribute(name = "file")
         private String file;
-
-        @XmlAttribute(name = "id")
         private String id;
-
-        @XmlElement(namespace = "http://lunamc.io/plugin/1.0", name = "security")
+        private Boolean lazy;
+        private Long initializeTimeout;
+        private Long startTimeout;
+        private Long stopTimeout;
         private PluginSecurity security;
 
         public String getFile() {
@@ -81,6 +153,38 @@ public class PluginsConfiguration {
             this.id = id;
         }
 
+        public boolean isLazy() {
+            return lazy != null && lazy;
+        }
+
+        public void setLazy(boolean lazy) {
+            this.lazy = lazy;
+        }
+
+        public Long getInitializeTimeout() {
+            return initializeTimeout;
+        }
+
+        public void setInitializeTimeout(Long initializeTimeout) {
+            this.initializeTimeout = initializeTimeout;
+        }
+
+        public Long getStartTimeout() {
+            return startTimeout;
+        }
+
+        public void setStartTimeout(Long startTimeout) {
+            this.startTimeout = startTimeout;
+        }
+
+        public Long getStopTimeout() {
+            return stopTimeout;
+        }
+
+        public void setStopTimeout(Long stopTimeout) {
+            this.stopTimeout = stopTimeout;
+        }
+
         public PluginSecurity getSecurity() {
             return security;
         }
@@ -90,11 +194,8 @@ public class PluginsConfiguration {
         }
     }
 
-    @XmlAccessorType(XmlAccessType.FIELD)
     public static class PluginSecurity {
 
-        @XmlElementWrapper(namespace = "http://lunamc.io/plugin/1.0", name = "permissions")
-        @XmlElement(namespace = "http://lunamc.io/plugin/1.0", name = "permission")
         private List<PluginPermission> permissions;
 
         public List<PluginPermission> getPermissions() {
@@ -106,16 +207,10 @@ public class PluginsConfiguration {
         }
     }
 
-    @XmlAccessorType(XmlAccessType.FIELD)
     public static class PluginPermission {
 
-        @XmlAttribute(name = "impl")
         private String impl;
-
-        @XmlAttribute(name = "name")
         private String name;
-
-        @XmlAttribute(name = "action")
         private String action;
 
         public String getImpl() {
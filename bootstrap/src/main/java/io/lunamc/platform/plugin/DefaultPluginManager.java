@@ -18,32 +18,55 @@ package io.lunamc.platform.plugin;
 
 import io.lunamc.platform.internal.plugin.annotation.processor.ProvidedPlugins;
 import io.lunamc.platform.plugin.classloader.PluginClassLoader;
+import io.lunamc.platform.service.DelegatingSupplier;
 import io.lunamc.platform.service.ServiceRegistration;
 import io.lunamc.platform.service.ServiceRegistry;
 import io.lunamc.platform.service.ServiceRegistryPermission;
+import io.lunamc.platform.utils.ClassLoaderLeakDetector;
+import io.lunamc.platform.utils.CyclicDependencyException;
+import io.lunamc.platform.utils.DependencyGraph;
 import io.lunamc.platform.utils.InstanceUtils;
+import io.lunamc.platform.utils.NamedThreadFactory;
+import io.lunamc.platform.utils.Snapshot;
+import io.lunamc.platform.utils.StartupTracer;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.slf4j.Marker;
 import org.slf4j.MarkerFactory;
 
-import javax.xml.bind.JAXBContext;
-import javax.xml.bind.JAXBException;
-import javax.xml.bind.Unmarshaller;
 import java.io.File;
 import java.io.FilePermission;
 import java.io.IOException;
 import java.io.InputStream;
+import java.lang.ref.WeakReference;
 import java.security.Permission;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashMap;
 import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Objects;
 import java.util.Optional;
+import java.util.OptionalLong;
 import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CompletionStage;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BiFunction;
 import java.util.function.Function;
 import java.util.stream.Collectors;
 
@@ -53,15 +76,45 @@ public class DefaultPluginManager implements PluginManager {
     private static final Marker MARKER_PLUGIN = MarkerFactory.getMarker("PLUGIN");
     private static final Marker MARKER_SERVICES = MarkerFactory.getMarker("SERVICES");
     private static final File PLUGINS_DIRECTORY;
+    private static final int REGISTRATION_THREADS;
+    private static final int LIFECYCLE_THREADS;
+    private static final boolean DESCRIPTOR_CACHE;
+    private static final long UNLOAD_VERIFICATION_TIMEOUT;
+    private static final ThreadFactory UNLOAD_VERIFICATION_THREADS = new NamedThreadFactory("plugin-unload-verification", true);
+    private static final Map<String, Long> LIFECYCLE_TIMEOUTS;
+    private static final PluginLifecycleWatchdog.TimeoutPolicy TIMEOUT_POLICY;
+    private static final long SLOW_LIFECYCLE_THRESHOLD;
+    private static final int MAX_RETENTION_PATHS = 5;
+    private static final ThreadLocal<LazyActivation> CURRENT_ACTIVATION = new ThreadLocal<>();
 
     static {
         PLUGINS_DIRECTORY = new File(System.getProperty("io.lunamc.platform.pluginsDataDirectory", "plugins"));
+        REGISTRATION_THREADS = Integer.getInteger("io.lunamc.platform.pluginRegistrationThreads", Runtime.getRuntime().availableProcessors());
+        LIFECYCLE_THREADS = Integer.getInteger("io.lunamc.platform.pluginLifecycleThreads", Runtime.getRuntime().availableProcessors());
+        DESCRIPTOR_CACHE = !Boolean.getBoolean("io.lunamc.platform.disablePluginDescriptorCache");
+        // Diagnostics which force garbage collections and walk the heap, so disabled by default
+        UNLOAD_VERIFICATION_TIMEOUT = Long.getLong("io.lunamc.platform.pluginUnloadVerificationTimeout", 0);
+        Map<String, Long> lifecycleTimeouts = new HashMap<>();
+        lifecycleTimeouts.put("initialize", Long.getLong("io.lunamc.platform.pluginInitializeTimeout", 120_000));
+        lifecycleTimeouts.put("start", Long.getLong("io.lunamc.platform.pluginStartTimeout", 120_000));
+        lifecycleTimeouts.put("stop", Long.getLong("io.lunamc.platform.pluginStopTimeout", 30_000));
+        LIFECYCLE_TIMEOUTS = Collections.unmodifiableMap(lifecycleTimeouts);
+        TIMEOUT_POLICY = PluginLifecycleWatchdog.TimeoutPolicy.parse(System.getProperty("io.lunamc.platform.pluginTimeoutPolicy", "skip"));
+        SLOW_LIFECYCLE_THRESHOLD = Long.getLong("io.lunamc.platform.pluginSlowLifecycleThreshold", 10_000);
         LOGGER.info("Using plugins data directory {}", PLUGINS_DIRECTORY.getAbsolutePath());
     }
 
     private final ConcurrentMap<String, DefaultPluginContext> plugins = new ConcurrentHashMap<>();
+    private final Object pluginsSnapshotLock = new Object();
+    private volatile Snapshot<DefaultPluginDescription> pluginsSnapshot = Snapshot.empty();
+    private final ConcurrentMap<String, PluginRegistrationRequest> registrationRequests = new ConcurrentHashMap<>();
     private final ConcurrentMap<File, ProvidedPlugins> providedPluginsMap = new ConcurrentHashMap<>();
+    private final ProvidedPluginsCache providedPluginsCache = DESCRIPTOR_CACHE ? new ProvidedPluginsCache(new File(PLUGINS_DIRECTORY, ".providedPlugins.cache")) : null;
+    private final ConcurrentMap<String, LazyActivation> lazyActivations = new ConcurrentHashMap<>();
+    private final PluginLifecycleWatchdog watchdog = new PluginLifecycleWatchdog(TIMEOUT_POLICY, SLOW_LIFECYCLE_THRESHOLD);
+    private final ExecutorService activationExecutor = Executors.newCachedThreadPool(PluginLifecycleWatchdog.newThreadFactory("plugin-activation"));
     private volatile boolean initialized;
+    private volatile boolean pluginsStarted;
     private ServiceRegistry serviceRegistry;
 
     @Override
@@ -79,6 +132,7 @@ public class DefaultPluginManager implements PluginManager {
             initialized = false;
             throw e;
         }
+        watchdog.register();
     }
 
     @Override
@@ -88,9 +142,17 @@ public class DefaultPluginManager implements PluginManager {
             securityManager.checkPermission(PluginManagerPermission.PERMISSION_READ);
 
         checkState();
-        return plugins.values().stream()
-                .map(DefaultPluginContext::getDescription)
-                .collect(Collectors.toList());
+        return pluginsSnapshot.getElements();
+    }
+
+    @Override
+    public Snapshot<DefaultPluginDescription> getPluginsSnapshot() {
+        SecurityManager securityManager = System.getSecurityManager();
+        if (securityManager != null)
+            securityManager.checkPermission(PluginManagerPermission.PERMISSION_READ);
+
+        checkState();
+        return pluginsSnapshot;
     }
 
     @Override
@@ -110,30 +172,163 @@ public class DefaultPluginManager implements PluginManager {
             securityManager.checkPermission(PluginManagerPermission.PERMISSION_REGISTER);
 
         checkState();
-        ClassLoader applicationClassLoader = getClass().getClassLoader();
-        PluginClassLoader classLoader = new PluginClassLoader(file, applicationClassLoader);
-        ClassLoader previousClassLoader = Thread.currentThread().getContextClassLoader();
-        Thread.currentThread().setContextClassLoader(classLoader);
-
-        ProvidedPlugins providedPlugins;
         try {
-            providedPlugins = getProvidedPluginsForFile(classLoader, file);
-        } catch (Throwable throwable) {
-            throw new RuntimeException(throwable);
+            PreparedPlugin preparedPlugin = prepare(new PluginRegistrationRequest(file, id, permissionsSupplier));
+            try {
+                commit(preparedPlugin);
+            } catch (RuntimeException | Error e) {
+                discard(preparedPlugin);
+                throw e;
+            }
+        } finally {
+            publishPluginsSnapshot();
+            saveProvidedPluginsCache();
         }
-        ProvidedPlugins.ProvidedPlugin providedPlugin = providedPlugins.getProvidedPlugin(id)
-                .orElseThrow(() -> new PluginInitializationException("Unknown plugin \"" + id + "\" in file " + file.getAbsolutePath()));
+    }
+
+    @Override
+    public Map<PluginRegistrationRequest, Throwable> registerAll(Collection<PluginRegistrationRequest> requests) {
+        SecurityManager securityManager = System.getSecurityManager();
+        if (securityManager != null)
+            securityManager.checkPermission(PluginManagerPermission.PERMISSION_REGISTER);
+
+        checkState();
+        LOGGER.info(MARKER_PLUGIN, "Registering plugins...");
+        long timer = System.currentTimeMillis();
+        Map<PluginRegistrationRequest, Throwable> failures = new LinkedHashMap<>();
 
-        PluginDescriptor descriptor = providedPlugin.toPluginDescriptor();
-        String entryClassName = providedPlugin.getImpl();
+        // Open all plugin files and parse their descriptors concurrently
+        Map<String, PreparedPlugin> prepared = new LinkedHashMap<>();
+        ExecutorService executor = Executors.newFixedThreadPool(
+                Math.max(1, Math.min(REGISTRATION_THREADS, requests.size())),
+                new NamedThreadFactory("plugin-registration", true)
+        );
         try {
-            Class<?> entryClass;
+            Map<PluginRegistrationRequest, CompletableFuture<PreparedPlugin>> futures = new LinkedHashMap<>();
+            for (PluginRegistrationRequest request : requests)
+                futures.put(request, CompletableFuture.supplyAsync(() -> prepare(request), executor));
+            for (Map.Entry<PluginRegistrationRequest, CompletableFuture<PreparedPlugin>> entry : futures.entrySet()) {
+                PreparedPlugin preparedPlugin;
+                try {
+                    preparedPlugin = entry.getValue().join();
+                } catch (CompletionException e) {
+                    failures.put(entry.getKey(), e.getCause());
+                    continue;
+                }
+                String id = preparedPlugin.descriptor.getId();
+                if (plugins.containsKey(id) || prepared.containsKey(id)) {
+                    failures.put(entry.getKey(), new PluginInitializationException("Plugin already registered: " + id));
+                    discard(preparedPlugin);
+                } else {
+                    prepared.put(id, preparedPlugin);
+                }
+            }
+        } finally {
+            executor.shutdown();
+        }
+
+        // Resolve the dependencies of all plugins as a whole, so the order of the requests does not matter
+        List<String> order = null;
+        while (order == null) {
             try {
-                entryClass = classLoader.loadClassFromSelf(entryClassName);
-            } catch (ClassNotFoundException e) {
-                throw new PluginInitializationException("Plugin entry class " + entryClassName + " not found", e);
+                order = createDependencyGraph(prepared).getTopologicalOrder();
+            } catch (CyclicDependencyException e) {
+                PluginInitializationException exception = new PluginInitializationException("Cyclic dependency between plugins " + e.getCycle());
+                for (Object id : e.getCycle()) {
+                    PreparedPlugin preparedPlugin = prepared.remove(id);
+                    failures.put(preparedPlugin.request, exception);
+                    discard(preparedPlugin);
+                }
+            }
+        }
+        int counter = 0;
+        for (String id : order) {
+            PreparedPlugin preparedPlugin = prepared.get(id);
+            try {
+                commit(preparedPlugin);
+                counter++;
+            } catch (Throwable throwable) {
+                failures.put(preparedPlugin.request, throwable);
+                discard(preparedPlugin);
             }
+        }
+
+        publishPluginsSnapshot();
+        saveProvidedPluginsCache();
+        timer = System.currentTimeMillis() - timer;
+        LOGGER.info(MARKER_PLUGIN, "{} of {} plugins registered (took {} ms)", counter, requests.size(), timer);
+        return failures;
+    }
+
+    private PreparedPlugin prepare(PluginRegistrationRequest request) {
+        File file = request.getFile();
+        String id = request.getId();
+        PluginClassLoader classLoader = createClassLoader(file);
+        ClassLoader previousClassLoader = Thread.currentThread().getContextClassLoader();
+        Thread.currentThread().setContextClassLoader(classLoader);
+        boolean prepared = false;
+        try {
+            ProvidedPlugins providedPlugins;
+            try (StartupTracer.Span ignored = StartupTracer.span("plugin", "descriptor", id)) {
+                providedPlugins = getProvidedPluginsForFile(classLoader, file);
+            } catch (Throwable throwable) {
+                throw new RuntimeException(throwable);
+            }
+            ProvidedPlugins.ProvidedPlugin providedPlugin = providedPlugins.getProvidedPlugin(id)
+                    .orElseThrow(() -> new PluginInitializationException("Unknown plugin \"" + id + "\" in file " + file.getAbsolutePath()));
+
+            List<String> providedServices = providedPlugin.getProvidedServices();
+            boolean lazy = request.isLazy();
+            if (lazy && (providedServices == null || providedServices.isEmpty())) {
+                LOGGER.warn(MARKER_PLUGIN, "Plugin {} is registered lazily but does not declare provided services and will be activated eagerly", id);
+                lazy = false;
+            }
+            // The entry class of lazy plugins is not loaded until one of their services is demanded
+            Class<?> entryClass = null;
+            if (!lazy) {
+                String entryClassName = providedPlugin.getImpl();
+                try (StartupTracer.Span ignored = StartupTracer.span("plugin", "load entry class", id)) {
+                    entryClass = classLoader.loadClassFromSelf(entryClassName);
+                } catch (ClassNotFoundException e) {
+                    throw new PluginInitializationException("Plugin entry class " + entryClassName + " not found", e);
+                }
+            }
+            PreparedPlugin preparedPlugin = new PreparedPlugin(request, classLoader, providedPlugin, entryClass);
+            prepared = true;
+            return preparedPlugin;
+        } finally {
+            Thread.currentThread().setContextClassLoader(previousClassLoader);
+            if (!prepared)
+                closeClassLoader(classLoader, id);
+        }
+    }
+
+    PluginClassLoader createClassLoader(File file) {
+        return new PluginClassLoader(file, DefaultPluginManager.class.getClassLoader());
+    }
+
+    /**
+     * Closes the class loader of a plugin which could not be registered.
+     */
+    private static void discard(PreparedPlugin preparedPlugin) {
+        closeClassLoader(preparedPlugin.classLoader, preparedPlugin.descriptor.getId());
+    }
 
+    private static void closeClassLoader(PluginClassLoader classLoader, String id) {
+        try {
+            classLoader.close();
+        } catch (IOException e) {
+            LOGGER.warn(MARKER_PLUGIN, "Failed to close class loader of plugin {}", id, e);
+        }
+    }
+
+    private void commit(PreparedPlugin preparedPlugin) {
+        PluginClassLoader classLoader = preparedPlugin.classLoader;
+        PluginDescriptor descriptor = preparedPlugin.descriptor;
+        File file = preparedPlugin.request.getFile();
+        ClassLoader previousClassLoader = Thread.currentThread().getContextClassLoader();
+        Thread.currentThread().setContextClassLoader(classLoader);
+        try (StartupTracer.Span ignored = StartupTracer.span("plugin", "commit", descriptor.getId())) {
             if (plugins.containsKey(descriptor.getId()))
                 throw new PluginInitializationException("Plugin already registered: " + descriptor.getId());
 
@@ -154,7 +349,7 @@ public class DefaultPluginManager implements PluginManager {
 
             boolean global = (file == null);
             File dataDirectory = new File(PLUGINS_DIRECTORY, descriptor.getId());
-            Collection<Permission> additionalPermissions = permissionsSupplier.apply(classLoader);
+            Collection<Permission> additionalPermissions = preparedPlugin.request.getPermissionsSupplier().apply(classLoader);
             Set<Permission> permissions = new HashSet<>(additionalPermissions.size() + 2);
             permissions.addAll(additionalPermissions);
             permissions.add(new FilePermission(dataDirectory.getAbsolutePath() + File.separator + '-', "read,write,delete"));
@@ -171,8 +366,14 @@ public class DefaultPluginManager implements PluginManager {
             //noinspection ResultOfMethodCallIgnored
             dataDirectory.mkdirs();
             classLoader.initialize(pluginDescription);
+            for (Map.Entry<String, List<String>> ambiguousPackage : classLoader.getAmbiguousPackages().entrySet())
+                LOGGER.warn(MARKER_PLUGIN, "Package {} is contained in several dependencies of plugin {}, classes are loaded from the first one containing them: {}", ambiguousPackage.getKey(), descriptor.getId(), ambiguousPackage.getValue());
 
-            pluginDescription.setInstance(InstanceUtils.createInstance(entryClass, Plugin.class));
+            List<Class<?>> providedServices = null;
+            if (preparedPlugin.entryClass != null)
+                pluginDescription.setInstance(InstanceUtils.createInstance(preparedPlugin.entryClass, Plugin.class));
+            else
+                providedServices = resolveProvidedServices(preparedPlugin);
 
             DefaultPluginContext context = new DefaultPluginContext(
                     pluginDescription,
@@ -183,6 +384,24 @@ public class DefaultPluginManager implements PluginManager {
             DefaultPluginContext previous = plugins.putIfAbsent(descriptor.getId(), context);
             if (previous != null)
                 throw new PluginInitializationException("Plugin already registered: " + descriptor.getId());
+            LazyActivation activation = providedServices != null ? new LazyActivation(context, preparedPlugin.providedPlugin.getImpl()) : null;
+            try {
+                registrationRequests.put(descriptor.getId(), preparedPlugin.request);
+                if (activation != null) {
+                    for (Class<?> providedService : providedServices)
+                        bindLazily(activation, providedService);
+                    lazyActivations.put(descriptor.getId(), activation);
+                }
+            } catch (RuntimeException | Error e) {
+                // Rolled back, so the class loader of a failed plugin is never referenced by a registered one
+                if (activation != null)
+                    releaseLazyBindings(activation);
+                registrationRequests.remove(descriptor.getId());
+                plugins.remove(descriptor.getId(), context);
+                throw e;
+            }
+            if (activation != null)
+                LOGGER.info(MARKER_PLUGIN, "Plugin {} will be activated on first demand of {}", descriptor, preparedPlugin.providedPlugin.getProvidedServices());
 
             if (!additionalPermissions.isEmpty()) {
                 StringBuilder sb = new StringBuilder();
@@ -203,6 +422,191 @@ public class DefaultPluginManager implements PluginManager {
         }
     }
 
+    private static List<Class<?>> resolveProvidedServices(PreparedPlugin preparedPlugin) {
+        List<String> names = preparedPlugin.providedPlugin.getProvidedServices();
+        List<Class<?>> result = new ArrayList<>(names.size());
+        for (String name : names) {
+            try {
+                // Provided services are usually declared by dependencies, so those are asked first
+                result.add(preparedPlugin.classLoader.loadClassFromDependencies(name));
+            } catch (ClassNotFoundException e) {
+                try {
+                    result.add(preparedPlugin.classLoader.loadClassFromSelf(name));
+                } catch (ClassNotFoundException e1) {
+                    e1.addSuppressed(e);
+                    throw new PluginInitializationException("Provided service " + name + " not found", e1);
+                }
+            }
+        }
+        return result;
+    }
+
+    private <T> void bindLazily(LazyActivation activation, Class<T> serviceClass) {
+        ServiceRegistration<T> registration = serviceRegistry.getService(serviceClass);
+        registration.setLazyInstance(new DelegatingSupplier<T>() {
+            @Override
+            public T get() {
+                long version = registration.getVersion();
+                awaitActivation(activation);
+                if (registration.getVersion() == version)
+                    throw new IllegalStateException("Plugin " + activation.getId() + " did not bind its provided service " + serviceClass.getName());
+                return registration.getInstance();
+            }
+
+            @Override
+            public boolean isDelegate(Thread thread) {
+                return activation.threads.contains(thread);
+            }
+        });
+        activation.bindings.put(registration, registration.getVersion());
+    }
+
+    /**
+     * Activates a lazily registered plugin on the activation executor and waits for it without holding any lock, so
+     * the thread demanding a service is neither blocked by nor interrupted for the lifecycle of the plugin.
+     */
+    private void awaitActivation(LazyActivation activation) {
+        LazyActivation currentActivation = CURRENT_ACTIVATION.get();
+        if (currentActivation != null && (currentActivation == activation || dependsOn(activation.context.getDescription(), currentActivation.context.getDescription())))
+            throw new IllegalStateException("Circular activation of plugin " + activation.getId());
+        CompletableFuture<Void> future;
+        synchronized (activation) {
+            if (activation.future == null)
+                activation.future = CompletableFuture.runAsync(() -> activate(activation), activationExecutor);
+            future = activation.future;
+        }
+        try {
+            future.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException)
+                throw (RuntimeException) e.getCause();
+            throw e;
+        }
+        if (!activation.context.getDescription().isActive())
+            throw new IllegalStateException("Plugin " + activation.getId() + " is not active");
+    }
+
+    /**
+     * Activates a lazily registered plugin: its lazy dependencies are activated first, then the plugin is instantiated
+     * and initialized, the services it bound are started and it is started if plugins are already started.
+     */
+    private void activate(LazyActivation activation) {
+        DefaultPluginContext context = activation.context;
+        DefaultPluginDescription description = context.getDescription();
+        Thread thread = Thread.currentThread();
+        activation.threads.add(thread);
+        CURRENT_ACTIVATION.set(activation);
+        try {
+            for (PluginDescription dependency : description.getPluginDependencies()) {
+                LazyActivation dependencyActivation = lazyActivations.get(dependency.getDescriptor().getId());
+                if (dependencyActivation != null)
+                    awaitActivation(dependencyActivation);
+                if (!dependency.isActive())
+                    throw new IllegalStateException("Plugin " + activation.getId() + " can not be activated because its dependency " + dependency.getDescriptor() + " is not active");
+            }
+            LOGGER.info(MARKER_PLUGIN, "Activating plugin {} on demand...", description.getDescriptor());
+            description.setInstance(createInstance(description, activation.entryClassName));
+            if (!run(context, "initialize", DefaultPluginManager::initializePlugin, true))
+                throw new IllegalStateException("Plugin " + activation.getId() + " failed to initialize");
+            serviceRegistry.start(description.getClassLoader());
+            // Marked before checking whether plugins are started, so either this or startPlugins() starts it
+            activation.activated = true;
+            if (pluginsStarted && activation.started.compareAndSet(false, true))
+                run(context, "start", DefaultPluginManager::startPlugin, false);
+        } finally {
+            // Failed activations are done as well, their failure is rethrown to everyone waiting
+            activation.activated = true;
+            CURRENT_ACTIVATION.remove();
+            activation.threads.remove(thread);
+        }
+    }
+
+    private static boolean dependsOn(PluginDescription description, PluginDescription dependency) {
+        for (PluginDescription directDependency : description.getPluginDependencies()) {
+            if (directDependency == dependency || dependsOn(directDependency, dependency))
+                return true;
+        }
+        return false;
+    }
+
+    /**
+     * Unbinds the lazy bindings of a pending activation which were not replaced in the meantime.
+     */
+    @SuppressWarnings("unchecked")
+    private static void releaseLazyBindings(LazyActivation activation) {
+        for (Map.Entry<ServiceRegistration<?>, Long> entry : activation.bindings.entrySet()) {
+            ServiceRegistration<Object> registration = (ServiceRegistration<Object>) entry.getKey();
+            if (registration.getVersion() == entry.getValue())
+                registration.setInstance(null);
+        }
+    }
+
+    /**
+     * Returns the contexts which are initialized eagerly, including lazily registered plugins which those depend on.
+     * Such plugins are instantiated and not activated on demand anymore.
+     */
+    private List<DefaultPluginContext> getEagerPlugins(Collection<DefaultPluginContext> contexts) {
+        Set<DefaultPluginContext> result = new LinkedHashSet<>();
+        Deque<DefaultPluginContext> queue = new ArrayDeque<>();
+        for (DefaultPluginContext context : contexts) {
+            if (!lazyActivations.containsKey(context.getDescription().getDescriptor().getId()) && result.add(context))
+                queue.add(context);
+        }
+        while (!queue.isEmpty()) {
+            for (PluginDescription dependency : queue.poll().getDescription().getPluginDependencies()) {
+                LazyActivation activation = lazyActivations.get(dependency.getDescriptor().getId());
+                if (activation != null && promote(activation) && result.add(activation.context))
+                    queue.add(activation.context);
+            }
+        }
+        return new ArrayList<>(result);
+    }
+
+    private boolean promote(LazyActivation activation) {
+        synchronized (activation) {
+            // Already activated on demand
+            if (activation.future != null)
+                return false;
+            activation.future = CompletableFuture.completedFuture(null);
+            activation.activated = true;
+        }
+        lazyActivations.remove(activation.getId(), activation);
+        releaseLazyBindings(activation);
+        DefaultPluginDescription description = activation.context.getDescription();
+        LOGGER.info(MARKER_PLUGIN, "Plugin {} is activated eagerly because eagerly activated plugins depend on it", description.getDescriptor());
+        try {
+            description.setInstance(createInstance(description, activation.entryClassName));
+            return true;
+        } catch (RuntimeException e) {
+            LOGGER.error(MARKER_PLUGIN, "Plugin {} could not be instantiated", description.getDescriptor(), e);
+            return false;
+        }
+    }
+
+    /**
+     * Returns the contexts which are not started yet. Lazily registered plugins are only included if they were
+     * activated and are not started by their activation.
+     */
+    private List<DefaultPluginContext> getStartablePlugins(Collection<DefaultPluginContext> contexts) {
+        List<DefaultPluginContext> result = new ArrayList<>(contexts.size());
+        for (DefaultPluginContext context : contexts) {
+            LazyActivation activation = lazyActivations.get(context.getDescription().getDescriptor().getId());
+            if (activation == null || (activation.activated && activation.started.compareAndSet(false, true)))
+                result.add(context);
+        }
+        return result;
+    }
+
+    private static Plugin createInstance(DefaultPluginDescription description, String entryClassName) {
+        Class<?> entryClass;
+        try {
+            entryClass = description.getClassLoader().loadClassFromSelf(entryClassName);
+        } catch (ClassNotFoundException e) {
+            throw new PluginInitializationException("Plugin entry class " + entryClassName + " not found", e);
+        }
+        return InstanceUtils.createInstance(entryClass, Plugin.class);
+    }
+
     @Override
     public void initializePlugins() {
         SecurityManager securityManager = System.getSecurityManager();
@@ -223,6 +627,141 @@ public class DefaultPluginManager implements PluginManager {
         triggerStart();
     }
 
+    @Override
+    public synchronized List<String> unregister(String id) {
+        SecurityManager securityManager = System.getSecurityManager();
+        if (securityManager != null)
+            securityManager.checkPermission(PluginManagerPermission.PERMISSION_MANAGE);
+
+        checkState();
+        Map<String, WeakReference<PluginClassLoader>> classLoaders = unload(id);
+        verifyCollectedAsync(classLoaders);
+        return new ArrayList<>(classLoaders.keySet());
+    }
+
+    @Override
+    public synchronized Map<PluginRegistrationRequest, Throwable> reload(String id) {
+        SecurityManager securityManager = System.getSecurityManager();
+        if (securityManager != null)
+            securityManager.checkPermission(PluginManagerPermission.PERMISSION_MANAGE);
+
+        checkState();
+        List<PluginRegistrationRequest> requests = new ArrayList<>();
+        for (DefaultPluginContext context : getDependentsFirst(id))
+            requests.add(registrationRequests.get(context.getDescription().getDescriptor().getId()));
+        verifyCollectedAsync(unload(id));
+
+        Map<PluginRegistrationRequest, Throwable> failures = registerAll(requests);
+        List<DefaultPluginContext> reloaded = new ArrayList<>(requests.size());
+        for (PluginRegistrationRequest request : requests) {
+            DefaultPluginContext context = plugins.get(request.getId());
+            if (context != null)
+                reloaded.add(context);
+        }
+        List<DefaultPluginContext> eager = getEagerPlugins(reloaded);
+        runInDependencyOrder(eager, "initialize", DefaultPluginManager::initializePlugin, true);
+        for (DefaultPluginContext context : eager) {
+            if (context.getDescription().isActive())
+                serviceRegistry.start(context.getDescription().getClassLoader());
+        }
+        int counter = runInDependencyOrder(getStartablePlugins(eager), "start", DefaultPluginManager::startPlugin, false);
+        LOGGER.info(MARKER_PLUGIN, "{} of {} plugins reloaded", counter, requests.size());
+        return failures;
+    }
+
+    /**
+     * Stops and removes the plugin and its dependents. Only weak references to their class loaders are returned, so
+     * nothing of this frame retains them.
+     */
+    private Map<String, WeakReference<PluginClassLoader>> unload(String id) {
+        List<DefaultPluginContext> contexts = getDependentsFirst(id);
+        for (DefaultPluginContext context : contexts) {
+            DefaultPluginDescription description = context.getDescription();
+            if (description.isActive())
+                run(context, "stop", DefaultPluginManager::stopPlugin, false);
+            description.setActive(false);
+        }
+
+        Map<String, WeakReference<PluginClassLoader>> classLoaders = new LinkedHashMap<>();
+        for (DefaultPluginContext context : contexts) {
+            DefaultPluginDescription description = context.getDescription();
+            String pluginId = description.getDescriptor().getId();
+            PluginClassLoader classLoader = description.getClassLoader();
+            plugins.remove(pluginId);
+            LazyActivation activation = lazyActivations.remove(pluginId);
+            if (activation != null)
+                releaseLazyBindings(activation);
+            PluginRegistrationRequest request = registrationRequests.remove(pluginId);
+            if (request != null && request.getFile() != null)
+                providedPluginsMap.remove(request.getFile());
+            serviceRegistry.unregister(classLoader);
+            description.setInstance(null);
+            closeClassLoader(classLoader, pluginId);
+            classLoaders.put(pluginId, new WeakReference<>(classLoader));
+            LOGGER.info(MARKER_PLUGIN, "Plugin {} unregistered", description.getDescriptor());
+        }
+        publishPluginsSnapshot();
+        return classLoaders;
+    }
+
+    private List<DefaultPluginContext> getDependentsFirst(String id) {
+        DefaultPluginContext context = plugins.get(id);
+        if (context == null)
+            throw new IllegalArgumentException("Plugin not registered: " + id);
+        DependencyGraph<DefaultPluginContext> graph = createContextGraph(plugins.values());
+        Set<DefaultPluginContext> affected = new HashSet<>();
+        Deque<DefaultPluginContext> queue = new ArrayDeque<>();
+        affected.add(context);
+        queue.add(context);
+        while (!queue.isEmpty()) {
+            for (DefaultPluginContext dependent : graph.getDependents(queue.poll())) {
+                if (affected.add(dependent))
+                    queue.add(dependent);
+            }
+        }
+        List<DefaultPluginContext> result = graph.getTopologicalOrder().stream()
+                .filter(affected::contains)
+                .collect(Collectors.toList());
+        Collections.reverse(result);
+        return result;
+    }
+
+    /**
+     * Verifies on a separate thread that the class loaders are collected, so neither the caller nor the lock of the
+     * manager is held while waiting for garbage collections.
+     */
+    private void verifyCollectedAsync(Map<String, WeakReference<PluginClassLoader>> classLoaders) {
+        if (UNLOAD_VERIFICATION_TIMEOUT <= 0)
+            return;
+        UNLOAD_VERIFICATION_THREADS.newThread(() -> verifyCollected(classLoaders)).start();
+    }
+
+    private void verifyCollected(Map<String, WeakReference<PluginClassLoader>> classLoaders) {
+        try {
+            if (ClassLoaderLeakDetector.awaitCollection(classLoaders.values(), UNLOAD_VERIFICATION_TIMEOUT)) {
+                LOGGER.debug(MARKER_PLUGIN, "Class loaders of {} were collected", classLoaders.keySet());
+                return;
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return;
+        }
+        Map<String, Object> roots = new LinkedHashMap<>();
+        roots.put("plugin manager", this);
+        roots.put("service registry", serviceRegistry);
+        roots.put("application class loader", getClass().getClassLoader());
+        for (Thread thread : Thread.getAllStackTraces().keySet())
+            roots.put("thread \"" + thread.getName() + '"', thread);
+        for (Map.Entry<String, WeakReference<PluginClassLoader>> entry : classLoaders.entrySet()) {
+            PluginClassLoader classLoader = entry.getValue().get();
+            if (classLoader == null)
+                continue;
+            List<String> paths = ClassLoaderLeakDetector.findRetentionPaths(classLoader, roots, MAX_RETENTION_PATHS);
+            LOGGER.warn(MARKER_PLUGIN, "Class loader of plugin {} was not collected within {} ms after unregistering it, retained by:{}",
+                    entry.getKey(), UNLOAD_VERIFICATION_TIMEOUT, paths.isEmpty() ? " (no path found)" : "\n    " + String.join("\n    ", paths));
+        }
+    }
+
     @Override
     public void shutdown() {
         SecurityManager securityManager = System.getSecurityManager();
@@ -231,64 +770,206 @@ public class DefaultPluginManager implements PluginManager {
 
         checkState();
         plugins.clear();
+        publishPluginsSnapshot();
+        registrationRequests.clear();
+        lazyActivations.clear();
+        pluginsStarted = false;
+        activationExecutor.shutdown();
+        watchdog.unregister();
     }
 
     private void triggerInitialization() {
         LOGGER.info(MARKER_PLUGIN, "Initializing plugins...");
         long timer = System.currentTimeMillis();
-        int counter = 0;
-        Collection<DefaultPluginContext> plugins = this.plugins.values();
-        ClassLoader previousClassLoader = Thread.currentThread().getContextClassLoader();
-        try {
-            for (DefaultPluginContext context : plugins) {
-                DefaultPluginDescription description = context.getDescription();
-                PluginDescriptor descriptor = description.getDescriptor();
-                LOGGER.debug(MARKER_PLUGIN, "Initializing {}...", descriptor);
-                Thread.currentThread().setContextClassLoader(description.getClassLoader());
-                boolean erroneous = false;
-                try {
-                    description.getInstance().initialize(context);
-                } catch (Throwable throwable) {
-                    LOGGER.error(MARKER_PLUGIN, "Plugin {} will not be loaded because an exception occurred while initialize plugin", descriptor, throwable);
-                    erroneous = true;
-                }
-                description.setActive(!erroneous);
-                if (!erroneous) {
-                    counter++;
-                    LOGGER.debug(MARKER_PLUGIN, "Plugin {} initialized", descriptor);
-                }
-            }
-        } finally {
-            Thread.currentThread().setContextClassLoader(previousClassLoader);
-        }
+        List<DefaultPluginContext> plugins = getEagerPlugins(this.plugins.values());
+        int counter = runInDependencyOrder(plugins, "initialize", DefaultPluginManager::initializePlugin, true);
         timer = System.currentTimeMillis() - timer;
-        LOGGER.info(MARKER_PLUGIN, "{} of {} plugins initialized (took {} ms)", counter, plugins.size(), timer);
+        LOGGER.info(MARKER_PLUGIN, "{} of {} plugins initialized (took {} ms), {} are activated on demand", counter, plugins.size(), timer, lazyActivations.size());
         debugServiceRegistrations(serviceRegistry);
     }
 
     private void triggerStart() {
         LOGGER.info(MARKER_PLUGIN, "Starting plugins...");
         long timer = System.currentTimeMillis();
-        Collection<DefaultPluginContext> plugins = this.plugins.values();
-        ClassLoader previousClassLoader = Thread.currentThread().getContextClassLoader();
+        pluginsStarted = true;
+        int counter = runInDependencyOrder(getStartablePlugins(plugins.values()), "start", DefaultPluginManager::startPlugin, false);
+        timer = System.currentTimeMillis() - timer;
+        LOGGER.info(MARKER_PLUGIN, "{} plugins started (took {} ms)", counter, timer);
+    }
+
+    /**
+     * Applies an action to all plugins in dependency order. Each plugin waits only for its own dependencies, so
+     * independent plugins are processed concurrently and asynchronous actions of {@link AsyncPlugin}s overlap. Plugins
+     * failing the action are marked inactive, and so are their dependents, which are skipped.
+     *
+     * @param activate Whether plugins should be marked active if the action succeeds
+     * @return The number of plugins the action succeeded for
+     */
+    private int runInDependencyOrder(Collection<DefaultPluginContext> contexts, String actionName, BiFunction<Plugin, PluginContext, CompletionStage<Void>> action, boolean activate) {
+        DependencyGraph<DefaultPluginContext> graph = createContextGraph(contexts);
+        AtomicInteger counter = new AtomicInteger();
+        ExecutorService executor = Executors.newFixedThreadPool(
+                Math.max(1, Math.min(LIFECYCLE_THREADS, contexts.size())),
+                PluginLifecycleWatchdog.newThreadFactory("plugin-" + actionName)
+        );
+        AtomicBoolean aborted = new AtomicBoolean();
         try {
-            for (DefaultPluginContext context : plugins) {
+            Map<DefaultPluginContext, CompletableFuture<Void>> futures = graph.schedule(context -> {
                 DefaultPluginDescription description = context.getDescription();
-                PluginDescriptor descriptor = description.getDescriptor();
-                LOGGER.debug(MARKER_PLUGIN, "Starting {}...", descriptor);
-                Thread.currentThread().setContextClassLoader(description.getClassLoader());
-                try {
-                    description.getInstance().start(context);
-                } catch (Throwable throwable) {
-                    LOGGER.error(MARKER_PLUGIN, "Plugin {} has thrown an exception while starting.", descriptor, throwable);
+                if (aborted.get() || (!activate && !description.isActive()))
+                    return CompletableFuture.completedFuture(null);
+                Optional<PluginDescription> inactiveDependency = description.getPluginDependencies().stream()
+                        .filter(dependency -> !dependency.isActive())
+                        .findFirst();
+                if (inactiveDependency.isPresent()) {
+                    LOGGER.error(MARKER_PLUGIN, "Plugin {} will not {} because its dependency {} is not active", description.getDescriptor(), actionName, inactiveDependency.get().getDescriptor());
+                    description.setActive(false);
+                    return CompletableFuture.completedFuture(null);
                 }
-                LOGGER.debug(MARKER_PLUGIN, "Plugin {} started", descriptor);
-            }
+                return runAsync(context, actionName, action, activate, executor).handle((success, throwable) -> {
+                    if (throwable != null) {
+                        aborted.set(true);
+                        throw new CompletionException(throwable);
+                    }
+                    if (success)
+                        counter.incrementAndGet();
+                    return null;
+                });
+            }, false);
+            CompletableFuture.allOf(futures.values().toArray(new CompletableFuture[futures.size()])).join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException)
+                throw (RuntimeException) e.getCause();
+            throw e;
         } finally {
-            Thread.currentThread().setContextClassLoader(previousClassLoader);
+            executor.shutdown();
+        }
+        return counter.get();
+    }
+
+    /**
+     * Creates the dependency graph of the contexts. Dependencies on plugins which are not part of the contexts are
+     * omitted.
+     */
+    private DependencyGraph<DefaultPluginContext> createContextGraph(Collection<DefaultPluginContext> contexts) {
+        DependencyGraph<DefaultPluginContext> graph = new DependencyGraph<>();
+        for (DefaultPluginContext context : contexts)
+            graph.addNode(context);
+        for (DefaultPluginContext context : contexts) {
+            for (PluginDescription dependency : context.getDescription().getPluginDependencies()) {
+                DefaultPluginContext dependencyContext = plugins.get(dependency.getDescriptor().getId());
+                if (dependencyContext != null && graph.getNodes().contains(dependencyContext))
+                    graph.addDependency(context, dependencyContext);
+            }
+        }
+        return graph;
+    }
+
+    private boolean run(DefaultPluginContext context, String actionName, BiFunction<Plugin, PluginContext, CompletionStage<Void>> action, boolean activate) {
+        try {
+            return runAsync(context, actionName, action, activate, Runnable::run).join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException)
+                throw (RuntimeException) e.getCause();
+            throw e;
+        }
+    }
+
+    /**
+     * Applies an action to a plugin on an executor, watched by the lifecycle watchdog. The returned future completes
+     * once the stage returned by the action completes or the action times out. It only completes exceptionally if the
+     * boot is aborted because of a timeout.
+     *
+     * @return A future of whether the action succeeded
+     */
+    private CompletableFuture<Boolean> runAsync(DefaultPluginContext context, String actionName, BiFunction<Plugin, PluginContext, CompletionStage<Void>> action, boolean activate, Executor executor) {
+        DefaultPluginDescription description = context.getDescription();
+        PluginDescriptor descriptor = description.getDescriptor();
+        CompletableFuture<Boolean> result = new CompletableFuture<>();
+        PluginLifecycleWatchdog.Watch watch = watchdog.watch(description, actionName, getLifecycleTimeout(descriptor.getId(), actionName), result);
+        CompletableFuture.supplyAsync(() -> {
+            LOGGER.debug(MARKER_PLUGIN, "Plugin {}: {}...", descriptor, actionName);
+            Thread currentThread = Thread.currentThread();
+            ClassLoader previousClassLoader = currentThread.getContextClassLoader();
+            currentThread.setContextClassLoader(description.getClassLoader());
+            StartupTracer.Span span = StartupTracer.span("plugin", actionName, descriptor.getId());
+            watch.start();
+            CompletableFuture<Void> stage;
+            try {
+                stage = Objects.requireNonNull(action.apply(description.getInstance(), context), "Plugin returned no stage").toCompletableFuture();
+            } catch (Throwable throwable) {
+                stage = new CompletableFuture<>();
+                stage.completeExceptionally(throwable);
+            } finally {
+                watch.detach();
+                currentThread.setContextClassLoader(previousClassLoader);
+            }
+            return stage.whenComplete((ignore, throwable) -> span.close());
+        }, executor).thenCompose(Function.identity()).whenComplete((ignore, throwable) -> {
+            // The watchdog decided already if the action timed out
+            if (!watch.finish())
+                return;
+            if (throwable != null) {
+                if (throwable instanceof CompletionException && throwable.getCause() != null)
+                    throwable = throwable.getCause();
+                LOGGER.error(MARKER_PLUGIN, "Plugin {} will be deactivated because an exception occurred during {}", descriptor, actionName, throwable);
+                description.setActive(false);
+                result.complete(false);
+                return;
+            }
+            if (activate)
+                description.setActive(true);
+            LOGGER.debug(MARKER_PLUGIN, "Plugin {}: {} done", descriptor, actionName);
+            result.complete(true);
+        });
+        return result;
+    }
+
+    private long getLifecycleTimeout(String id, String phase) {
+        PluginRegistrationRequest request = registrationRequests.get(id);
+        if (request != null) {
+            OptionalLong timeout = request.getLifecycleTimeout(phase);
+            if (timeout.isPresent())
+                return timeout.getAsLong();
+        }
+        return LIFECYCLE_TIMEOUTS.getOrDefault(phase, 0L);
+    }
+
+    PluginLifecycleWatchdogMXBean getLifecycleWatchdog() {
+        return watchdog;
+    }
+
+    private static CompletionStage<Void> initializePlugin(Plugin plugin, PluginContext context) {
+        if (plugin instanceof AsyncPlugin)
+            return ((AsyncPlugin) plugin).initializeAsync(context);
+        plugin.initialize(context);
+        return CompletableFuture.completedFuture(null);
+    }
+
+    private static CompletionStage<Void> startPlugin(Plugin plugin, PluginContext context) {
+        if (plugin instanceof AsyncPlugin)
+            return ((AsyncPlugin) plugin).startAsync(context);
+        plugin.start(context);
+        return CompletableFuture.completedFuture(null);
+    }
+
+    private static CompletionStage<Void> stopPlugin(Plugin plugin, PluginContext context) {
+        plugin.stop(context);
+        return CompletableFuture.completedFuture(null);
+    }
+
+    /**
+     * Publishes a new snapshot of the registered plugins if they changed since the last snapshot.
+     */
+    private void publishPluginsSnapshot() {
+        synchronized (pluginsSnapshotLock) {
+            List<DefaultPluginDescription> descriptions = plugins.values().stream()
+                    .map(DefaultPluginContext::getDescription)
+                    .collect(Collectors.toList());
+            Snapshot<DefaultPluginDescription> snapshot = pluginsSnapshot;
+            if (!new HashSet<>(descriptions).equals(new HashSet<>(snapshot.getElements())))
+                pluginsSnapshot = snapshot.next(descriptions);
         }
-        timer = System.currentTimeMillis() - timer;
-        LOGGER.info(MARKER_PLUGIN, "{} plugins started (took {} ms)", plugins.size(), timer);
     }
 
     private void checkState() {
@@ -311,6 +992,10 @@ public class DefaultPluginManager implements PluginManager {
 
     private void debugServiceRegistrations(ServiceRegistry serviceRegistry) {
         for (ServiceRegistration<?> service : serviceRegistry.getServices()) {
+            if (!service.isRealized()) {
+                LOGGER.debug(MARKER_SERVICES, "{} is bound lazily and not realized yet", service.getService().getName());
+                continue;
+            }
             Object instance = service.getInstance();
             if (instance != null)
                 LOGGER.debug(MARKER_SERVICES, "{} is implemented by {}", service.getService().getName(), instance.getClass().getName());
@@ -319,15 +1004,88 @@ public class DefaultPluginManager implements PluginManager {
         }
     }
 
+    private void saveProvidedPluginsCache() {
+        if (providedPluginsCache != null)
+            providedPluginsCache.save();
+    }
+
+    private static DependencyGraph<String> createDependencyGraph(Map<String, PreparedPlugin> prepared) {
+        DependencyGraph<String> graph = new DependencyGraph<>();
+        for (PreparedPlugin preparedPlugin : prepared.values()) {
+            String id = preparedPlugin.descriptor.getId();
+            graph.addNode(id);
+            // Dependencies which are neither requested nor registered are reported when the plugin is committed
+            for (PluginDescriptor.PluginDependency dependency : preparedPlugin.descriptor.getPluginDependencies()) {
+                if (prepared.containsKey(dependency.getId()))
+                    graph.addDependency(id, dependency.getId());
+            }
+        }
+        return graph;
+    }
+
     private ProvidedPlugins getProvidedPluginsForFile(ClassLoader classLoader, File file) {
         return providedPluginsMap.computeIfAbsent(file, f -> {
-            try (InputStream in = classLoader.getResourceAsStream("LUNAMC-RESOURCES/providedPlugins.xml")) {
-                JAXBContext jaxbContext = JAXBContext.newInstance(ProvidedPlugins.class);
-                Unmarshaller unmarshaller = jaxbContext.createUnmarshaller();
-                return (ProvidedPlugins) unmarshaller.unmarshal(in);
-            } catch (IOException | JAXBException e) {
+            if (providedPluginsCache == null || f == null)
+                return loadProvidedPlugins(classLoader, f);
+            try {
+                return providedPluginsCache.get(f, () -> loadProvidedPlugins(classLoader, f));
+            } catch (Exception e) {
                 throw new RuntimeException(e);
             }
         });
     }
+
+    private static ProvidedPlugins loadProvidedPlugins(ClassLoader classLoader, File file) {
+        String name = file != null ? file.getName() : "classpath";
+        InputStream input;
+        // The plugin file is opened lazily by the first resource lookup
+        try (StartupTracer.Span ignored = StartupTracer.span("plugin", "open", name)) {
+            input = classLoader.getResourceAsStream("LUNAMC-RESOURCES/providedPlugins.xml");
+        }
+        try (InputStream in = input;
+             StartupTracer.Span ignored = StartupTracer.span("plugin", "parse descriptor", name)) {
+            return ProvidedPlugins.load(in);
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    private static class PreparedPlugin {
+
+        private final PluginRegistrationRequest request;
+        private final PluginClassLoader classLoader;
+        private final ProvidedPlugins.ProvidedPlugin providedPlugin;
+        private final PluginDescriptor descriptor;
+        private final Class<?> entryClass;
+
+        private PreparedPlugin(PluginRegistrationRequest request, PluginClassLoader classLoader, ProvidedPlugins.ProvidedPlugin providedPlugin, Class<?> entryClass) {
+            this.request = request;
+            this.classLoader = classLoader;
+            this.providedPlugin = providedPlugin;
+            this.descriptor = providedPlugin.toPluginDescriptor();
+            this.entryClass = entryClass;
+        }
+    }
+
+    private static class LazyActivation {
+
+        private final DefaultPluginContext context;
+        private final String entryClassName;
+        private final Map<ServiceRegistration<?>, Long> bindings = new LinkedHashMap<>();
+        private final AtomicBoolean started = new AtomicBoolean();
+        // Threads running the activation, which must not wait for the provided services
+        private final Set<Thread> threads = ConcurrentHashMap.newKeySet();
+        private volatile boolean activated;
+        // Guarded by the activation itself
+        private CompletableFuture<Void> future;
+
+        private LazyActivation(DefaultPluginContext context, String entryClassName) {
+            this.context = context;
+            this.entryClassName = entryClassName;
+        }
+
+        private String getId() {
+            return context.getDescription().getDescriptor().getId();
+        }
+    }
 }
@@ -0,0 +1,326 @@
+/*
+ *  Copyright 2017 LunaMC.io
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package io.lunamc.platform.plugin;
+
+import io.lunamc.platform.utils.NamedThreadFactory;
+import io.lunamc.platform.utils.ThreadUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.slf4j.Marker;
+import org.slf4j.MarkerFactory;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.MalformedObjectNameException;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Watches lifecycle actions of plugins. Actions exceeding the slow threshold are logged together with the stack of the
+ * thread running them. Actions exceeding their timeout either mark the plugin failed, so its dependents are skipped, or
+ * abort the lifecycle phase, depending on the {@link TimeoutPolicy}.
+ */
+class PluginLifecycleWatchdog implements PluginLifecycleWatchdogMXBean {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(PluginLifecycleWatchdog.class);
+    private static final Marker MARKER_PLUGIN = MarkerFactory.getMarker("PLUGIN");
+    private static final ObjectName OBJECT_NAME;
+
+    static {
+        try {
+            OBJECT_NAME = new ObjectName("io.lunamc.platform:type=PluginLifecycleWatchdog");
+        } catch (MalformedObjectNameException e) {
+            throw new AssertionError(e);
+        }
+    }
+
+    private static final ThreadLocal<Boolean> LIFECYCLE_THREAD = new ThreadLocal<>();
+
+    private final TimeoutPolicy timeoutPolicy;
+    private final long slowThreshold;
+    private final LongAdder slowActions = new LongAdder();
+    private final LongAdder timedOutActions = new LongAdder();
+    private final LongAdder skippedPlugins = new LongAdder();
+    private final LongAdder aborts = new LongAdder();
+    private final List<String> timedOut = new CopyOnWriteArrayList<>();
+    private final ConcurrentMap<String, Long> durations = new ConcurrentHashMap<>();
+    private final ConcurrentMap<String, Watch> running = new ConcurrentHashMap<>();
+
+    PluginLifecycleWatchdog(TimeoutPolicy timeoutPolicy, long slowThreshold) {
+        this.timeoutPolicy = timeoutPolicy;
+        this.slowThreshold = slowThreshold;
+    }
+
+    /**
+     * Creates a watch for a lifecycle action. If the action times out, the plugin is marked inactive and the result is
+     * completed with {@code false} or, if the boot is aborted, exceptionally.
+     *
+     * @param timeout The timeout in milliseconds, {@code 0} disables it
+     */
+    Watch watch(DefaultPluginDescription description, String phase, long timeout, CompletableFuture<Boolean> result) {
+        return new Watch(description, phase, timeout, result);
+    }
+
+    /**
+     * Creates a factory of threads which are owned by the plugin lifecycle. Only these threads are interrupted if an
+     * action times out, other threads running an action synchronously are left alone.
+     */
+    static ThreadFactory newThreadFactory(String prefix) {
+        ThreadFactory threadFactory = new NamedThreadFactory(prefix, true);
+        return runnable -> threadFactory.newThread(() -> {
+            LIFECYCLE_THREAD.set(Boolean.TRUE);
+            runnable.run();
+        });
+    }
+
+    void register() {
+        try {
+            MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            // A previous plugin manager of this JVM may still be registered
+            if (server.isRegistered(OBJECT_NAME))
+                server.unregisterMBean(OBJECT_NAME);
+            server.registerMBean(this, OBJECT_NAME);
+        } catch (JMException | SecurityException e) {
+            LOGGER.warn(MARKER_PLUGIN, "Plugin lifecycle metrics could not be registered", e);
+        }
+    }
+
+    void unregister() {
+        try {
+            MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            if (server.isRegistered(OBJECT_NAME))
+                server.unregisterMBean(OBJECT_NAME);
+        } catch (JMException | SecurityException e) {
+            LOGGER.warn(MARKER_PLUGIN, "Plugin lifecycle metrics could not be unregistered", e);
+        }
+    }
+
+    @Override
+    public String getTimeoutPolicy() {
+        return timeoutPolicy.name().toLowerCase(Locale.ROOT);
+    }
+
+    @Override
+    public long getSlowThreshold() {
+        return slowThreshold;
+    }
+
+    @Override
+    public long getSlowActionCount() {
+        return slowActions.sum();
+    }
+
+    @Override
+    public long getTimedOutActionCount() {
+        return timedOutActions.sum();
+    }
+
+    @Override
+    public long getSkippedPluginCount() {
+        return skippedPlugins.sum();
+    }
+
+    @Override
+    public long getAbortCount() {
+        return aborts.sum();
+    }
+
+    @Override
+    public List<String> getTimedOutActions() {
+        return new ArrayList<>(timedOut);
+    }
+
+    @Override
+    public Map<String, Long> getActionDurations() {
+        return new HashMap<>(durations);
+    }
+
+    @Override
+    public Map<String, Long> getRunningActions() {
+        Map<String, Long> result = new HashMap<>();
+        long now = System.nanoTime();
+        for (Map.Entry<String, Watch> entry : running.entrySet())
+            result.put(entry.getKey(), TimeUnit.NANOSECONDS.toMillis(now - entry.getValue().start));
+        return result;
+    }
+
+    enum TimeoutPolicy {
+
+        /**
+         * The plugin is marked failed and its dependents are skipped.
+         */
+        SKIP,
+
+        /**
+         * The plugin is marked failed and the lifecycle phase fails, which aborts the boot.
+         */
+        ABORT;
+
+        static TimeoutPolicy parse(String value) {
+            try {
+                return valueOf(value.trim().toUpperCase(Locale.ROOT));
+            } catch (IllegalArgumentException e) {
+                LOGGER.warn(MARKER_PLUGIN, "Unknown plugin timeout policy \"{}\", using {}", value, SKIP);
+                return SKIP;
+            }
+        }
+    }
+
+    class Watch {
+
+        private final DefaultPluginDescription description;
+        private final String phase;
+        private final String key;
+        private final long timeout;
+        private final CompletableFuture<Boolean> result;
+        private final AtomicBoolean done = new AtomicBoolean();
+        private final List<ScheduledFuture<?>> tasks = new ArrayList<>(2);
+        // Guarded by the watch itself
+        private Thread thread;
+        private boolean interruptible;
+        private boolean interrupted;
+        private long start;
+
+        private Watch(DefaultPluginDescription description, String phase, long timeout, CompletableFuture<Boolean> result) {
+            this.description = description;
+            this.phase = phase;
+            this.key = description.getDescriptor().getId() + ':' + phase;
+            this.timeout = timeout;
+            this.result = result;
+        }
+
+        /**
+         * Starts watching the action, which is run by the current thread.
+         */
+        void start() {
+            synchronized (this) {
+                thread = Thread.currentThread();
+                interruptible = LIFECYCLE_THREAD.get() != null;
+            }
+            start = System.nanoTime();
+            running.put(key, this);
+            synchronized (tasks) {
+                if (slowThreshold > 0 && (timeout <= 0 || slowThreshold < timeout))
+                    tasks.add(Scheduler.EXECUTOR.schedule(this::onSlow, slowThreshold, TimeUnit.MILLISECONDS));
+                if (timeout > 0)
+                    tasks.add(Scheduler.EXECUTOR.schedule(this::onTimeout, timeout, TimeUnit.MILLISECONDS));
+            }
+        }
+
+        /**
+         * Marks that the current thread returned from the action, which might still complete asynchronously.
+         */
+        void detach() {
+            boolean interrupted;
+            synchronized (this) {
+                thread = null;
+                interrupted = this.interrupted;
+            }
+            // The interrupt of a timeout must not hit the next work of the thread
+            if (interrupted)
+                Thread.interrupted();
+        }
+
+        /**
+         * Completes the watch.
+         *
+         * @return Whether the action completed in time, otherwise its result was already decided by the timeout
+         */
+        boolean finish() {
+            if (!done.compareAndSet(false, true))
+                return false;
+            stop();
+            durations.put(key, TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+            return true;
+        }
+
+        private void stop() {
+            running.remove(key, this);
+            synchronized (tasks) {
+                for (ScheduledFuture<?> task : tasks)
+                    task.cancel(false);
+            }
+        }
+
+        private void onSlow() {
+            if (done.get())
+                return;
+            slowActions.increment();
+            LOGGER.warn(MARKER_PLUGIN, "Plugin {} did not {} within {} ms: {}", description.getDescriptor(), phase, slowThreshold, describeThread());
+        }
+
+        private void onTimeout() {
+            if (!done.compareAndSet(false, true))
+                return;
+            stop();
+            timedOutActions.increment();
+            timedOut.add(key);
+            durations.put(key, TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+            String stack = describeThread();
+            synchronized (this) {
+                if (thread != null && interruptible) {
+                    interrupted = true;
+                    thread.interrupt();
+                }
+            }
+            description.setActive(false);
+            // Stopping is never aborted, the plugin is unregistered anyway
+            if (timeoutPolicy == TimeoutPolicy.ABORT && !"stop".equals(phase)) {
+                aborts.increment();
+                LOGGER.error(MARKER_PLUGIN, "Plugin {} did not {} within {} ms, aborting: {}", description.getDescriptor(), phase, timeout, stack);
+                result.completeExceptionally(new PluginInitializationException("Plugin " + description.getDescriptor().getId() + " did not " + phase + " within " + timeout + " ms"));
+            } else {
+                skippedPlugins.increment();
+                LOGGER.error(MARKER_PLUGIN, "Plugin {} did not {} within {} ms and will be deactivated: {}", description.getDescriptor(), phase, timeout, stack);
+                result.complete(false);
+            }
+        }
+
+        private String describeThread() {
+            Thread thread;
+            synchronized (this) {
+                thread = this.thread;
+            }
+            return thread != null ? ThreadUtils.describe(thread) : "the action completes asynchronously";
+        }
+    }
+
+    private static class Scheduler {
+
+        private static final ScheduledThreadPoolExecutor EXECUTOR;
+
+        static {
+            EXECUTOR = new ScheduledThreadPoolExecutor(1, new NamedThreadFactory("plugin-lifecycle-watchdog", true));
+            EXECUTOR.setRemoveOnCancelPolicy(true);
+        }
+    }
+}
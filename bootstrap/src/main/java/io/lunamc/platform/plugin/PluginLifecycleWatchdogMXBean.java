@@ -0,0 +1,65 @@
+/*
+ *  Copyright 2017 LunaMC.io
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package io.lunamc.platform.plugin;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Metrics of the lifecycle actions (initialize, start, stop) of plugins. Actions are keyed by {@code <plugin id>:<phase>}.
+ */
+public interface PluginLifecycleWatchdogMXBean {
+
+    String getTimeoutPolicy();
+
+    long getSlowThreshold();
+
+    /**
+     * @return The number of actions which exceeded the slow threshold
+     */
+    long getSlowActionCount();
+
+    /**
+     * @return The number of actions which exceeded their timeout
+     */
+    long getTimedOutActionCount();
+
+    /**
+     * @return The number of plugins which were marked failed because an action timed out
+     */
+    long getSkippedPluginCount();
+
+    /**
+     * @return The number of times the boot was aborted because an action timed out
+     */
+    long getAbortCount();
+
+    /**
+     * @return The actions which exceeded their timeout
+     */
+    List<String> getTimedOutActions();
+
+    /**
+     * @return The durations of completed actions in milliseconds
+     */
+    Map<String, Long> getActionDurations();
+
+    /**
+     * @return The time running actions are pending in milliseconds
+     */
+    Map<String, Long> getRunningActions();
+}
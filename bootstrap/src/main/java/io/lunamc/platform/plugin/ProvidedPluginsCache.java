@@ -0,0 +1,318 @@
+/*
+ *  Copyright 2017 LunaMC.io
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package io.lunamc.platform.plugin;
+
+import io.lunamc.platform.internal.plugin.annotation.processor.ProvidedPlugins;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.slf4j.Marker;
+import org.slf4j.MarkerFactory;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.zip.CRC32;
+
+/**
+ * Persists the {@link ProvidedPlugins} of plugin files across restarts, so unchanged plugin files do not have to be
+ * searched and parsed again. Entries are keyed by the absolute path of the file and validated by its size, its
+ * modification time and a hash of its content. For zip files the hash covers the central directory only, which
+ * contains the checksums of all entries, so the file does not have to be read completely.
+ * <p>
+ * The cache file starts with a magic number and a format version and ends with a CRC32 of its content. Corrupt or
+ * outdated cache files are discarded.
+ */
+class ProvidedPluginsCache {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(ProvidedPluginsCache.class);
+    private static final Marker MARKER_PLUGIN = MarkerFactory.getMarker("PLUGIN");
+    private static final int MAGIC = 0x4C504443;
+    private static final int FORMAT_VERSION = 2;
+    private static final int END_OF_CENTRAL_DIRECTORY_SIGNATURE = 0x06054B50;
+    private static final int END_OF_CENTRAL_DIRECTORY_SIZE = 22;
+    private static final int MAX_COMMENT_SIZE = 0xFFFF;
+
+    private final File file;
+    private final Map<String, Entry> entries = new ConcurrentHashMap<>();
+    private volatile boolean loaded;
+    private volatile boolean dirty;
+
+    ProvidedPluginsCache(File file) {
+        this.file = file;
+    }
+
+    /**
+     * Returns the cached descriptors of a plugin file, or loads and caches them if the file is unknown or has changed.
+     */
+    ProvidedPlugins get(File pluginFile, Callable<ProvidedPlugins> loader) throws Exception {
+        ensureLoaded();
+        String path = pluginFile.getAbsolutePath();
+        long size = pluginFile.length();
+        long lastModified = pluginFile.lastModified();
+        byte[] hash = hash(pluginFile);
+        Entry entry = entries.get(path);
+        if (entry != null && entry.matches(size, lastModified, hash))
+            return entry.providedPlugins;
+
+        LOGGER.debug(MARKER_PLUGIN, "Descriptors of {} are not cached or outdated", path);
+        ProvidedPlugins providedPlugins = loader.call();
+        entries.put(path, new Entry(path, size, lastModified, hash, providedPlugins));
+        dirty = true;
+        return providedPlugins;
+    }
+
+    /**
+     * Writes the cache if it has changed. Entries of plugin files which do not exist anymore are dropped. The file is
+     * replaced atomically, so a crash never leaves a partially written cache behind.
+     */
+    synchronized void save() {
+        if (!dirty)
+            return;
+        entries.values().removeIf(entry -> !new File(entry.path).isFile());
+        try {
+            Path target = file.toPath();
+            Files.createDirectories(target.toAbsolutePath().getParent());
+            Path temporary = Files.createTempFile(target.toAbsolutePath().getParent(), file.getName(), ".tmp");
+            try {
+                Files.write(temporary, serialize());
+                try {
+                    Files.move(temporary, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+                } catch (AtomicMoveNotSupportedException e) {
+                    Files.move(temporary, target, StandardCopyOption.REPLACE_EXISTING);
+                }
+            } finally {
+                Files.deleteIfExists(temporary);
+            }
+            dirty = false;
+        } catch (IOException e) {
+            LOGGER.warn(MARKER_PLUGIN, "Failed to write plugin descriptor cache " + file.getAbsolutePath(), e);
+        }
+    }
+
+    private void ensureLoaded() {
+        if (loaded)
+            return;
+        synchronized (this) {
+            if (loaded)
+                return;
+            if (file.isFile()) {
+                try {
+                    deserialize(Files.readAllBytes(file.toPath()));
+                } catch (IOException | RuntimeException e) {
+                    LOGGER.warn(MARKER_PLUGIN, "Plugin descriptor cache {} is corrupt and will be rebuilt: {}", file.getAbsolutePath(), e.toString());
+                    entries.clear();
+                    dirty = true;
+                }
+            }
+            loaded = true;
+        }
+    }
+
+    private byte[] serialize() throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        out.writeInt(MAGIC);
+        out.writeInt(FORMAT_VERSION);
+        out.writeInt(entries.size());
+        for (Entry entry : entries.values()) {
+            out.writeUTF(entry.path);
+            out.writeLong(entry.size);
+            out.writeLong(entry.lastModified);
+            out.writeShort(entry.hash.length);
+            out.write(entry.hash);
+            List<ProvidedPlugins.ProvidedPlugin> providedPlugins = entry.providedPlugins.getProvidedPlugins();
+            out.writeInt(providedPlugins != null ? providedPlugins.size() : -1);
+            if (providedPlugins == null)
+                continue;
+            for (ProvidedPlugins.ProvidedPlugin providedPlugin : providedPlugins) {
+                writeString(out, providedPlugin.getId());
+                writeString(out, providedPlugin.getVersion());
+                writeString(out, providedPlugin.getImpl());
+                List<ProvidedPlugins.PluginDependency> dependencies = providedPlugin.getPluginDependencies();
+                out.writeInt(dependencies != null ? dependencies.size() : -1);
+                if (dependencies != null) {
+                    for (ProvidedPlugins.PluginDependency dependency : dependencies) {
+                        writeString(out, dependency.getId());
+                        writeString(out, dependency.getVersionExpression());
+                    }
+                }
+                List<String> providedServices = providedPlugin.getProvidedServices();
+                out.writeInt(providedServices != null ? providedServices.size() : -1);
+                if (providedServices != null) {
+                    for (String providedService : providedServices)
+                        writeString(out, providedService);
+                }
+            }
+        }
+        out.flush();
+        CRC32 crc = new CRC32();
+        crc.update(bytes.toByteArray());
+        out.writeLong(crc.getValue());
+        out.flush();
+        return bytes.toByteArray();
+    }
+
+    private void deserialize(byte[] data) throws IOException {
+        if (data.length < Long.BYTES)
+            throw new IOException("Truncated file");
+        CRC32 crc = new CRC32();
+        crc.update(data, 0, data.length - Long.BYTES);
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(data));
+        in.skipBytes(data.length - Long.BYTES);
+        if (in.readLong() != crc.getValue())
+            throw new IOException("Checksum mismatch");
+
+        in = new DataInputStream(new ByteArrayInputStream(data, 0, data.length - Long.BYTES));
+        if (in.readInt() != MAGIC)
+            throw new IOException("Invalid magic number");
+        int version = in.readInt();
+        if (version != FORMAT_VERSION)
+            throw new IOException("Unsupported format version " + version);
+        int entryCount = in.readInt();
+        for (int i = 0; i < entryCount; i++) {
+            String path = in.readUTF();
+            long size = in.readLong();
+            long lastModified = in.readLong();
+            byte[] hash = new byte[in.readUnsignedShort()];
+            in.readFully(hash);
+            ProvidedPlugins providedPlugins = new ProvidedPlugins();
+            int pluginCount = in.readInt();
+            if (pluginCount >= 0) {
+                List<ProvidedPlugins.ProvidedPlugin> plugins = new ArrayList<>(pluginCount);
+                for (int j = 0; j < pluginCount; j++) {
+                    String id = readString(in);
+                    String pluginVersion = readString(in);
+                    String impl = readString(in);
+                    int dependencyCount = in.readInt();
+                    List<ProvidedPlugins.PluginDependency> dependencies = null;
+                    if (dependencyCount >= 0) {
+                        dependencies = new ArrayList<>(dependencyCount);
+                        for (int k = 0; k < dependencyCount; k++)
+                            dependencies.add(ProvidedPlugins.PluginDependency.create(readString(in), readString(in)));
+                    }
+                    ProvidedPlugins.ProvidedPlugin providedPlugin = ProvidedPlugins.ProvidedPlugin.create(id, pluginVersion, impl, dependencies);
+                    int providedServiceCount = in.readInt();
+                    if (providedServiceCount >= 0) {
+                        List<String> providedServices = new ArrayList<>(providedServiceCount);
+                        for (int k = 0; k < providedServiceCount; k++)
+                            providedServices.add(readString(in));
+                        providedPlugin.setProvidedServices(providedServices);
+                    }
+                    plugins.add(providedPlugin);
+                }
+                providedPlugins.setProvidedPlugins(plugins);
+            }
+            entries.put(path, new Entry(path, size, lastModified, hash, providedPlugins));
+        }
+        if (in.available() > 0)
+            throw new IOException("Trailing data");
+    }
+
+    private static void writeString(DataOutputStream out, String value) throws IOException {
+        out.writeBoolean(value != null);
+        if (value != null)
+            out.writeUTF(value);
+    }
+
+    private static String readString(DataInputStream in) throws IOException {
+        return in.readBoolean() ? in.readUTF() : null;
+    }
+
+    /**
+     * Hashes the central directory of a zip file, or the whole content if the file is not a zip file.
+     */
+    static byte[] hash(File pluginFile) throws IOException {
+        MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+        try (RandomAccessFile in = new RandomAccessFile(pluginFile, "r")) {
+            long length = in.length();
+            int tailLength = (int) Math.min(length, END_OF_CENTRAL_DIRECTORY_SIZE + MAX_COMMENT_SIZE);
+            byte[] tail = new byte[tailLength];
+            in.seek(length - tailLength);
+            in.readFully(tail);
+            for (int i = tailLength - END_OF_CENTRAL_DIRECTORY_SIZE; i >= 0; i--) {
+                if (readIntLittleEndian(tail, i) != END_OF_CENTRAL_DIRECTORY_SIGNATURE)
+                    continue;
+                long directorySize = readIntLittleEndian(tail, i + 12) & 0xFFFFFFFFL;
+                long directoryOffset = readIntLittleEndian(tail, i + 16) & 0xFFFFFFFFL;
+                if (directoryOffset + directorySize > length - tailLength + i)
+                    continue;
+                byte[] directory = new byte[(int) directorySize];
+                in.seek(directoryOffset);
+                in.readFully(directory);
+                digest.update(directory);
+                digest.update(tail, i, tailLength - i);
+                return digest.digest();
+            }
+
+            byte[] buffer = new byte[8192];
+            in.seek(0);
+            int read;
+            while ((read = in.read(buffer)) != -1)
+                digest.update(buffer, 0, read);
+            return digest.digest();
+        }
+    }
+
+    private static int readIntLittleEndian(byte[] data, int offset) {
+        return (data[offset] & 0xFF) |
+                (data[offset + 1] & 0xFF) << 8 |
+                (data[offset + 2] & 0xFF) << 16 |
+                (data[offset + 3] & 0xFF) << 24;
+    }
+
+    private static class Entry {
+
+        private final String path;
+        private final long size;
+        private final long lastModified;
+        private final byte[] hash;
+        private final ProvidedPlugins providedPlugins;
+
+        private Entry(String path, long size, long lastModified, byte[] hash, ProvidedPlugins providedPlugins) {
+            this.path = path;
+            this.size = size;
+            this.lastModified = lastModified;
+            this.hash = hash;
+            this.providedPlugins = providedPlugins;
+        }
+
+        private boolean matches(long size, long lastModified, byte[] hash) {
+            return this.size == size && this.lastModified == lastModified && Arrays.equals(this.hash, hash);
+        }
+    }
+}
@@ -0,0 +1,481 @@
+/*
+ *  Copyright 2017 LunaMC.io
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package io.lunamc.platform.plugin.classloader;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.net.URLConnection;
+import java.net.URLStreamHandler;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.security.AccessController;
+import java.security.CodeSigner;
+import java.security.CodeSource;
+import java.security.PrivilegedAction;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.jar.Attributes;
+import java.util.jar.JarFile;
+import java.util.jar.Manifest;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+import java.util.zip.ZipException;
+
+/**
+ * A read-only view of a jar file which is mapped into memory once. The central directory is parsed into a sorted
+ * index, stored entries are returned as slices of the mapping and deflated entries are inflated into a single array.
+ * Resources are served as {@code jar:} URLs which read from the mapping as well, so the jar is never opened as a
+ * {@link JarFile}.
+ */
+final class MappedJar {
+
+    private static final int END_HEADER = 0x06054b50;
+    private static final int CENTRAL_HEADER = 0x02014b50;
+    private static final int LOCAL_HEADER = 0x04034b50;
+    private static final int END_HEADER_SIZE = 22;
+    private static final int CENTRAL_HEADER_SIZE = 46;
+    private static final int LOCAL_HEADER_SIZE = 30;
+    private static final int MAX_COMMENT_SIZE = 0xffff;
+    private static final int STORED = 0;
+    private static final int DEFLATED = 8;
+    private static final int ENCRYPTED = 0x1;
+    private static final String VERSIONS_DIRECTORY = "META-INF/versions/";
+    // Local header offset, compressed size, size and compression method of each entry
+    private static final int ENTRY_FIELDS = 4;
+
+    private final URL url;
+    private final ByteBuffer buffer;
+    private final String[] names;
+    private final int[] entries;
+    private final String[] versionPrefixes;
+    private final Manifest manifest;
+    private final CodeSource codeSource;
+    private final String resourcePrefix;
+    private final URLStreamHandler resourceHandler = new ResourceHandler();
+
+    private MappedJar(URL url, ByteBuffer buffer, String[] names, int[] entries, int runtimeVersion) throws IOException {
+        this.url = url;
+        this.buffer = buffer;
+        this.names = names;
+        this.entries = entries;
+        this.codeSource = new CodeSource(url, (CodeSigner[]) null);
+        this.resourcePrefix = url.toExternalForm() + "!/";
+        ByteBuffer manifestBuffer = read(find(JarFile.MANIFEST_NAME));
+        if (manifestBuffer != null) {
+            byte[] bytes = new byte[manifestBuffer.remaining()];
+            manifestBuffer.get(bytes);
+            manifest = new Manifest(new ByteArrayInputStream(bytes));
+        } else {
+            manifest = null;
+        }
+        versionPrefixes = isMultiRelease(manifest) ? getVersionPrefixes(names, runtimeVersion) : new String[0];
+    }
+
+    /**
+     * Maps a jar file into memory.
+     *
+     * @return The mapped jar or {@code null} if the jar uses features which are not supported, like signatures or
+     *         ZIP64 extensions
+     * @throws IOException If the file can not be read or is not a valid jar
+     */
+    static MappedJar open(File file, URL url) throws IOException {
+        return open(file, url, getRuntimeVersion());
+    }
+
+    /**
+     * Maps a jar file into memory, selecting the versioned entries of multi-release jars for the given Java version.
+     */
+    static MappedJar open(File file, URL url, int runtimeVersion) throws IOException {
+        ByteBuffer buffer;
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            long size = channel.size();
+            if (size > Integer.MAX_VALUE)
+                return null;
+            // The mapping stays valid after the channel is closed
+            MappedByteBuffer mapped = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+            buffer = mapped.order(ByteOrder.LITTLE_ENDIAN);
+        }
+
+        int end = findEndHeader(buffer);
+        if (end < 0)
+            throw new ZipException("End of central directory not found in " + file);
+        int count = getUnsignedShort(buffer, end + 10);
+        long directorySize = getUnsignedInt(buffer, end + 12);
+        long directoryOffset = getUnsignedInt(buffer, end + 16);
+        if (count == 0xffff || directorySize == 0xffffffffL || directoryOffset == 0xffffffffL)
+            return null;
+        if (directoryOffset + directorySize > end)
+            throw new ZipException("Invalid central directory in " + file);
+
+        List<Entry> parsed = new ArrayList<>(count);
+        int position = (int) directoryOffset;
+        for (int i = 0; i < count; i++) {
+            if (position + CENTRAL_HEADER_SIZE > end || buffer.getInt(position) != CENTRAL_HEADER)
+                throw new ZipException("Invalid central directory entry in " + file);
+            int flags = getUnsignedShort(buffer, position + 8);
+            int method = getUnsignedShort(buffer, position + 10);
+            long compressedSize = getUnsignedInt(buffer, position + 20);
+            long entrySize = getUnsignedInt(buffer, position + 24);
+            int nameLength = getUnsignedShort(buffer, position + 28);
+            int extraLength = getUnsignedShort(buffer, position + 30);
+            int commentLength = getUnsignedShort(buffer, position + 32);
+            long headerOffset = getUnsignedInt(buffer, position + 42);
+            String name = getString(buffer, position + CENTRAL_HEADER_SIZE, nameLength);
+            position += CENTRAL_HEADER_SIZE + nameLength + extraLength + commentLength;
+
+            if ((flags & ENCRYPTED) != 0 || compressedSize > Integer.MAX_VALUE || entrySize > Integer.MAX_VALUE || headerOffset > Integer.MAX_VALUE)
+                return null;
+            if (isSignature(name))
+                return null;
+            if (name.endsWith("/"))
+                continue;
+            parsed.add(new Entry(name, (int) headerOffset, (int) compressedSize, (int) entrySize, method));
+        }
+
+        parsed.sort(null);
+        String[] names = new String[parsed.size()];
+        int[] entries = new int[parsed.size() * ENTRY_FIELDS];
+        for (int i = 0; i < names.length; i++) {
+            Entry entry = parsed.get(i);
+            names[i] = entry.name;
+            int offset = i * ENTRY_FIELDS;
+            entries[offset] = entry.headerOffset;
+            entries[offset + 1] = entry.compressedSize;
+            entries[offset + 2] = entry.size;
+            entries[offset + 3] = entry.method;
+        }
+        return new MappedJar(url, buffer, names, entries, runtimeVersion);
+    }
+
+    URL getUrl() {
+        return url;
+    }
+
+    CodeSource getCodeSource() {
+        return codeSource;
+    }
+
+    Manifest getManifest() {
+        return manifest;
+    }
+
+    boolean contains(String name) {
+        return findVersioned(name) >= 0;
+    }
+
+    /**
+     * Reads an entry, preferring the versioned entry of multi-release jars.
+     *
+     * @return The content or {@code null} if there is no such entry
+     */
+    ByteBuffer read(String name) throws IOException {
+        return read(findVersioned(name));
+    }
+
+    /**
+     * Returns a {@code jar:} URL of an entry, preferring the versioned entry of multi-release jars. Connections to it
+     * read from the mapping.
+     *
+     * @return The URL or {@code null} if there is no such entry
+     */
+    URL getResource(String name) {
+        if (!contains(name))
+            return null;
+        // Specifying a stream handler is not up to the caller
+        return AccessController.doPrivileged((PrivilegedAction<URL>) () -> {
+            try {
+                return new URL("jar", null, -1, resourcePrefix.concat(name), resourceHandler);
+            } catch (MalformedURLException e) {
+                throw new IllegalStateException(e);
+            }
+        });
+    }
+
+    /**
+     * Collects the packages of all classes, including versioned classes of multi-release jars.
+     */
+    Set<String> getPackages() {
+        Set<String> result = new HashSet<>();
+        for (String name : names) {
+            if (!name.endsWith(".class"))
+                continue;
+            if (name.startsWith(VERSIONS_DIRECTORY)) {
+                int index = name.indexOf('/', VERSIONS_DIRECTORY.length());
+                if (index < 0)
+                    continue;
+                name = name.substring(index + 1);
+            }
+            int index = name.lastIndexOf('/');
+            result.add(index < 0 ? "" : name.substring(0, index).replace('/', '.'));
+        }
+        return result;
+    }
+
+    private int findVersioned(String name) {
+        for (String versionPrefix : versionPrefixes) {
+            int index = find(versionPrefix.concat(name));
+            if (index >= 0)
+                return index;
+        }
+        return find(name);
+    }
+
+    private int find(String name) {
+        return Arrays.binarySearch(names, name);
+    }
+
+    private ByteBuffer read(int index) throws IOException {
+        if (index < 0)
+            return null;
+        int offset = index * ENTRY_FIELDS;
+        int headerOffset = entries[offset];
+        int compressedSize = entries[offset + 1];
+        int size = entries[offset + 2];
+        int method = entries[offset + 3];
+
+        if (headerOffset + LOCAL_HEADER_SIZE > buffer.limit() || buffer.getInt(headerOffset) != LOCAL_HEADER)
+            throw new ZipException("Invalid local header of " + names[index] + " in " + url);
+        int dataOffset = headerOffset + LOCAL_HEADER_SIZE + getUnsignedShort(buffer, headerOffset + 26) + getUnsignedShort(buffer, headerOffset + 28);
+        if ((long) dataOffset + compressedSize > buffer.limit())
+            throw new ZipException("Truncated entry " + names[index] + " in " + url);
+
+        ByteBuffer data = buffer.duplicate();
+        data.limit(dataOffset + compressedSize).position(dataOffset);
+        switch (method) {
+            case STORED:
+                return data.slice();
+            case DEFLATED:
+                return ByteBuffer.wrap(inflate(names[index], data, size));
+            default:
+                throw new ZipException("Unsupported compression method " + method + " of " + names[index] + " in " + url);
+        }
+    }
+
+    private byte[] inflate(String name, ByteBuffer data, int size) throws ZipException {
+        // Raw inflation may need an additional dummy byte after the compressed data
+        byte[] input = new byte[data.remaining() + 1];
+        data.get(input, 0, input.length - 1);
+        byte[] result = new byte[size];
+        Inflater inflater = new Inflater(true);
+        try {
+            inflater.setInput(input);
+            int length = 0;
+            while (length < size) {
+                int inflated = inflater.inflate(result, length, size - length);
+                if (inflated == 0 && (inflater.finished() || inflater.needsInput() || inflater.needsDictionary()))
+                    break;
+                length += inflated;
+            }
+            if (length != size)
+                throw new ZipException("Invalid size of " + name + " in " + url);
+            return result;
+        } catch (DataFormatException e) {
+            ZipException exception = new ZipException("Invalid compressed data of " + name + " in " + url);
+            exception.initCause(e);
+            throw exception;
+        } finally {
+            inflater.end();
+        }
+    }
+
+    private static int findEndHeader(ByteBuffer buffer) {
+        int last = buffer.limit() - END_HEADER_SIZE;
+        int first = Math.max(0, last - MAX_COMMENT_SIZE);
+        for (int position = last; position >= first; position--) {
+            if (buffer.getInt(position) == END_HEADER && position + END_HEADER_SIZE + getUnsignedShort(buffer, position + 20) == buffer.limit())
+                return position;
+        }
+        return -1;
+    }
+
+    private static boolean isSignature(String name) {
+        if (!name.startsWith("META-INF/") || name.indexOf('/', 9) >= 0)
+            return false;
+        String upperCase = name.toUpperCase(Locale.ROOT);
+        return upperCase.endsWith(".SF") || upperCase.endsWith(".RSA") || upperCase.endsWith(".DSA") || upperCase.endsWith(".EC");
+    }
+
+    private static boolean isMultiRelease(Manifest manifest) {
+        return manifest != null && "true".equalsIgnoreCase(manifest.getMainAttributes().getValue(new Attributes.Name("Multi-Release")));
+    }
+
+    /**
+     * Returns the prefixes of the version directories which apply to the runtime, the most recent version first.
+     */
+    private static String[] getVersionPrefixes(String[] names, int runtimeVersion) {
+        Set<Integer> versions = new TreeSet<>(Collections.reverseOrder());
+        for (String name : names) {
+            if (!name.startsWith(VERSIONS_DIRECTORY))
+                continue;
+            int index = name.indexOf('/', VERSIONS_DIRECTORY.length());
+            if (index < 0)
+                continue;
+            try {
+                int version = Integer.parseInt(name.substring(VERSIONS_DIRECTORY.length(), index));
+                if (version >= 9 && version <= runtimeVersion)
+                    versions.add(version);
+            } catch (NumberFormatException ignore) {
+            }
+        }
+        String[] result = new String[versions.size()];
+        int i = 0;
+        for (int version : versions)
+            result[i++] = VERSIONS_DIRECTORY + version + '/';
+        return result;
+    }
+
+    private static int getRuntimeVersion() {
+        String version = System.getProperty("java.specification.version", "1.8");
+        if (version.startsWith("1."))
+            version = version.substring(2);
+        try {
+            return Integer.parseInt(version);
+        } catch (NumberFormatException e) {
+            return 8;
+        }
+    }
+
+    private static int getUnsignedShort(ByteBuffer buffer, int position) {
+        return buffer.getShort(position) & 0xffff;
+    }
+
+    private static long getUnsignedInt(ByteBuffer buffer, int position) {
+        return buffer.getInt(position) & 0xffffffffL;
+    }
+
+    private static String getString(ByteBuffer buffer, int position, int length) {
+        byte[] bytes = new byte[length];
+        for (int i = 0; i < length; i++)
+            bytes[i] = buffer.get(position + i);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private class ResourceHandler extends URLStreamHandler {
+
+        @Override
+        protected URLConnection openConnection(URL u) throws IOException {
+            String file = u.getFile();
+            if (!file.startsWith(resourcePrefix))
+                throw new MalformedURLException(u + " is not a resource of " + url);
+            return new ResourceConnection(u, file.substring(resourcePrefix.length()));
+        }
+    }
+
+    private class ResourceConnection extends URLConnection {
+
+        private final String name;
+
+        private ResourceConnection(URL u, String name) {
+            super(u);
+            this.name = name;
+        }
+
+        @Override
+        public void connect() {
+            connected = true;
+        }
+
+        @Override
+        public InputStream getInputStream() throws IOException {
+            connect();
+            ByteBuffer data = read(name);
+            if (data == null)
+                throw new FileNotFoundException(name + " not found in " + url);
+            return new ByteBufferInputStream(data);
+        }
+
+        @Override
+        public long getContentLengthLong() {
+            int index = findVersioned(name);
+            return index >= 0 ? entries[index * ENTRY_FIELDS + 2] : -1;
+        }
+    }
+
+    private static class ByteBufferInputStream extends InputStream {
+
+        private final ByteBuffer buffer;
+
+        private ByteBufferInputStream(ByteBuffer buffer) {
+            this.buffer = buffer;
+        }
+
+        @Override
+        public int read() {
+            return buffer.hasRemaining() ? buffer.get() & 0xff : -1;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) {
+            if (len == 0)
+                return 0;
+            if (!buffer.hasRemaining())
+                return -1;
+            int length = Math.min(len, buffer.remaining());
+            buffer.get(b, off, length);
+            return length;
+        }
+
+        @Override
+        public long skip(long n) {
+            int length = (int) Math.max(0, Math.min(n, buffer.remaining()));
+            buffer.position(buffer.position() + length);
+            return length;
+        }
+
+        @Override
+        public int available() {
+            return buffer.remaining();
+        }
+    }
+
+    private static class Entry implements Comparable<Entry> {
+
+        private final String name;
+        private final int headerOffset;
+        private final int compressedSize;
+        private final int size;
+        private final int method;
+
+        private Entry(String name, int headerOffset, int compressedSize, int size, int method) {
+            this.name = name;
+            this.headerOffset = headerOffset;
+            this.compressedSize = compressedSize;
+            this.size = size;
+            this.method = method;
+        }
+
+        @Override
+        public int compareTo(Entry o) {
+            return name.compareTo(o.name);
+        }
+    }
+}
@@ -22,18 +22,57 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.File;
+import java.io.IOException;
 import java.net.MalformedURLException;
+import java.net.URISyntaxException;
 import java.net.URL;
 import java.net.URLClassLoader;
+import java.nio.ByteBuffer;
+import java.security.AccessController;
+import java.security.PrivilegedAction;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Enumeration;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.Objects;
+import java.util.Set;
+import java.util.jar.JarEntry;
+import java.util.jar.JarFile;
+import java.util.jar.Manifest;
 
 public class PluginClassLoader extends URLClassLoader implements PluginContextual {
 
     private static final Logger LOGGER = LoggerFactory.getLogger(PluginClassLoader.class);
+    private static final String VERSIONS_DIRECTORY = "META-INF/versions/";
+    private static final int NEGATIVE_CACHE_SIZE;
+    private static final boolean MAPPED_JARS;
+
+    static {
+        NEGATIVE_CACHE_SIZE = Integer.getInteger("io.lunamc.platform.pluginClassLoaderNegativeCacheSize", 4096);
+        MAPPED_JARS = Boolean.getBoolean("io.lunamc.platform.pluginClassLoaderMappedJars");
+        // Class loading locks are per class name instead of the class loader itself
+        ClassLoader.registerAsParallelCapable();
+    }
 
     private final ClassLoader parent;
+    private final boolean mapJars;
     private volatile boolean initialized;
-    private PluginDescription pluginDescription;
+    // Read without locking by concurrent class lookups
+    private volatile PluginDescription pluginDescription;
+    private volatile DependencyIndex dependencyIndex;
+    // Built on the first class lookup, so the plugin source is not read before it is used
+    private final Object packagesLock = new Object();
+    private volatile boolean packagesIndexed;
+    private Set<String> packages;
+    private MappedJar mappedJar;
+    private volatile boolean closed;
+    private final NegativeCache classNegativeCache = new NegativeCache(NEGATIVE_CACHE_SIZE);
+    private final NegativeCache resourceNegativeCache = new NegativeCache(NEGATIVE_CACHE_SIZE);
 
     public PluginClassLoader(File pluginFile, ClassLoader parent) {
         this(toUrl(pluginFile), parent);
@@ -44,9 +83,14 @@ public class PluginClassLoader extends URLClassLoader implements PluginContextua
     }
 
     public PluginClassLoader(URL[] urls, ClassLoader parent) {
+        this(urls, parent, MAPPED_JARS);
+    }
+
+    PluginClassLoader(URL[] urls, ClassLoader parent, boolean mapJars) {
         super(urls, null);
 
         this.parent = Objects.requireNonNull(parent, "parent must not be null");
+        this.mapJars = mapJars;
     }
 
     public synchronized void initialize(PluginDescription pluginDescription) {
@@ -54,11 +98,16 @@ public class PluginClassLoader extends URLClassLoader implements PluginContextua
             throw new IllegalStateException("Already initialized");
         initialized = true;
         try {
-            this.pluginDescription = Objects.requireNonNull(pluginDescription, "pluginDescription must not be null");
+            Objects.requireNonNull(pluginDescription, "pluginDescription must not be null");
+            dependencyIndex = DependencyIndex.create(pluginDescription);
+            this.pluginDescription = pluginDescription;
         } catch (RuntimeException e) {
             initialized = false;
             throw e;
         }
+        // Names missed before may be found on the dependencies now
+        classNegativeCache.clear();
+        resourceNegativeCache.clear();
     }
 
     @Override
@@ -66,6 +115,15 @@ public class PluginClassLoader extends URLClassLoader implements PluginContextua
         return pluginDescription;
     }
 
+    /**
+     * Returns whether the plugin source contains classes of a package. Always {@code true} if the source could not be
+     * indexed.
+     */
+    public boolean containsPackage(String packageName) {
+        Set<String> packages = getIndexedPackages();
+        return packages == null || packages.contains(packageName);
+    }
+
     public Class<?> loadClassFromSelf(String name) throws ClassNotFoundException {
         Class<?> aClass = loadSelf(name);
         if (aClass != null)
@@ -75,43 +133,185 @@ public class PluginClassLoader extends URLClassLoader implements PluginContextua
 
     @Override
     public Class<?> loadClass(String name) throws ClassNotFoundException {
+        // Core classes can not be defined by other class loaders anyway
+        if (name.startsWith("java."))
+            return parent.loadClass(name);
+
         synchronized (getClassLoadingLock(name)) {
-            Class<?> aClass = loadSelf(name);
+            Class<?> aClass = findLoadedClass(name);
             if (aClass != null)
                 return aClass;
+            if (classNegativeCache.contains(name))
+                throw new CachedClassNotFoundException(name);
+
+            String packageName = getPackageName(name);
+            if (containsPackage(packageName)) {
+                aClass = loadSelf(name);
+                if (aClass != null)
+                    return aClass;
+            }
 
-            LOGGER.debug("Try loading class {} from parent class loader", name);
-            aClass = loadParent(name);
-            if (aClass != null) {
-                LOGGER.debug("Found class {} on parent class loader", name);
+            aClass = loadFromDependencies(name, packageName);
+            if (aClass != null)
                 return aClass;
+
+            classNegativeCache.add(name);
+            throw new ClassNotFoundException(name);
+        }
+    }
+
+    @Override
+    public URL getResource(String name) {
+        if (resourceNegativeCache.contains(name))
+            return null;
+        URL url = super.getResource(name);
+        if (url == null)
+            resourceNegativeCache.add(name);
+        return url;
+    }
+
+    /**
+     * Returns the packages which are contained in more than one plugin of the transitive dependencies, mapped to the
+     * ids of these plugins in the order they are searched.
+     */
+    public Map<String, List<String>> getAmbiguousPackages() {
+        DependencyIndex dependencyIndex = this.dependencyIndex;
+        return dependencyIndex != null ? dependencyIndex.ambiguousPackages : Collections.emptyMap();
+    }
+
+    /**
+     * Returns the cache of class names which were found neither in the plugin source, the parent nor the dependencies.
+     */
+    public NegativeCache getClassNegativeCache() {
+        return classNegativeCache;
+    }
+
+    public NegativeCache getResourceNegativeCache() {
+        return resourceNegativeCache;
+    }
+
+    /**
+     * Loads a class from the parent or a dependency class loader without accessing the plugin source.
+     */
+    public Class<?> loadClassFromDependencies(String name) throws ClassNotFoundException {
+        Class<?> aClass = loadFromDependencies(name, getPackageName(name));
+        if (aClass != null)
+            return aClass;
+        throw new ClassNotFoundException(name);
+    }
+
+    /**
+     * Loads a class from the dependency class loader owning its package or, if there is none, from the parent.
+     */
+    private Class<?> loadFromDependencies(String name, String packageName) {
+        Class<?> aClass = loadFromDependencyPlugins(name, packageName);
+        if (aClass != null)
+            return aClass;
+
+        LOGGER.debug("Try loading class {} from parent class loader", name);
+        aClass = loadParent(name);
+        if (aClass != null)
+            LOGGER.debug("Found class {} on parent class loader", name);
+        return aClass;
+    }
+
+    private Class<?> loadFromDependencyPlugins(String name, String packageName) {
+        DependencyIndex dependencyIndex = this.dependencyIndex;
+        if (dependencyIndex == null)
+            return null;
+        PluginClassLoader[] owners = dependencyIndex.packages.get(packageName);
+        if (owners != null) {
+            for (PluginClassLoader owner : owners) {
+                Class<?> aClass = owner.loadSelf(name);
+                if (aClass != null)
+                    return aClass;
             }
+        }
+        for (ClassLoader classLoader : dependencyIndex.unindexed) {
+            Class<?> aClass = classLoader instanceof PluginClassLoader ? ((PluginClassLoader) classLoader).loadSelf(name) : load(classLoader, name);
+            if (aClass != null)
+                return aClass;
+        }
+        return null;
+    }
 
-            if (initialized) {
-                for (PluginDescription pluginDescription : this.pluginDescription.getPluginDependencies()) {
-                    LOGGER.debug("Try loading class {} from dependency plugin class loader of {}", name, pluginDescription.getDescriptor().getId());
-                    aClass = load(pluginDescription.getClassLoader(), name);
-                    if (aClass != null) {
-                        LOGGER.debug("Found class {} on dependency plugin class loader of {}", name, pluginDescription.getDescriptor().getId());
-                        return aClass;
-                    }
-                }
+    private Class<?> loadSelf(String name) {
+        synchronized (getClassLoadingLock(name)) {
+            Class<?> aClass = findLoadedClass(name);
+            if (aClass != null)
+                return aClass;
+            // The index of a mapped jar is cheap to check, so misses do not throw there
+            MappedJar mappedJar = getMappedJar();
+            if (mappedJar != null && !mappedJar.contains(name.replace('.', '/').concat(".class")))
+                return null;
+            try {
+                // Classes of the bootstrap class loader, like javax.*, are still preferred over the plugin source
+                aClass = super.loadClass(name, false);
+            } catch (ClassNotFoundException ignore) {
+                return null;
             }
+            PluginDescription pluginDescription = this.pluginDescription;
+            LOGGER.debug("Found class {} on plugin source of {}", name, pluginDescription != null ? pluginDescription.getDescriptor().getId() : "unknown");
+            return aClass;
+        }
+    }
 
+    /**
+     * Defines classes from the mapped plugin jar if it is enabled, otherwise from the sources of the
+     * {@link URLClassLoader}.
+     */
+    @Override
+    protected Class<?> findClass(String name) throws ClassNotFoundException {
+        if (closed)
             throw new ClassNotFoundException(name);
+        MappedJar mappedJar = getMappedJar();
+        if (mappedJar == null)
+            return super.findClass(name);
+        ByteBuffer bytecode;
+        try {
+            bytecode = mappedJar.read(name.replace('.', '/').concat(".class"));
+        } catch (IOException e) {
+            throw new ClassNotFoundException(name, e);
         }
+        if (bytecode == null)
+            throw new ClassNotFoundException(name);
+        definePackageIfAbsent(getPackageName(name), mappedJar);
+        return defineClass(name, bytecode, mappedJar.getCodeSource());
     }
 
-    private Class<?> loadSelf(String name) {
-        LOGGER.debug("Try loading class {} from plugin source", name);
-        Class<?> aClass;
+    /**
+     * Finds resources in the mapped plugin jar if it is enabled, otherwise in the sources of the
+     * {@link URLClassLoader}.
+     */
+    @Override
+    public URL findResource(String name) {
+        MappedJar mappedJar = getMappedJar();
+        if (mappedJar == null)
+            return super.findResource(name);
+        return mappedJar.getResource(name);
+    }
+
+    @Override
+    public Enumeration<URL> findResources(String name) throws IOException {
+        MappedJar mappedJar = getMappedJar();
+        if (mappedJar == null)
+            return super.findResources(name);
+        URL url = mappedJar.getResource(name);
+        return url != null ? Collections.enumeration(Collections.singletonList(url)) : Collections.emptyEnumeration();
+    }
+
+    private void definePackageIfAbsent(String packageName, MappedJar mappedJar) {
+        if (packageName.isEmpty() || getPackage(packageName) != null)
+            return;
         try {
-            aClass = super.loadClass(name);
-        } catch (ClassNotFoundException ignore) {
-            return null;
+            Manifest manifest = mappedJar.getManifest();
+            if (manifest != null)
+                definePackage(packageName, manifest, mappedJar.getUrl());
+            else
+                definePackage(packageName, null, null, null, null, null, null, null);
+        } catch (IllegalArgumentException ignore) {
+            // Defined by another thread in the meantime
         }
-        LOGGER.debug("Found class {} on plugin source of {}", name, pluginDescription != null ? pluginDescription.getDescriptor().getId() : "unknown");
-        return aClass;
     }
 
     private Class<?> loadParent(String name) {
@@ -126,6 +326,143 @@ public class PluginClassLoader extends URLClassLoader implements PluginContextua
         }
     }
 
+    private Set<String> getIndexedPackages() {
+        if (!packagesIndexed) {
+            synchronized (packagesLock) {
+                if (!packagesIndexed) {
+                    // Plugin code triggering the lookup is not allowed to read the plugin source itself
+                    URL[] urls = getURLs();
+                    AccessController.doPrivileged((PrivilegedAction<Void>) () -> {
+                        if (mapJars && !closed)
+                            mappedJar = mapJar(urls);
+                        packages = mappedJar != null ? mappedJar.getPackages() : indexPackages(urls);
+                        return null;
+                    });
+                    packagesIndexed = true;
+                }
+            }
+        }
+        return packages;
+    }
+
+    /**
+     * Closes the plugin sources. Classes which are not loaded yet can not be loaded from the plugin afterwards.
+     */
+    @Override
+    public void close() throws IOException {
+        super.close();
+        synchronized (packagesLock) {
+            closed = true;
+            // The mapping is released once it is no longer referenced
+            mappedJar = null;
+        }
+    }
+
+    private MappedJar getMappedJar() {
+        if (!mapJars)
+            return null;
+        getIndexedPackages();
+        return mappedJar;
+    }
+
+    /**
+     * Maps the source into memory if it is a single local jar.
+     *
+     * @return The mapped jar or {@code null} if the source is not supported
+     */
+    private static MappedJar mapJar(URL[] urls) {
+        if (urls.length != 1 || !"file".equals(urls[0].getProtocol()))
+            return null;
+        File file;
+        try {
+            file = new File(urls[0].toURI());
+        } catch (URISyntaxException | IllegalArgumentException e) {
+            return null;
+        }
+        if (!file.isFile())
+            return null;
+        try {
+            MappedJar mappedJar = MappedJar.open(file, urls[0]);
+            if (mappedJar == null)
+                LOGGER.debug("Jar {} is not supported by the mapped jar reader", file);
+            return mappedJar;
+        } catch (IOException e) {
+            LOGGER.warn("Failed to map {}", file, e);
+            return null;
+        }
+    }
+
+    /**
+     * Collects the packages of all classes of the sources.
+     *
+     * @return The package names or {@code null} if a source can not be indexed
+     */
+    private static Set<String> indexPackages(URL[] urls) {
+        Set<String> result = new HashSet<>();
+        for (URL url : urls) {
+            if (!"file".equals(url.getProtocol()))
+                return null;
+            File file;
+            try {
+                file = new File(url.toURI());
+            } catch (URISyntaxException | IllegalArgumentException e) {
+                return null;
+            }
+            try {
+                if (file.isDirectory())
+                    indexDirectory(file, file, result);
+                else if (file.isFile())
+                    indexJar(file, result);
+            } catch (IOException e) {
+                LOGGER.warn("Failed to index packages of {}", file, e);
+                return null;
+            }
+        }
+        return result;
+    }
+
+    private static void indexJar(File file, Set<String> packages) throws IOException {
+        try (JarFile jarFile = new JarFile(file)) {
+            Enumeration<JarEntry> entries = jarFile.entries();
+            while (entries.hasMoreElements()) {
+                String name = entries.nextElement().getName();
+                if (!name.endsWith(".class"))
+                    continue;
+                // Multi-release jars contain classes in their regular package below a version directory
+                if (name.startsWith(VERSIONS_DIRECTORY)) {
+                    int index = name.indexOf('/', VERSIONS_DIRECTORY.length());
+                    if (index < 0)
+                        continue;
+                    name = name.substring(index + 1);
+                }
+                int index = name.lastIndexOf('/');
+                packages.add(index < 0 ? "" : name.substring(0, index).replace('/', '.'));
+            }
+        }
+    }
+
+    private static void indexDirectory(File root, File directory, Set<String> packages) {
+        File[] files = directory.listFiles();
+        if (files == null)
+            return;
+        boolean classes = false;
+        for (File file : files) {
+            if (file.isDirectory())
+                indexDirectory(root, file, packages);
+            else if (!classes && file.getName().endsWith(".class"))
+                classes = true;
+        }
+        if (classes) {
+            String path = root.toURI().relativize(directory.toURI()).getPath();
+            packages.add(path.isEmpty() ? "" : path.substring(0, path.length() - 1).replace('/', '.'));
+        }
+    }
+
+    private static String getPackageName(String className) {
+        int index = className.lastIndexOf('.');
+        return index < 0 ? "" : className.substring(0, index);
+    }
+
     private static URL[] toUrls(URL url) {
         if (url == null)
             return new URL[0];
@@ -139,4 +476,81 @@ public class PluginClassLoader extends URLClassLoader implements PluginContextua
             throw new RuntimeException(e);
         }
     }
+
+    /**
+     * The packages of the transitive dependencies mapped to the class loaders defining them, computed once the plugin
+     * is initialized.
+     */
+    private static class DependencyIndex {
+
+        private final Map<String, PluginClassLoader[]> packages;
+        // Class loaders of dependencies whose packages are unknown, searched one after another
+        private final List<ClassLoader> unindexed;
+        private final Map<String, List<String>> ambiguousPackages;
+
+        private DependencyIndex(Map<String, PluginClassLoader[]> packages, List<ClassLoader> unindexed, Map<String, List<String>> ambiguousPackages) {
+            this.packages = packages;
+            this.unindexed = unindexed;
+            this.ambiguousPackages = ambiguousPackages;
+        }
+
+        private static DependencyIndex create(PluginDescription pluginDescription) {
+            // Depth-first in declaration order, so earlier declared dependencies take precedence
+            Map<ClassLoader, PluginDescription> closure = new LinkedHashMap<>();
+            collectDependencies(pluginDescription, closure, Collections.newSetFromMap(new IdentityHashMap<>()));
+
+            Map<String, List<PluginClassLoader>> owners = new HashMap<>();
+            List<ClassLoader> unindexed = new ArrayList<>();
+            for (ClassLoader classLoader : closure.keySet()) {
+                Set<String> packages = classLoader instanceof PluginClassLoader ? ((PluginClassLoader) classLoader).getIndexedPackages() : null;
+                if (packages == null) {
+                    unindexed.add(classLoader);
+                    continue;
+                }
+                for (String packageName : packages)
+                    owners.computeIfAbsent(packageName, key -> new ArrayList<>(1)).add((PluginClassLoader) classLoader);
+            }
+
+            Map<String, PluginClassLoader[]> packages = new HashMap<>(owners.size() * 4 / 3 + 1);
+            Map<String, List<String>> ambiguousPackages = new HashMap<>();
+            for (Map.Entry<String, List<PluginClassLoader>> entry : owners.entrySet()) {
+                List<PluginClassLoader> classLoaders = entry.getValue();
+                packages.put(entry.getKey(), classLoaders.toArray(new PluginClassLoader[classLoaders.size()]));
+                if (classLoaders.size() > 1) {
+                    List<String> ids = new ArrayList<>(classLoaders.size());
+                    for (PluginClassLoader classLoader : classLoaders)
+                        ids.add(closure.get(classLoader).getDescriptor().getId());
+                    ambiguousPackages.put(entry.getKey(), Collections.unmodifiableList(ids));
+                }
+            }
+            return new DependencyIndex(packages, unindexed, Collections.unmodifiableMap(ambiguousPackages));
+        }
+
+        private static void collectDependencies(PluginDescription pluginDescription, Map<ClassLoader, PluginDescription> closure, Set<PluginDescription> visited) {
+            for (PluginDescription dependency : pluginDescription.getPluginDependencies()) {
+                if (!visited.add(dependency))
+                    continue;
+                ClassLoader classLoader = dependency.getClassLoader();
+                if (classLoader != null)
+                    closure.putIfAbsent(classLoader, dependency);
+                collectDependencies(dependency, closure, visited);
+            }
+        }
+    }
+
+    /**
+     * Thrown for names answered by the negative cache. Probing code may look up the same name in a loop, so no stack
+     * trace is filled in.
+     */
+    private static class CachedClassNotFoundException extends ClassNotFoundException {
+
+        private CachedClassNotFoundException(String name) {
+            super(name);
+        }
+
+        @Override
+        public synchronized Throwable fillInStackTrace() {
+            return this;
+        }
+    }
 }
@@ -0,0 +1,77 @@
+/*
+ *  Copyright 2017 LunaMC.io
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package io.lunamc.platform.service;
+
+import io.lunamc.platform.service.di.ServiceFactory;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.lang.reflect.Constructor;
+import java.lang.reflect.InvocationTargetException;
+import java.security.AccessController;
+import java.security.PrivilegedActionException;
+import java.security.PrivilegedExceptionAction;
+import java.util.Objects;
+import java.util.function.Supplier;
+
+/**
+ * A {@link ServiceFactory} invoking a constructor through a class generated for it, which calls the constructor
+ * directly with all arguments bound in advance, so the call can be inlined like a handwritten factory. If no class can
+ * be generated for the constructor, the factory falls back to reflection, which reports the same errors
+ * {@link Constructor#newInstance(Object...)} would.
+ */
+class CompiledServiceFactory<T> implements ServiceFactory<T> {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(CompiledServiceFactory.class);
+
+    private final Constructor<T> constructor;
+    private final Object[] arguments;
+    private final Supplier<T> supplier;
+
+    CompiledServiceFactory(Constructor<T> constructor, Object[] arguments) {
+        this.constructor = Objects.requireNonNull(constructor, "constructor must not be null");
+        this.arguments = Objects.requireNonNull(arguments, "arguments must not be null");
+        this.supplier = compile(constructor, arguments);
+    }
+
+    @Override
+    public T newInstance() throws InstantiationException, IllegalAccessException, IllegalArgumentException, InvocationTargetException {
+        if (supplier == null)
+            return constructor.newInstance(arguments);
+        try {
+            return supplier.get();
+        } catch (ExceptionInInitializerError e) {
+            throw e;
+        } catch (Throwable throwable) {
+            throw new InvocationTargetException(throwable);
+        }
+    }
+
+    boolean isGenerated() {
+        return supplier != null;
+    }
+
+    private static <T> Supplier<T> compile(Constructor<T> constructor, Object[] arguments) {
+        try {
+            // Creating the class loader and reading the protection domain are not up to the caller
+            return AccessController.doPrivileged((PrivilegedExceptionAction<Supplier<T>>) () -> ServiceFactoryClassGenerator.generate(constructor, arguments));
+        } catch (PrivilegedActionException | RuntimeException | LinkageError e) {
+            LOGGER.debug("Failed to generate a factory class for {}, falling back to reflection", constructor, e);
+            return null;
+        }
+    }
+}
@@ -0,0 +1,133 @@
+/*
+ *  Copyright 2017 LunaMC.io
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package io.lunamc.platform.service;
+
+import io.lunamc.platform.utils.Snapshot;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Objects;
+import java.util.function.Predicate;
+
+class DefaultMultiServiceRegistration<T> implements MultiServiceRegistration<T> {
+
+    private final Class<T> service;
+    // Guarded by the registration itself, the instances are published as a snapshot after every change
+    private final List<DefaultBinding<T>> bindings = new ArrayList<>();
+    private volatile Snapshot<T> snapshot = Snapshot.empty();
+
+    DefaultMultiServiceRegistration(Class<T> service) {
+        this.service = Objects.requireNonNull(service, "service must not be null");
+    }
+
+    @Override
+    public Class<T> getService() {
+        return service;
+    }
+
+    @Override
+    public synchronized Binding<T> add(T instance, int rank) {
+        DefaultBinding<T> binding = new DefaultBinding<>(this, Objects.requireNonNull(instance, "instance must not be null"), rank);
+        // Inserted behind all bindings of the same rank
+        int index = 0;
+        while (index < bindings.size() && bindings.get(index).rank >= rank)
+            index++;
+        bindings.add(index, binding);
+        publish();
+        return binding;
+    }
+
+    @Override
+    public Snapshot<T> getSnapshot() {
+        return snapshot;
+    }
+
+    @Override
+    public List<T> getInstances() {
+        return snapshot.getElements();
+    }
+
+    @Override
+    public long getVersion() {
+        return snapshot.getGeneration();
+    }
+
+    @Override
+    public String toString() {
+        return service.getName() + snapshot.getElements();
+    }
+
+    private synchronized void remove(DefaultBinding<T> binding) {
+        for (Iterator<DefaultBinding<T>> iterator = bindings.iterator(); iterator.hasNext(); ) {
+            if (iterator.next() == binding) {
+                iterator.remove();
+                publish();
+                return;
+            }
+        }
+    }
+
+    synchronized int removeIf(Predicate<? super T> filter) {
+        int size = bindings.size();
+        bindings.removeIf(binding -> filter.test(binding.instance));
+        int removed = size - bindings.size();
+        if (removed != 0)
+            publish();
+        return removed;
+    }
+
+    private void publish() {
+        List<T> instances = new ArrayList<>(bindings.size());
+        for (DefaultBinding<T> binding : bindings)
+            instances.add(binding.instance);
+        snapshot = snapshot.next(instances);
+    }
+
+    private static class DefaultBinding<T> implements Binding<T> {
+
+        private final DefaultMultiServiceRegistration<T> registration;
+        private final T instance;
+        private final int rank;
+
+        private DefaultBinding(DefaultMultiServiceRegistration<T> registration, T instance, int rank) {
+            this.registration = registration;
+            this.instance = instance;
+            this.rank = rank;
+        }
+
+        @Override
+        public T getInstance() {
+            return instance;
+        }
+
+        @Override
+        public int getRank() {
+            return rank;
+        }
+
+        @Override
+        public void remove() {
+            registration.remove(this);
+        }
+
+        @Override
+        public String toString() {
+            return instance + " (rank " + rank + ')';
+        }
+    }
+}
@@ -16,6 +16,10 @@
 
 package io.lunamc.platform.service;
 
+import io.lunamc.platform.service.di.InjectionPoint;
+import io.lunamc.platform.service.di.ServiceFactory;
+import io.lunamc.platform.utils.ServiceRegistryUtils;
+import io.lunamc.platform.utils.Snapshot;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.slf4j.Marker;
@@ -23,29 +27,51 @@ import org.slf4j.MarkerFactory;
 
 import java.lang.reflect.Constructor;
 import java.lang.reflect.InvocationTargetException;
-import java.lang.reflect.ParameterizedType;
-import java.lang.reflect.Type;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.List;
 import java.util.Map;
 import java.util.Objects;
+import java.util.Queue;
+import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
 
 public class DefaultServiceRegistry implements ServiceRegistry {
 
     private static final Logger LOGGER = LoggerFactory.getLogger(DefaultServiceRegistry.class);
     private static final Marker MARKER_SERVICES = MarkerFactory.getMarker("SERVICES");
 
-    private final Map<Class<?>, ServiceRegistration<?>> serviceRegistrations = new ConcurrentHashMap<>();
+    private final Object slotsLock = new Object();
+    // Republished while holding the slots lock
+    private volatile Snapshot<ServiceRegistration<?>> servicesSnapshot = Snapshot.empty();
+    private volatile ServiceRegistration<?>[] slots = new ServiceRegistration[16];
+    private final Map<Class<?>, Set<Class<?>>> implementationDependencies = new ConcurrentHashMap<>();
+    private final ConcurrentMap<Constructor<?>, ServiceFactory<?>> factories = new ConcurrentHashMap<>();
+    private final ConcurrentMap<Class<?>, MultiServiceRegistration<?>> multiServiceRegistrations = new ConcurrentHashMap<>();
+    private final ServiceCapability capability = new DefaultServiceCapability();
+    private final Object lifecycleLock = new Object();
+    private boolean started;
 
     @Override
-    @SuppressWarnings("unchecked")
     public <T> ServiceRegistration<T> getService(Class<T> serviceClass) {
+        return getService(ServiceKey.of(serviceClass));
+    }
+
+    @Override
+    public <T> ServiceRegistration<T> getService(ServiceKey<T> serviceKey) {
         SecurityManager securityManager = System.getSecurityManager();
         if (securityManager != null)
             securityManager.checkPermission(ServiceRegistryPermission.PERMISSION_ACCESS);
 
-        return (ServiceRegistration<T>) serviceRegistrations.computeIfAbsent(serviceClass, DefaultServiceRegistration::new);
+        return lookup(serviceKey);
     }
 
     @Override
@@ -54,7 +80,35 @@ public class DefaultServiceRegistry implements ServiceRegistry {
         if (securityManager != null)
             securityManager.checkPermission(ServiceRegistryPermission.PERMISSION_ACCESS);
 
-        return Collections.unmodifiableCollection(serviceRegistrations.values());
+        return servicesSnapshot.getElements();
+    }
+
+    @Override
+    public Snapshot<ServiceRegistration<?>> getServicesSnapshot() {
+        SecurityManager securityManager = System.getSecurityManager();
+        if (securityManager != null)
+            securityManager.checkPermission(ServiceRegistryPermission.PERMISSION_ACCESS);
+
+        return servicesSnapshot;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public <T> MultiServiceRegistration<T> getMultiService(Class<T> serviceClass) {
+        SecurityManager securityManager = System.getSecurityManager();
+        if (securityManager != null)
+            securityManager.checkPermission(ServiceRegistryPermission.PERMISSION_ACCESS);
+
+        return (MultiServiceRegistration<T>) multiServiceRegistrations.computeIfAbsent(serviceClass, DefaultMultiServiceRegistration::new);
+    }
+
+    @Override
+    public ServiceCapability acquireCapability() {
+        SecurityManager securityManager = System.getSecurityManager();
+        if (securityManager != null)
+            securityManager.checkPermission(ServiceRegistryPermission.PERMISSION_ACCESS);
+
+        return capability;
     }
 
     @Override
@@ -63,22 +117,16 @@ public class DefaultServiceRegistry implements ServiceRegistry {
         if (securityManager != null)
             securityManager.checkPermission(ServiceRegistryPermission.PERMISSION_ACCESS);
 
-        Type[] parameterTypes = constructor.getGenericParameterTypes();
-        ServiceRegistration<?>[] serviceRegistrations = new ServiceRegistration[parameterTypes.length];
-        for (int i = 0; i < parameterTypes.length; i++) {
-            Type parameterType = parameterTypes[i];
-            if (!(parameterType instanceof ParameterizedType))
-                throw new IllegalArgumentException("Invalid parameter #" + i + ": " + parameterType);
-            Type[] typeArguments = ((ParameterizedType) parameterType).getActualTypeArguments();
-            if (typeArguments.length < 1)
-                throw new IllegalArgumentException("Invalid parameter #" + i + ": " + parameterType);
-            Type typeArgument = typeArguments[0];
-            if (!(typeArgument instanceof Class))
-                throw new IllegalArgumentException("Invalid parameter #" + i + ": " + parameterType);
-            serviceRegistrations[i] = getService((Class<?>) typeArgument);
-        }
+        return lookupFactory(constructor).newInstance();
+    }
 
-        return constructor.newInstance((Object[]) serviceRegistrations);
+    @Override
+    public <T> ServiceFactory<T> getFactory(Constructor<T> constructor) {
+        SecurityManager securityManager = System.getSecurityManager();
+        if (securityManager != null)
+            securityManager.checkPermission(ServiceRegistryPermission.PERMISSION_ACCESS);
+
+        return lookupFactory(constructor);
     }
 
     @Override
@@ -89,20 +137,13 @@ public class DefaultServiceRegistry implements ServiceRegistry {
 
         LOGGER.info(MARKER_SERVICES, "Starting services...");
         long timer = System.currentTimeMillis();
-        getServices().stream()
-                .filter(r -> {
-                    Object instance = r.getInstance();
-                    return instance != null && instance instanceof Startable;
-                })
-                .sorted((o1, o2) -> Integer.compare(((Startable) o2.getInstance()).getStartPriority(), ((Startable) o1.getInstance()).getStartPriority()))
-                .forEach(i -> {
-                    LOGGER.debug(MARKER_SERVICES, "Starting {}...", i.getService().getName());
-                    try {
-                        ((Startable) i.getInstance()).start();
-                    } catch (Throwable throwable) {
-                        LOGGER.warn(MARKER_SERVICES, "An exception ({}) occurred while starting {}", i, throwable.getClass().getName(), i.getService().getName(), throwable);
-                    }
-                });
+        List<ServiceRegistration<?>> realized;
+        synchronized (lifecycleLock) {
+            // Lazy services realized from now on are started on realization
+            started = true;
+            realized = getRealizedServices();
+        }
+        new ServiceLifecycleExecutor(realized, this::getImplementationDependencies).start();
         timer = System.currentTimeMillis() - timer;
         LOGGER.info(MARKER_SERVICES, "Services started (took {} ms)", timer);
     }
@@ -115,51 +156,427 @@ public class DefaultServiceRegistry implements ServiceRegistry {
 
         LOGGER.info(MARKER_SERVICES, "Shutting down services...");
         long timer = System.currentTimeMillis();
-        getServices().stream()
-                .filter(r -> {
-                    Object instance = r.getInstance();
-                    return instance != null && instance instanceof Shutdownable;
-                })
-                .sorted((o1, o2) -> Integer.compare(((Shutdownable) o2.getInstance()).getShutdownPriority(), ((Shutdownable) o1.getInstance()).getShutdownPriority()))
-                .forEach(i -> {
-                    LOGGER.debug(MARKER_SERVICES, "Shutting down {}...", i.getService().getName());
-                    try {
-                        ((Shutdownable) i.getInstance()).shutdown();
-                    } catch (Throwable throwable) {
-                        LOGGER.warn(MARKER_SERVICES, "An exception ({}) occurred while shutting down {}", throwable.getClass().getName(), i.getService().getName(), throwable);
-                    }
-                });
+        List<ServiceRegistration<?>> realized;
+        synchronized (lifecycleLock) {
+            started = false;
+            realized = getRealizedServices();
+        }
+        logUnrealizedServices();
+        new ServiceLifecycleExecutor(realized, this::getImplementationDependencies).shutdown();
         timer = System.currentTimeMillis() - timer;
         LOGGER.info(MARKER_SERVICES, "Services shut down (took {} ms)", timer);
     }
 
-    private static class DefaultServiceRegistration<T> implements ServiceRegistration<T> {
+    @Override
+    public void start(ClassLoader classLoader) {
+        SecurityManager securityManager = System.getSecurityManager();
+        if (securityManager != null)
+            securityManager.checkPermission(ServiceRegistryPermission.PERMISSION_START_OR_STOP);
+
+        Objects.requireNonNull(classLoader, "classLoader must not be null");
+        List<ServiceRegistration<?>> owned;
+        synchronized (lifecycleLock) {
+            // Services of the class loader are started with all others otherwise
+            if (!started)
+                return;
+            owned = getRealizedServices(classLoader);
+        }
+        new ServiceLifecycleExecutor(owned, this::getImplementationDependencies).start();
+    }
+
+    @Override
+    public void unregister(ClassLoader classLoader) {
+        SecurityManager securityManager = System.getSecurityManager();
+        if (securityManager != null)
+            securityManager.checkPermission(ServiceRegistryPermission.PERMISSION_START_OR_STOP);
+
+        Objects.requireNonNull(classLoader, "classLoader must not be null");
+        List<ServiceRegistration<?>> realized;
+        boolean started;
+        synchronized (lifecycleLock) {
+            started = this.started;
+            realized = getRealizedServices(classLoader);
+        }
+        if (started)
+            new ServiceLifecycleExecutor(realized, this::getImplementationDependencies).shutdown();
+
+        List<DefaultServiceRegistration<?>> owned = new ArrayList<>();
+        for (ServiceRegistration<?> serviceRegistration : servicesSnapshot.getElements()) {
+            DefaultServiceRegistration<?> registration = (DefaultServiceRegistration<?>) serviceRegistration;
+            registration.listeners.removeIf(listener -> isDefinedBy(listener.getClass(), classLoader));
+            if (registration.isOwnedBy(classLoader))
+                owned.add(registration);
+        }
+        synchronized (slotsLock) {
+            ServiceRegistration<?>[] slots = this.slots.clone();
+            List<ServiceRegistration<?>> registrations = new ArrayList<>(servicesSnapshot.getElements());
+            for (DefaultServiceRegistration<?> registration : owned) {
+                if (isDefinedBy(registration.getService(), classLoader)) {
+                    slots[registration.key.getIndex()] = null;
+                    registrations.remove(registration);
+                }
+            }
+            this.slots = slots;
+            if (registrations.size() != servicesSnapshot.getElements().size())
+                servicesSnapshot = servicesSnapshot.next(registrations);
+        }
+        // Remaining listeners are notified that the implementation is gone
+        for (DefaultServiceRegistration<?> registration : owned)
+            registration.bind(null);
+
+        int multiBindings = 0;
+        multiServiceRegistrations.keySet().removeIf(service -> isDefinedBy(service, classLoader));
+        for (MultiServiceRegistration<?> multiServiceRegistration : multiServiceRegistrations.values())
+            multiBindings += ((DefaultMultiServiceRegistration<?>) multiServiceRegistration).removeIf(instance -> isDefinedBy(instance.getClass(), classLoader));
+        factories.keySet().removeIf(constructor -> isDefinedBy(constructor.getDeclaringClass(), classLoader));
+        implementationDependencies.keySet().removeIf(implementation -> isDefinedBy(implementation, classLoader));
+        for (Set<Class<?>> dependencies : implementationDependencies.values())
+            dependencies.removeIf(dependency -> isDefinedBy(dependency, classLoader));
+        LOGGER.info(MARKER_SERVICES, "Removed {} service binding(s) and {} multi-service binding(s) of {}", owned.size(), multiBindings, classLoader);
+    }
+
+    private List<ServiceRegistration<?>> getRealizedServices(ClassLoader classLoader) {
+        List<ServiceRegistration<?>> result = new ArrayList<>();
+        for (ServiceRegistration<?> serviceRegistration : servicesSnapshot.getElements()) {
+            if (serviceRegistration.isRealized() && ((DefaultServiceRegistration<?>) serviceRegistration).isOwnedBy(classLoader))
+                result.add(serviceRegistration);
+        }
+        return result;
+    }
+
+    private static boolean isDefinedBy(Class<?> aClass, ClassLoader classLoader) {
+        return aClass.getClassLoader() == classLoader;
+    }
+
+    private List<ServiceRegistration<?>> getRealizedServices() {
+        List<ServiceRegistration<?>> result = new ArrayList<>();
+        for (ServiceRegistration<?> serviceRegistration : servicesSnapshot.getElements()) {
+            if (serviceRegistration.isRealized())
+                result.add(serviceRegistration);
+        }
+        return result;
+    }
+
+    /**
+     * Returns the services which are bound lazily and were not realized yet. Services which are never realized during
+     * the lifetime of the registry may not be needed at all.
+     */
+    public List<ServiceRegistration<?>> getUnrealizedServices() {
+        List<ServiceRegistration<?>> result = new ArrayList<>();
+        for (ServiceRegistration<?> serviceRegistration : servicesSnapshot.getElements()) {
+            if (!serviceRegistration.isRealized())
+                result.add(serviceRegistration);
+        }
+        return result;
+    }
+
+    private void logUnrealizedServices() {
+        List<ServiceRegistration<?>> unrealized = getUnrealizedServices();
+        if (!unrealized.isEmpty())
+            LOGGER.info(MARKER_SERVICES, "{} lazy service(s) were never realized: {}", unrealized.size(), unrealized.stream().map(registration -> registration.getService().getName()).collect(Collectors.joining(", ")));
+    }
+
+    /**
+     * Publishes a realized instance unless the registration was bound to something else meanwhile.
+     *
+     * @return Whether the instance was published
+     */
+    private <T> boolean bindRealized(DefaultServiceRegistration<T> serviceRegistration, LazyBinding<T> lazyBinding, T instance) {
+        // The supplier bound the registration itself and took care of starting
+        if (serviceRegistration.binding != lazyBinding)
+            return false;
+        boolean start;
+        synchronized (lifecycleLock) {
+            start = started && instance instanceof Startable;
+            if (!start)
+                return serviceRegistration.replaceBinding(lazyBinding, instance);
+        }
+        // Started before it is published, so no other thread can observe an unstarted instance
+        LOGGER.debug(MARKER_SERVICES, "Starting lazily realized service {}", serviceRegistration);
+        try {
+            ((Startable) instance).start();
+        } catch (RuntimeException e) {
+            // The instance is not published, so it is released right away
+            if (instance instanceof Shutdownable) {
+                try {
+                    ((Shutdownable) instance).shutdown();
+                } catch (RuntimeException e1) {
+                    e.addSuppressed(e1);
+                }
+            }
+            throw e;
+        }
+        return serviceRegistration.replaceBinding(lazyBinding, instance);
+    }
+
+    @SuppressWarnings("unchecked")
+    private <T> ServiceRegistration<T> lookup(ServiceKey<T> serviceKey) {
+        ServiceRegistration<?>[] slots = this.slots;
+        int index = serviceKey.getIndex();
+        if (index < slots.length) {
+            ServiceRegistration<?> serviceRegistration = slots[index];
+            if (serviceRegistration != null)
+                return (ServiceRegistration<T>) serviceRegistration;
+        }
+        return register(serviceKey);
+    }
 
-        private final Class<T> service;
-        private volatile T instance;
+    @SuppressWarnings("unchecked")
+    private <T> ServiceRegistration<T> register(ServiceKey<T> serviceKey) {
+        synchronized (slotsLock) {
+            ServiceRegistration<?>[] slots = this.slots;
+            int index = serviceKey.getIndex();
+            if (index < slots.length && slots[index] != null)
+                return (ServiceRegistration<T>) slots[index];
 
-        private DefaultServiceRegistration(Class<T> service) {
-            this.service = Objects.requireNonNull(service, "service must not be null");
+            ServiceRegistration<T> serviceRegistration = new DefaultServiceRegistration<>(serviceKey);
+            slots = Arrays.copyOf(slots, Math.max(slots.length, Integer.highestOneBit(index) << 1));
+            slots[index] = serviceRegistration;
+            List<ServiceRegistration<?>> registrations = new ArrayList<>(servicesSnapshot.getElements().size() + 1);
+            registrations.addAll(servicesSnapshot.getElements());
+            registrations.add(serviceRegistration);
+            servicesSnapshot = servicesSnapshot.next(registrations);
+            this.slots = slots;
+            return serviceRegistration;
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private <T> ServiceFactory<T> lookupFactory(Constructor<T> constructor) {
+        ServiceFactory<?> factory = factories.get(constructor);
+        if (factory == null) {
+            factory = createFactory(constructor);
+            ServiceFactory<?> previous = factories.putIfAbsent(constructor, factory);
+            if (previous != null)
+                factory = previous;
+        }
+        return (ServiceFactory<T>) factory;
+    }
+
+    private <T> ServiceFactory<T> createFactory(Constructor<T> constructor) {
+        Class<T> declaringClass = constructor.getDeclaringClass();
+        InjectionPoint<T> injectionPoint = ServiceRegistryUtils.findInjectionPoint(declaringClass);
+        List<Class<?>> serviceTypes = injectionPoint != null && injectionPoint.getConstructor().equals(constructor) ?
+                injectionPoint.getServiceTypes() :
+                Arrays.asList(ServiceRegistryUtils.getServiceTypes(constructor));
+
+        ServiceRegistration<?>[] serviceRegistrations = new ServiceRegistration[serviceTypes.size()];
+        Set<Class<?>> dependencies = implementationDependencies.computeIfAbsent(declaringClass, c -> ConcurrentHashMap.newKeySet());
+        for (int i = 0; i < serviceRegistrations.length; i++) {
+            Class<?> serviceType = serviceTypes.get(i);
+            serviceRegistrations[i] = lookup(ServiceKey.of(serviceType));
+            dependencies.add(serviceType);
+        }
+        return new CompiledServiceFactory<>(constructor, serviceRegistrations);
+    }
+
+    private Collection<Class<?>> getImplementationDependencies(Class<?> implementation) {
+        Set<Class<?>> dependencies = implementationDependencies.get(implementation);
+        return dependencies != null ? dependencies : Collections.emptySet();
+    }
+
+    private class DefaultServiceCapability implements ServiceCapability {
+
+        @Override
+        public <T> ServiceRegistration<T> getService(Class<T> serviceClass) {
+            return lookup(ServiceKey.of(serviceClass));
+        }
+
+        @Override
+        public <T> ServiceRegistration<T> getService(ServiceKey<T> serviceKey) {
+            return lookup(serviceKey);
+        }
+
+        @Override
+        public Collection<ServiceRegistration<?>> getServices() {
+            return servicesSnapshot.getElements();
+        }
+    }
+
+    private class DefaultServiceRegistration<T> implements ServiceRegistration<T> {
+
+        private final ServiceKey<T> key;
+        private final List<ServiceListener<? super T>> listeners = new CopyOnWriteArrayList<>();
+        private final Queue<Long> pendingNotifications = new ConcurrentLinkedQueue<>();
+        private final AtomicInteger notificationsInProgress = new AtomicInteger();
+        // Either null, the instance or a LazyBinding
+        private volatile Object binding;
+        private volatile long version;
+
+        private DefaultServiceRegistration(ServiceKey<T> key) {
+            this.key = Objects.requireNonNull(key, "key must not be null");
         }
 
         @Override
         public Class<T> getService() {
-            return service;
+            return key.getService();
         }
 
         @Override
+        public ServiceKey<T> getKey() {
+            return key;
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
         public T getInstance() {
-            return instance;
+            Object binding = this.binding;
+            if (binding instanceof LazyBinding)
+                return realize();
+            return (T) binding;
         }
 
         @Override
         public void setInstance(T instance) {
-            this.instance = instance;
+            bind(instance);
+        }
+
+        @Override
+        public void setLazyInstance(Supplier<? extends T> supplier) {
+            bind(new LazyBinding<>(Objects.requireNonNull(supplier, "supplier must not be null")));
+        }
+
+        @Override
+        public long getVersion() {
+            return version;
+        }
+
+        @Override
+        public void addListener(ServiceListener<? super T> listener) {
+            listeners.add(Objects.requireNonNull(listener, "listener must not be null"));
+        }
+
+        @Override
+        public void removeListener(ServiceListener<? super T> listener) {
+            listeners.remove(listener);
+        }
+
+        private void bind(Object binding) {
+            synchronized (this) {
+                this.binding = binding;
+                long version = ++this.version;
+                // Enqueued while locked, so notifications are queued in the order of their versions
+                if (!listeners.isEmpty())
+                    pendingNotifications.add(version);
+            }
+            notifyListeners();
+        }
+
+        private void notifyListeners() {
+            // Only one thread delivers at a time, others leave their notifications to it
+            if (notificationsInProgress.getAndIncrement() != 0)
+                return;
+            int missed = 1;
+            do {
+                Long version;
+                while ((version = pendingNotifications.poll()) != null) {
+                    for (ServiceListener<? super T> listener : listeners) {
+                        try {
+                            listener.serviceChanged(this, version);
+                        } catch (Throwable throwable) {
+                            LOGGER.error(MARKER_SERVICES, "Listener " + listener + " of " + this + " failed", throwable);
+                        }
+                    }
+                }
+                missed = notificationsInProgress.addAndGet(-missed);
+            } while (missed != 0);
+        }
+
+        @Override
+        public boolean isRealized() {
+            return !(binding instanceof LazyBinding);
+        }
+
+        private boolean isOwnedBy(ClassLoader classLoader) {
+            if (isDefinedBy(key.getService(), classLoader))
+                return true;
+            Object binding = this.binding;
+            if (binding instanceof LazyBinding)
+                binding = ((LazyBinding<?>) binding).supplier;
+            return binding != null && isDefinedBy(binding.getClass(), classLoader);
+        }
+
+        /**
+         * Realizes the current lazy binding. The supplier is invoked without holding a lock, so it may bind the
+         * registration itself, for example by activating the plugin providing the service. In that case its binding
+         * wins. Other threads wait until the realization completes.
+         */
+        @SuppressWarnings("unchecked")
+        private T realize() {
+            Object binding = this.binding;
+            if (!(binding instanceof LazyBinding))
+                return (T) binding;
+            LazyBinding<T> lazyBinding = (LazyBinding<T>) binding;
+            Thread currentThread = Thread.currentThread();
+            synchronized (lazyBinding) {
+                while (lazyBinding.realizer != null) {
+                    if (lazyBinding.realizer == currentThread || lazyBinding.isDelegate(currentThread))
+                        throw new IllegalStateException("Circular realization of " + key.getService().getName());
+                    try {
+                        lazyBinding.wait();
+                    } catch (InterruptedException e) {
+                        currentThread.interrupt();
+                        throw new IllegalStateException("Interrupted while waiting for the realization of " + key.getService().getName(), e);
+                    }
+                }
+                if (this.binding != lazyBinding)
+                    return getInstance();
+                if (lazyBinding.startFailure != null)
+                    throw new IllegalStateException(key.getService().getName() + " failed to start", lazyBinding.startFailure);
+                lazyBinding.realizer = currentThread;
+            }
+
+            try {
+                long timer = System.nanoTime();
+                T instance = Objects.requireNonNull(lazyBinding.supplier.get(), "Supplier of " + key.getService().getName() + " returned null");
+                boolean bound;
+                try {
+                    bound = bindRealized(this, lazyBinding, instance);
+                } catch (RuntimeException e) {
+                    // An instance was built but could not be started, it is not built again until the service is rebound
+                    synchronized (lazyBinding) {
+                        lazyBinding.startFailure = e;
+                    }
+                    throw e;
+                }
+                if (!bound)
+                    return getInstance();
+                LOGGER.debug(MARKER_SERVICES, "Realized {} (took {} ms)", this, (System.nanoTime() - timer) / 1_000_000);
+                return instance;
+            } finally {
+                synchronized (lazyBinding) {
+                    lazyBinding.realizer = null;
+                    lazyBinding.notifyAll();
+                }
+            }
+        }
+
+        private synchronized boolean replaceBinding(Object expected, Object binding) {
+            if (this.binding != expected)
+                return false;
+            this.binding = binding;
+            return true;
         }
 
         @Override
         public String toString() {
-            return service.getName();
+            return key.getService().getName();
+        }
+    }
+
+    private static class LazyBinding<T> {
+
+        private final Supplier<? extends T> supplier;
+        // Guarded by the lazy binding itself
+        private Thread realizer;
+        private RuntimeException startFailure;
+
+        private LazyBinding(Supplier<? extends T> supplier) {
+            this.supplier = supplier;
+        }
+
+        private boolean isDelegate(Thread thread) {
+            return supplier instanceof DelegatingSupplier && ((DelegatingSupplier<?>) supplier).isDelegate(thread);
         }
     }
 }
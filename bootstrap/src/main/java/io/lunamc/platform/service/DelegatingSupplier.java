@@ -0,0 +1,34 @@
+/*
+ *  Copyright 2017 LunaMC.io
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package io.lunamc.platform.service;
+
+import java.util.function.Supplier;
+
+/**
+ * A supplier of a lazy binding which hands the work of building the instance to other threads and waits for them.
+ * The registry does not let these threads wait for the realization, since it waits for them in turn, but fails their
+ * access like a circular realization.
+ *
+ * @param <T> The service type
+ */
+public interface DelegatingSupplier<T> extends Supplier<T> {
+
+    /**
+     * @return Whether the thread works on behalf of a running {@link #get()}
+     */
+    boolean isDelegate(Thread thread);
+}
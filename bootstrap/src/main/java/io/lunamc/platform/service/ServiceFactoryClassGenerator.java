@@ -0,0 +1,389 @@
+/*
+ *  Copyright 2017 LunaMC.io
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package io.lunamc.platform.service;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Modifier;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+/**
+ * Generates a {@link Supplier} class for a constructor whose {@code get()} method invokes the constructor directly with
+ * arguments bound to the instance. The class is defined by its own class loader which delegates to the class loader of
+ * the constructed class, so classes of plugins are resolved the same way as from the plugin itself.
+ */
+final class ServiceFactoryClassGenerator {
+
+    private static final String CLASS_NAME_PREFIX = CompiledServiceFactory.class.getName() + "$Generated$";
+    private static final AtomicLong COUNTER = new AtomicLong();
+    private static final String OBJECT = "java/lang/Object";
+    private static final String SUPPLIER = "java/util/function/Supplier";
+    private static final String ARGUMENTS_FIELD = "arguments";
+    private static final String ARGUMENTS_DESCRIPTOR = "[Ljava/lang/Object;";
+    private static final int CLASS_FILE_VERSION = 52;
+    private static final int ACC_PUBLIC = 0x0001;
+    private static final int ACC_PRIVATE = 0x0002;
+    private static final int ACC_FINAL = 0x0010;
+    private static final int ACC_SUPER = 0x0020;
+    private static final int ALOAD_0 = 0x2a;
+    private static final int ALOAD_1 = 0x2b;
+    private static final int ICONST_0 = 0x03;
+    private static final int BIPUSH = 0x10;
+    private static final int SIPUSH = 0x11;
+    private static final int AALOAD = 0x32;
+    private static final int DUP = 0x59;
+    private static final int ARETURN = 0xb0;
+    private static final int RETURN = 0xb1;
+    private static final int GETFIELD = 0xb4;
+    private static final int PUTFIELD = 0xb5;
+    private static final int INVOKEVIRTUAL = 0xb6;
+    private static final int INVOKESPECIAL = 0xb7;
+    private static final int NEW = 0xbb;
+    private static final int CHECKCAST = 0xc0;
+
+    private ServiceFactoryClassGenerator() {
+        throw new UnsupportedOperationException(getClass().getSimpleName() + " is a utility class and should not be constructed");
+    }
+
+    /**
+     * @return The supplier or {@code null} if the constructor can not be invoked by a generated class, because it or
+     *         one of its parameter types is not public, or an argument would need a conversion other than unboxing
+     */
+    @SuppressWarnings("unchecked")
+    static <T> Supplier<T> generate(Constructor<T> constructor, Object[] arguments) throws ReflectiveOperationException {
+        Class<T> declaringClass = constructor.getDeclaringClass();
+        Class<?>[] parameterTypes = constructor.getParameterTypes();
+        if (!isAccessible(declaringClass) || Modifier.isAbstract(declaringClass.getModifiers()) || !Modifier.isPublic(constructor.getModifiers()))
+            return null;
+        if (arguments.length != parameterTypes.length)
+            return null;
+        for (int i = 0; i < parameterTypes.length; i++) {
+            Class<?> parameterType = parameterTypes[i];
+            if (!isAccessible(parameterType))
+                return null;
+            // Reflection also widens primitives and rejects null for them, leave these cases to it
+            if (parameterType.isPrimitive() ? !getWrapperType(parameterType).isInstance(arguments[i]) : arguments[i] != null && !parameterType.isInstance(arguments[i]))
+                return null;
+        }
+
+        String className = CLASS_NAME_PREFIX + COUNTER.incrementAndGet();
+        byte[] bytecode;
+        try {
+            bytecode = generateClass(className.replace('.', '/'), declaringClass, parameterTypes);
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+        DefiningClassLoader classLoader = new DefiningClassLoader(declaringClass.getClassLoader());
+        // The generated class must resolve the same classes the constructor was reflected from
+        if (!isVisible(classLoader, declaringClass))
+            return null;
+        for (Class<?> parameterType : parameterTypes) {
+            if (!isVisible(classLoader, parameterType))
+                return null;
+        }
+        Class<?> generatedClass = classLoader.define(className, bytecode, declaringClass);
+        return (Supplier<T>) generatedClass.getConstructor(Object[].class).newInstance((Object) arguments.clone());
+    }
+
+    private static boolean isAccessible(Class<?> aClass) {
+        while (aClass.isArray())
+            aClass = aClass.getComponentType();
+        return aClass.isPrimitive() || Modifier.isPublic(aClass.getModifiers());
+    }
+
+    private static boolean isVisible(ClassLoader classLoader, Class<?> aClass) {
+        if (aClass.isArray())
+            return isVisible(classLoader, aClass.getComponentType());
+        if (aClass.isPrimitive())
+            return true;
+        try {
+            return Class.forName(aClass.getName(), false, classLoader) == aClass;
+        } catch (ClassNotFoundException e) {
+            return false;
+        }
+    }
+
+    private static byte[] generateClass(String className, Class<?> declaringClass, Class<?>[] parameterTypes) throws IOException {
+        ConstantPool constantPool = new ConstantPool();
+        int thisClass = constantPool.classInfo(className);
+        int objectClass = constantPool.classInfo(OBJECT);
+        int supplierClass = constantPool.classInfo(SUPPLIER);
+        int argumentsField = constantPool.fieldRef(className, ARGUMENTS_FIELD, ARGUMENTS_DESCRIPTOR);
+        int objectConstructor = constantPool.methodRef(OBJECT, "<init>", "()V");
+        String declaringClassName = declaringClass.getName().replace('.', '/');
+        int targetClass = constantPool.classInfo(declaringClassName);
+        int targetConstructor = constantPool.methodRef(declaringClassName, "<init>", getConstructorDescriptor(parameterTypes));
+        int[] parameterClasses = new int[parameterTypes.length];
+        int[] unboxingMethods = new int[parameterTypes.length];
+        for (int i = 0; i < parameterTypes.length; i++) {
+            Class<?> parameterType = parameterTypes[i];
+            if (parameterType.isPrimitive()) {
+                String wrapperName = getInternalName(getWrapperType(parameterType));
+                parameterClasses[i] = constantPool.classInfo(wrapperName);
+                unboxingMethods[i] = constantPool.methodRef(wrapperName, parameterType.getName() + "Value", "()" + getDescriptor(parameterType));
+            } else {
+                parameterClasses[i] = constantPool.classInfo(getInternalName(parameterType));
+            }
+        }
+        int fieldName = constantPool.utf8(ARGUMENTS_FIELD);
+        int fieldDescriptor = constantPool.utf8(ARGUMENTS_DESCRIPTOR);
+        int constructorName = constantPool.utf8("<init>");
+        int constructorDescriptor = constantPool.utf8("(" + ARGUMENTS_DESCRIPTOR + ")V");
+        int getName = constantPool.utf8("get");
+        int getDescriptor = constantPool.utf8("()Ljava/lang/Object;");
+        int code = constantPool.utf8("Code");
+
+        // <init>(Object[] arguments): super(); this.arguments = arguments;
+        ByteArrayOutputStream constructorCode = new ByteArrayOutputStream();
+        DataOutputStream constructorOut = new DataOutputStream(constructorCode);
+        constructorOut.writeByte(ALOAD_0);
+        constructorOut.writeByte(INVOKESPECIAL);
+        constructorOut.writeShort(objectConstructor);
+        constructorOut.writeByte(ALOAD_0);
+        constructorOut.writeByte(ALOAD_1);
+        constructorOut.writeByte(PUTFIELD);
+        constructorOut.writeShort(argumentsField);
+        constructorOut.writeByte(RETURN);
+
+        // get(): return new T((P0) arguments[0], ((Integer) arguments[1]).intValue(), ...);
+        ByteArrayOutputStream getCode = new ByteArrayOutputStream();
+        DataOutputStream getOut = new DataOutputStream(getCode);
+        getOut.writeByte(NEW);
+        getOut.writeShort(targetClass);
+        getOut.writeByte(DUP);
+        // The new instance twice, then the converted arguments and at most the array and index of the next argument
+        int maxStack = 2;
+        int stack = 2;
+        for (int i = 0; i < parameterTypes.length; i++) {
+            getOut.writeByte(ALOAD_0);
+            getOut.writeByte(GETFIELD);
+            getOut.writeShort(argumentsField);
+            writeIndex(getOut, i);
+            getOut.writeByte(AALOAD);
+            getOut.writeByte(CHECKCAST);
+            getOut.writeShort(parameterClasses[i]);
+            maxStack = Math.max(maxStack, stack + 2);
+            if (parameterTypes[i].isPrimitive()) {
+                getOut.writeByte(INVOKEVIRTUAL);
+                getOut.writeShort(unboxingMethods[i]);
+            }
+            stack += getSize(parameterTypes[i]);
+            maxStack = Math.max(maxStack, stack);
+        }
+        getOut.writeByte(INVOKESPECIAL);
+        getOut.writeShort(targetConstructor);
+        getOut.writeByte(ARETURN);
+
+        ByteArrayOutputStream result = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(result);
+        out.writeInt(0xcafebabe);
+        out.writeShort(0);
+        out.writeShort(CLASS_FILE_VERSION);
+        constantPool.write(out);
+        out.writeShort(ACC_PUBLIC | ACC_FINAL | ACC_SUPER);
+        out.writeShort(thisClass);
+        out.writeShort(objectClass);
+        out.writeShort(1);
+        out.writeShort(supplierClass);
+
+        out.writeShort(1);
+        out.writeShort(ACC_PRIVATE | ACC_FINAL);
+        out.writeShort(fieldName);
+        out.writeShort(fieldDescriptor);
+        out.writeShort(0);
+
+        out.writeShort(2);
+        writeMethod(out, constructorName, constructorDescriptor, code, 2, 2, constructorCode.toByteArray());
+        writeMethod(out, getName, getDescriptor, code, maxStack, 1, getCode.toByteArray());
+
+        out.writeShort(0);
+        out.flush();
+        return result.toByteArray();
+    }
+
+    private static void writeIndex(DataOutputStream out, int index) throws IOException {
+        if (index <= 5) {
+            out.writeByte(ICONST_0 + index);
+        } else if (index <= Byte.MAX_VALUE) {
+            out.writeByte(BIPUSH);
+            out.writeByte(index);
+        } else {
+            // The operand of bipush is signed, constructors may have up to 255 parameters
+            out.writeByte(SIPUSH);
+            out.writeShort(index);
+        }
+    }
+
+    private static void writeMethod(DataOutputStream out, int name, int descriptor, int codeAttribute, int maxStack, int maxLocals, byte[] code) throws IOException {
+        out.writeShort(ACC_PUBLIC);
+        out.writeShort(name);
+        out.writeShort(descriptor);
+        out.writeShort(1);
+        out.writeShort(codeAttribute);
+        out.writeInt(12 + code.length);
+        out.writeShort(maxStack);
+        out.writeShort(maxLocals);
+        out.writeInt(code.length);
+        out.write(code);
+        // No exception table and no attributes, a stack map table is only required for branches
+        out.writeShort(0);
+        out.writeShort(0);
+    }
+
+    private static String getConstructorDescriptor(Class<?>[] parameterTypes) {
+        StringBuilder builder = new StringBuilder("(");
+        for (Class<?> parameterType : parameterTypes)
+            builder.append(getDescriptor(parameterType));
+        return builder.append(")V").toString();
+    }
+
+    private static String getDescriptor(Class<?> aClass) {
+        if (aClass.isPrimitive())
+            return String.valueOf(getPrimitiveDescriptor(aClass));
+        return aClass.isArray() ? getInternalName(aClass) : 'L' + getInternalName(aClass) + ';';
+    }
+
+    private static char getPrimitiveDescriptor(Class<?> aClass) {
+        if (aClass == boolean.class)
+            return 'Z';
+        else if (aClass == long.class)
+            return 'J';
+        // Like I for int and D for double
+        return Character.toUpperCase(aClass.getName().charAt(0));
+    }
+
+    private static int getSize(Class<?> aClass) {
+        return aClass == long.class || aClass == double.class ? 2 : 1;
+    }
+
+    private static Class<?> getWrapperType(Class<?> primitiveType) {
+        if (primitiveType == boolean.class)
+            return Boolean.class;
+        else if (primitiveType == byte.class)
+            return Byte.class;
+        else if (primitiveType == char.class)
+            return Character.class;
+        else if (primitiveType == short.class)
+            return Short.class;
+        else if (primitiveType == int.class)
+            return Integer.class;
+        else if (primitiveType == long.class)
+            return Long.class;
+        else if (primitiveType == float.class)
+            return Float.class;
+        else if (primitiveType == double.class)
+            return Double.class;
+        throw new IllegalArgumentException(primitiveType + " is not a primitive type");
+    }
+
+    private static String getInternalName(Class<?> aClass) {
+        // Array class names are already descriptors, like [Ljava.lang.String;
+        return aClass.getName().replace('.', '/');
+    }
+
+    private static class ConstantPool {
+
+        private static final int CONSTANT_UTF8 = 1;
+        private static final int CONSTANT_CLASS = 7;
+        private static final int CONSTANT_FIELD_REF = 9;
+        private static final int CONSTANT_METHOD_REF = 10;
+        private static final int CONSTANT_NAME_AND_TYPE = 12;
+
+        private final ByteArrayOutputStream entries = new ByteArrayOutputStream();
+        private final DataOutputStream out = new DataOutputStream(entries);
+        private final Map<String, Integer> indices = new HashMap<>();
+        private int count = 1;
+
+        private int utf8(String value) throws IOException {
+            Integer index = indices.get("utf8:" + value);
+            if (index != null)
+                return index;
+            out.writeByte(CONSTANT_UTF8);
+            out.writeUTF(value);
+            return add("utf8:" + value);
+        }
+
+        private int classInfo(String internalName) throws IOException {
+            Integer index = indices.get("class:" + internalName);
+            if (index != null)
+                return index;
+            int name = utf8(internalName);
+            out.writeByte(CONSTANT_CLASS);
+            out.writeShort(name);
+            return add("class:" + internalName);
+        }
+
+        private int fieldRef(String owner, String name, String descriptor) throws IOException {
+            return memberRef(CONSTANT_FIELD_REF, owner, name, descriptor);
+        }
+
+        private int methodRef(String owner, String name, String descriptor) throws IOException {
+            return memberRef(CONSTANT_METHOD_REF, owner, name, descriptor);
+        }
+
+        private int memberRef(int tag, String owner, String name, String descriptor) throws IOException {
+            String key = tag + ":" + owner + '.' + name + descriptor;
+            Integer index = indices.get(key);
+            if (index != null)
+                return index;
+            int ownerClass = classInfo(owner);
+            int nameIndex = utf8(name);
+            int descriptorIndex = utf8(descriptor);
+            out.writeByte(CONSTANT_NAME_AND_TYPE);
+            out.writeShort(nameIndex);
+            out.writeShort(descriptorIndex);
+            // Name and type entries are not shared between members, one more entry per member does not matter here
+            int nameAndType = count++;
+            out.writeByte(tag);
+            out.writeShort(ownerClass);
+            out.writeShort(nameAndType);
+            return add(key);
+        }
+
+        private int add(String key) {
+            int index = count++;
+            indices.put(key, index);
+            return index;
+        }
+
+        private void write(DataOutputStream target) throws IOException {
+            out.flush();
+            target.writeShort(count);
+            entries.writeTo(target);
+        }
+    }
+
+    private static class DefiningClassLoader extends ClassLoader {
+
+        private DefiningClassLoader(ClassLoader parent) {
+            super(parent);
+        }
+
+        /**
+         * Defines the class in the protection domain of the constructed class, so it does not restrict the permissions
+         * of the constructor.
+         */
+        private Class<?> define(String name, byte[] bytecode, Class<?> constructedClass) {
+            return defineClass(name, bytecode, 0, bytecode.length, constructedClass.getProtectionDomain());
+        }
+    }
+}
@@ -0,0 +1,295 @@
+/*
+ *  Copyright 2017 LunaMC.io
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package io.lunamc.platform.service;
+
+import io.lunamc.platform.utils.DependencyGraph;
+import io.lunamc.platform.utils.NamedThreadFactory;
+import io.lunamc.platform.utils.StartupTracer;
+import io.lunamc.platform.utils.ThreadUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.slf4j.Marker;
+import org.slf4j.MarkerFactory;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Function;
+import java.util.function.ToIntFunction;
+
+/**
+ * Starts and shuts down services concurrently. Services are processed in waves of descending start (or shutdown)
+ * priority. Inside of a wave, a service is started as soon as all services it was instantiated with (see
+ * {@link ServiceRegistry#instantiate}) are started, and shut down as soon as all services instantiated with it are
+ * shut down.
+ */
+class ServiceLifecycleExecutor {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(ServiceLifecycleExecutor.class);
+    private static final Marker MARKER_SERVICES = MarkerFactory.getMarker("SERVICES");
+    private static final int THREADS;
+    private static final boolean PARALLEL_SHUTDOWN;
+    private static final long SHUTDOWN_TIMEOUT;
+    private static final long SHUTDOWN_DEADLINE;
+
+    static {
+        THREADS = Integer.getInteger("io.lunamc.platform.serviceThreads", Runtime.getRuntime().availableProcessors());
+        PARALLEL_SHUTDOWN = !"sequential".equals(System.getProperty("io.lunamc.platform.serviceShutdownMode", "parallel"));
+        SHUTDOWN_TIMEOUT = Long.getLong("io.lunamc.platform.serviceShutdownTimeout", 10_000);
+        SHUTDOWN_DEADLINE = Long.getLong("io.lunamc.platform.serviceShutdownDeadline", 30_000);
+    }
+
+    private final Collection<ServiceRegistration<?>> registrations;
+    private final Function<Class<?>, Collection<Class<?>>> dependencyResolver;
+
+    ServiceLifecycleExecutor(Collection<ServiceRegistration<?>> registrations, Function<Class<?>, Collection<Class<?>>> dependencyResolver) {
+        this.registrations = Objects.requireNonNull(registrations, "registrations must not be null");
+        this.dependencyResolver = Objects.requireNonNull(dependencyResolver, "dependencyResolver must not be null");
+    }
+
+    void start() {
+        Map<ServiceRegistration<?>, Startable> startables = collect(Startable.class);
+        if (startables.isEmpty())
+            return;
+
+        Map<ServiceRegistration<?>, Long> latencies = new ConcurrentHashMap<>();
+        List<ServiceRegistration<?>> criticalPath = new ArrayList<>();
+        ExecutorService executorService = THREADS > 1 ? Executors.newFixedThreadPool(THREADS, new NamedThreadFactory("service-start", true)) : null;
+        Executor executor = executorService != null ? executorService : Runnable::run;
+        try {
+            for (Map.Entry<Integer, DependencyGraph<ServiceRegistration<?>>> wave : createWaves(startables, Startable::getStartPriority, false).entrySet()) {
+                DependencyGraph<ServiceRegistration<?>> graph = wave.getValue();
+                List<ServiceRegistration<?>> cycle = graph.findCycle();
+                if (!cycle.isEmpty()) {
+                    LOGGER.error(MARKER_SERVICES, "Cyclic dependency between services {}, starting services with start priority {} sequentially", cycle, wave.getKey());
+                    for (ServiceRegistration<?> registration : graph.getNodes())
+                        start(registration, startables.get(registration), latencies);
+                    criticalPath.addAll(graph.getNodes());
+                    continue;
+                }
+
+                Map<ServiceRegistration<?>, CompletableFuture<Void>> futures = graph.schedule(
+                        registration -> CompletableFuture.runAsync(() -> start(registration, startables.get(registration), latencies), executor),
+                        false
+                );
+                CompletableFuture.allOf(futures.values().toArray(new CompletableFuture[futures.size()])).join();
+                criticalPath.addAll(graph.getCriticalPath(latencies::get));
+            }
+        } finally {
+            if (executorService != null)
+                executorService.shutdown();
+        }
+
+        StringBuilder sb = new StringBuilder();
+        for (ServiceRegistration<?> registration : criticalPath) {
+            if (sb.length() > 0)
+                sb.append(" -> ");
+            sb.append(registration.getService().getName())
+                    .append(" (")
+                    .append(TimeUnit.NANOSECONDS.toMillis(latencies.get(registration)))
+                    .append(" ms)");
+        }
+        LOGGER.info(MARKER_SERVICES, "Critical path of service startup: {}", sb.toString());
+    }
+
+    void shutdown() {
+        Map<ServiceRegistration<?>, Shutdownable> shutdownables = collect(Shutdownable.class);
+        if (shutdownables.isEmpty())
+            return;
+        Map<Integer, DependencyGraph<ServiceRegistration<?>>> waves = createWaves(shutdownables, Shutdownable::getShutdownPriority, true);
+
+        if (!PARALLEL_SHUTDOWN) {
+            for (DependencyGraph<ServiceRegistration<?>> graph : waves.values()) {
+                for (ServiceRegistration<?> registration : graph.getNodes())
+                    shutdown(registration, shutdownables.get(registration));
+            }
+            return;
+        }
+
+        long deadline = System.currentTimeMillis() + SHUTDOWN_DEADLINE;
+        ConcurrentMap<ServiceRegistration<?>, Thread> running = new ConcurrentHashMap<>();
+        Set<ServiceRegistration<?>> invoked = ConcurrentHashMap.newKeySet();
+        ExecutorService executor = Executors.newCachedThreadPool(new NamedThreadFactory("service-shutdown", true));
+        ScheduledExecutorService watchdog = Executors.newSingleThreadScheduledExecutor(new NamedThreadFactory("service-shutdown-watchdog", true));
+        try {
+            for (Map.Entry<Integer, DependencyGraph<ServiceRegistration<?>>> wave : waves.entrySet()) {
+                DependencyGraph<ServiceRegistration<?>> graph = wave.getValue();
+                List<ServiceRegistration<?>> cycle = graph.findCycle();
+                Collection<CompletableFuture<Void>> futures;
+                if (!cycle.isEmpty()) {
+                    LOGGER.error(MARKER_SERVICES, "Cyclic dependency between services {}, shutting down services with shutdown priority {} without respecting dependencies", cycle, wave.getKey());
+                    futures = new ArrayList<>();
+                    for (ServiceRegistration<?> registration : graph.getNodes())
+                        futures.add(shutdown(registration, shutdownables.get(registration), deadline, running, invoked, executor, watchdog));
+                } else {
+                    futures = graph.<Void>schedule(registration -> shutdown(registration, shutdownables.get(registration), deadline, running, invoked, executor, watchdog), true).values();
+                }
+
+                try {
+                    CompletableFuture.allOf(futures.toArray(new CompletableFuture[futures.size()])).get(Math.max(deadline - System.currentTimeMillis(), 0), TimeUnit.MILLISECONDS);
+                } catch (TimeoutException e) {
+                    for (Map.Entry<ServiceRegistration<?>, Thread> entry : running.entrySet())
+                        LOGGER.error(MARKER_SERVICES, "{} is still shutting down while the shutdown deadline of {} ms is exceeded: {}", entry.getKey().getService().getName(), SHUTDOWN_DEADLINE, ThreadUtils.describe(entry.getValue()));
+                    LOGGER.error(MARKER_SERVICES, "Shutdown deadline of {} ms exceeded, these services will not be shut down: {}", SHUTDOWN_DEADLINE, getNotInvoked(waves, invoked));
+                    return;
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    LOGGER.error(MARKER_SERVICES, "Interrupted while waiting for services to shut down, these services will not be shut down: {}", getNotInvoked(waves, invoked));
+                    return;
+                } catch (ExecutionException e) {
+                    throw new AssertionError(e);
+                }
+            }
+        } finally {
+            watchdog.shutdownNow();
+            executor.shutdown();
+        }
+    }
+
+    private CompletableFuture<Void> shutdown(ServiceRegistration<?> registration,
+                                             Shutdownable shutdownable,
+                                             long deadline,
+                                             ConcurrentMap<ServiceRegistration<?>, Thread> running,
+                                             Set<ServiceRegistration<?>> invoked,
+                                             Executor executor,
+                                             ScheduledExecutorService watchdog) {
+        CompletableFuture<Void> result = new CompletableFuture<>();
+        executor.execute(() -> {
+            long timeout = Math.min(SHUTDOWN_TIMEOUT, deadline - System.currentTimeMillis());
+            if (timeout <= 0) {
+                LOGGER.error(MARKER_SERVICES, "{} will not be shut down because the shutdown deadline of {} ms is exceeded", registration.getService().getName(), SHUTDOWN_DEADLINE);
+                result.complete(null);
+                return;
+            }
+
+            Thread thread = Thread.currentThread();
+            invoked.add(registration);
+            running.put(registration, thread);
+            watchdog.schedule(() -> {
+                if (result.complete(null))
+                    LOGGER.error(MARKER_SERVICES, "{} did not shut down within {} ms and will be skipped: {}", registration.getService().getName(), timeout, ThreadUtils.describe(thread));
+            }, timeout, TimeUnit.MILLISECONDS);
+            try {
+                shutdown(registration, shutdownable);
+            } finally {
+                running.remove(registration, thread);
+                result.complete(null);
+            }
+        });
+        return result;
+    }
+
+    /**
+     * @return The names of all services whose shutdown was never invoked, wave by wave
+     */
+    private static List<String> getNotInvoked(Map<Integer, DependencyGraph<ServiceRegistration<?>>> waves, Set<ServiceRegistration<?>> invoked) {
+        List<String> result = new ArrayList<>();
+        for (DependencyGraph<ServiceRegistration<?>> graph : waves.values()) {
+            for (ServiceRegistration<?> registration : graph.getNodes()) {
+                if (!invoked.contains(registration))
+                    result.add(registration.getService().getName());
+            }
+        }
+        return result;
+    }
+
+    private <S> Map<ServiceRegistration<?>, S> collect(Class<S> type) {
+        Map<ServiceRegistration<?>, S> result = new LinkedHashMap<>();
+        for (ServiceRegistration<?> registration : registrations) {
+            // Lazy services must not be realized just to start or shut them down
+            if (!registration.isRealized())
+                continue;
+            Object instance = registration.getInstance();
+            if (type.isInstance(instance))
+                result.put(registration, type.cast(instance));
+        }
+        return result;
+    }
+
+    private <S> Map<Integer, DependencyGraph<ServiceRegistration<?>>> createWaves(Map<ServiceRegistration<?>, S> instances, ToIntFunction<S> priorityFunction, boolean shutdown) {
+        Map<Class<?>, ServiceRegistration<?>> byService = new HashMap<>();
+        Map<ServiceRegistration<?>, Integer> priorities = new IdentityHashMap<>();
+        Map<Integer, DependencyGraph<ServiceRegistration<?>>> waves = new TreeMap<>(Comparator.reverseOrder());
+        for (Map.Entry<ServiceRegistration<?>, S> entry : instances.entrySet()) {
+            ServiceRegistration<?> registration = entry.getKey();
+            int priority = priorityFunction.applyAsInt(entry.getValue());
+            byService.put(registration.getService(), registration);
+            priorities.put(registration, priority);
+            waves.computeIfAbsent(priority, p -> new DependencyGraph<>()).addNode(registration);
+        }
+
+        for (Map.Entry<ServiceRegistration<?>, S> entry : instances.entrySet()) {
+            ServiceRegistration<?> registration = entry.getKey();
+            int priority = priorities.get(registration);
+            for (Class<?> dependencyClass : dependencyResolver.apply(entry.getValue().getClass())) {
+                ServiceRegistration<?> dependency = byService.get(dependencyClass);
+                if (dependency == null || dependency == registration)
+                    continue;
+                int dependencyPriority = priorities.get(dependency);
+                if (dependencyPriority == priority)
+                    waves.get(priority).addDependency(registration, dependency);
+                else if (!shutdown && dependencyPriority < priority)
+                    LOGGER.warn(MARKER_SERVICES, "{} depends on {} but has a higher start priority ({} > {}), so it will be started first", registration.getService().getName(), dependencyClass.getName(), priority, dependencyPriority);
+                else if (shutdown && dependencyPriority > priority)
+                    LOGGER.warn(MARKER_SERVICES, "{} depends on {} but has a lower shutdown priority ({} < {}), so it will be shut down last", registration.getService().getName(), dependencyClass.getName(), priority, dependencyPriority);
+            }
+        }
+        return waves;
+    }
+
+    private static void start(ServiceRegistration<?> registration, Startable startable, Map<ServiceRegistration<?>, Long> latencies) {
+        String name = registration.getService().getName();
+        LOGGER.debug(MARKER_SERVICES, "Starting {}...", name);
+        long timer = System.nanoTime();
+        try (StartupTracer.Span ignored = StartupTracer.span("service", "start", name)) {
+            startable.start();
+        } catch (Throwable throwable) {
+            LOGGER.warn(MARKER_SERVICES, "An exception ({}) occurred while starting {}", throwable.getClass().getName(), name, throwable);
+        }
+        timer = System.nanoTime() - timer;
+        latencies.put(registration, timer);
+        LOGGER.debug(MARKER_SERVICES, "Started {} (took {} ms)", name, TimeUnit.NANOSECONDS.toMillis(timer));
+    }
+
+    private static void shutdown(ServiceRegistration<?> registration, Shutdownable shutdownable) {
+        String name = registration.getService().getName();
+        LOGGER.debug(MARKER_SERVICES, "Shutting down {}...", name);
+        try {
+            shutdownable.shutdown();
+        } catch (Throwable throwable) {
+            LOGGER.warn(MARKER_SERVICES, "An exception ({}) occurred while shutting down {}", throwable.getClass().getName(), name, throwable);
+        }
+    }
+}
@@ -0,0 +1,275 @@
+/*
+ *  Copyright 2017 LunaMC.io
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package io.lunamc.platform.utils;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.lang.ref.PhantomReference;
+import java.lang.ref.Reference;
+import java.lang.ref.WeakReference;
+import java.lang.reflect.Array;
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Verifies that class loaders become unreachable and finds the references retaining them if they do not. The search
+ * walks the object graph reflectively from a set of roots, so it is slow and only meant for diagnostics. References
+ * held by stack frames or native code are not visible to it, and static fields are only read from classes with
+ * instances in the graph, since reading them could initialize a class otherwise.
+ * <p>
+ * On Java 9 and later, fields of classes in modules which are not open to the platform, like those of
+ * {@code java.util.ArrayList} or {@code java.lang.Thread}, can not be read, so paths through them are not found. The
+ * packages are logged once, and can be opened with {@code --add-opens}, for example
+ * {@code --add-opens java.base/java.util=ALL-UNNAMED --add-opens java.base/java.lang=ALL-UNNAMED}.
+ */
+public final class ClassLoaderLeakDetector {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(ClassLoaderLeakDetector.class);
+    private static final AtomicBoolean INACCESSIBLE_FIELDS_LOGGED = new AtomicBoolean();
+    private static final int MAX_VISITED_OBJECTS = 2_000_000;
+    private static final long GC_INTERVAL = 50;
+    private static final Field REFERENT;
+
+    static {
+        Field referent;
+        try {
+            referent = Reference.class.getDeclaredField("referent");
+        } catch (NoSuchFieldException e) {
+            referent = null;
+        }
+        REFERENT = referent;
+    }
+
+    private ClassLoaderLeakDetector() {
+        throw new UnsupportedOperationException(getClass().getSimpleName() + " is a utility class and should not be constructed");
+    }
+
+    /**
+     * Requests garbage collections until all references are cleared or the timeout elapses.
+     *
+     * @return Whether all references were cleared
+     */
+    public static boolean awaitCollection(Collection<? extends Reference<?>> references, long timeout) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + timeout;
+        while (true) {
+            boolean cleared = true;
+            for (Reference<?> reference : references) {
+                if (reference.get() != null) {
+                    cleared = false;
+                    break;
+                }
+            }
+            if (cleared)
+                return true;
+            if (System.currentTimeMillis() >= deadline)
+                return false;
+            System.gc();
+            Thread.sleep(GC_INTERVAL);
+        }
+    }
+
+    /**
+     * Searches the shortest reference paths from the roots to the class loader, a class it defines or an instance of
+     * such a class. Weak and phantom references are not followed.
+     *
+     * @param roots    The roots of the search by their names
+     * @param maxPaths The maximum number of paths to return
+     * @return The found paths, formatted for logging
+     */
+    public static List<String> findRetentionPaths(ClassLoader classLoader, Map<String, ?> roots, int maxPaths) {
+        Map<Object, Node> visited = new IdentityHashMap<>();
+        Deque<Object> queue = new ArrayDeque<>();
+        Map<Class<?>, List<Field>> fieldCache = new HashMap<>();
+        Set<Class<?>> scannedClasses = Collections.newSetFromMap(new IdentityHashMap<>());
+        Set<String> inaccessiblePackages = new TreeSet<>();
+        List<String> result = new ArrayList<>();
+        for (Map.Entry<String, ?> root : roots.entrySet()) {
+            Object value = root.getValue();
+            if (value != null && !visited.containsKey(value)) {
+                visited.put(value, new Node(null, root.getKey()));
+                queue.add(value);
+                if (value instanceof Class)
+                    scannedClasses.add((Class<?>) value);
+            }
+        }
+        while (!queue.isEmpty() && result.size() < maxPaths) {
+            Object current = queue.poll();
+            if (isRetaining(current, classLoader)) {
+                result.add(formatPath(visited, current, classLoader));
+                continue;
+            }
+            if (visited.size() >= MAX_VISITED_OBJECTS)
+                continue;
+
+            Class<?> type = current.getClass();
+            if (current instanceof Class) {
+                Class<?> aClass = (Class<?>) current;
+                enqueue(visited, queue, current, "<loader>", aClass.getClassLoader());
+                if (visited.get(current).parent == null)
+                    scanStaticFields(visited, queue, aClass, inaccessiblePackages);
+            } else if (type.isArray()) {
+                if (!type.getComponentType().isPrimitive()) {
+                    int length = Array.getLength(current);
+                    for (int i = 0; i < length; i++)
+                        enqueue(visited, queue, current, "[" + i + ']', Array.get(current, i));
+                }
+            } else if (current instanceof Thread) {
+                enqueue(visited, queue, current, "contextClassLoader", ((Thread) current).getContextClassLoader());
+            }
+            if (!type.isArray()) {
+                // An instance exists, so its class and all super classes are initialized
+                enqueue(visited, queue, current, "<class>", type);
+                for (Class<?> aClass = type; aClass != null; aClass = aClass.getSuperclass()) {
+                    if (scannedClasses.add(aClass)) {
+                        enqueue(visited, queue, current, "<class>", aClass);
+                        scanStaticFields(visited, queue, aClass, inaccessiblePackages);
+                    }
+                }
+                boolean weak = current instanceof WeakReference || current instanceof PhantomReference;
+                for (Field field : fieldCache.computeIfAbsent(type, key -> getInstanceFields(key, inaccessiblePackages))) {
+                    if (!weak || !field.equals(REFERENT))
+                        enqueue(visited, queue, current, field.getName(), get(field, current));
+                }
+            }
+        }
+        if (result.isEmpty() && visited.size() >= MAX_VISITED_OBJECTS)
+            result.add("(search aborted after " + MAX_VISITED_OBJECTS + " objects)");
+        if (!inaccessiblePackages.isEmpty() && INACCESSIBLE_FIELDS_LOGGED.compareAndSet(false, true))
+            LOGGER.warn("Fields of classes in the packages {} are not accessible and were not searched for references to class loaders, open them with --add-opens to find references through them", inaccessiblePackages);
+        return result;
+    }
+
+    private static void scanStaticFields(Map<Object, Node> visited, Deque<Object> queue, Class<?> aClass, Set<String> inaccessiblePackages) {
+        for (Field field : getStaticFields(aClass, inaccessiblePackages))
+            enqueue(visited, queue, aClass, "static " + field.getName(), get(field, null));
+    }
+
+    private static boolean isRetaining(Object object, ClassLoader classLoader) {
+        if (object == classLoader)
+            return true;
+        if (object instanceof Class)
+            return ((Class<?>) object).getClassLoader() == classLoader;
+        return object.getClass().getClassLoader() == classLoader;
+    }
+
+    private static void enqueue(Map<Object, Node> visited, Deque<Object> queue, Object parent, String name, Object value) {
+        if (value == null || value instanceof String || value instanceof Number || value instanceof Boolean || value instanceof Character)
+            return;
+        if (!visited.containsKey(value)) {
+            visited.put(value, new Node(parent, name));
+            queue.add(value);
+        }
+    }
+
+    private static String formatPath(Map<Object, Node> visited, Object target, ClassLoader classLoader) {
+        List<String> elements = new ArrayList<>();
+        elements.add(describe(target, classLoader));
+        Object current = target;
+        Node node;
+        while ((node = visited.get(current)) != null) {
+            if (node.parent == null) {
+                elements.add(node.name);
+                break;
+            }
+            Class<?> owner = node.parent instanceof Class ? (Class<?>) node.parent : node.parent.getClass();
+            elements.add(owner.getName() + '.' + node.name);
+            current = node.parent;
+        }
+        Collections.reverse(elements);
+        return String.join(" -> ", elements);
+    }
+
+    private static String describe(Object object, ClassLoader classLoader) {
+        if (object == classLoader)
+            return "the class loader";
+        if (object instanceof Class)
+            return "class " + ((Class<?>) object).getName();
+        return "instance of " + object.getClass().getName();
+    }
+
+    private static List<Field> getInstanceFields(Class<?> type, Set<String> inaccessiblePackages) {
+        List<Field> result = new ArrayList<>();
+        for (Class<?> current = type; current != null; current = current.getSuperclass()) {
+            for (Field field : current.getDeclaredFields()) {
+                if (!Modifier.isStatic(field.getModifiers()) && !field.getType().isPrimitive() && makeAccessible(field, inaccessiblePackages))
+                    result.add(field);
+            }
+        }
+        return result;
+    }
+
+    private static List<Field> getStaticFields(Class<?> type, Set<String> inaccessiblePackages) {
+        List<Field> result = new ArrayList<>();
+        Field[] fields;
+        try {
+            fields = type.getDeclaredFields();
+        } catch (Throwable ignore) {
+            // Linkage errors of classes which cannot be resolved
+            return result;
+        }
+        for (Field field : fields) {
+            if (Modifier.isStatic(field.getModifiers()) && !field.getType().isPrimitive() && makeAccessible(field, inaccessiblePackages))
+                result.add(field);
+        }
+        return result;
+    }
+
+    private static boolean makeAccessible(Field field, Set<String> inaccessiblePackages) {
+        try {
+            field.setAccessible(true);
+            return true;
+        } catch (RuntimeException ignore) {
+            // Not accessible on Java 9 and later without opening the module
+            Package aPackage = field.getDeclaringClass().getPackage();
+            if (aPackage != null)
+                inaccessiblePackages.add(aPackage.getName());
+            return false;
+        }
+    }
+
+    private static Object get(Field field, Object object) {
+        try {
+            return field.get(object);
+        } catch (Throwable ignore) {
+            return null;
+        }
+    }
+
+    private static class Node {
+
+        private final Object parent;
+        private final String name;
+
+        private Node(Object parent, String name) {
+            this.parent = parent;
+            this.name = name;
+        }
+    }
+}
@@ -0,0 +1,44 @@
+/*
+ *  Copyright 2017 LunaMC.io
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package io.lunamc.platform.utils;
+
+import java.util.Collections;
+import java.util.List;
+
+public class CyclicDependencyException extends RuntimeException {
+
+    private final List<?> cycle;
+
+    public CyclicDependencyException(List<?> cycle) {
+        super("Cyclic dependency: " + format(cycle));
+
+        this.cycle = Collections.unmodifiableList(cycle);
+    }
+
+    public List<?> getCycle() {
+        return cycle;
+    }
+
+    private static String format(List<?> cycle) {
+        StringBuilder sb = new StringBuilder();
+        for (Object element : cycle)
+            sb.append(element).append(" -> ");
+        if (!cycle.isEmpty())
+            sb.append(cycle.get(0));
+        return sb.toString();
+    }
+}
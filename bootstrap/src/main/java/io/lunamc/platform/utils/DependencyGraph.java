@@ -0,0 +1,225 @@
+/*
+ *  Copyright 2017 LunaMC.io
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package io.lunamc.platform.utils;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.function.Function;
+import java.util.function.ToLongFunction;
+
+/**
+ * A directed acyclic graph of nodes and their dependencies. The graph is not thread-safe and is meant to be built by a
+ * single thread before it is evaluated. Iteration order always follows insertion order.
+ *
+ * @param <T> The node type
+ */
+public class DependencyGraph<T> {
+
+    private final Map<T, Set<T>> dependencies = new LinkedHashMap<>();
+    private final Map<T, Set<T>> dependents = new LinkedHashMap<>();
+
+    public void addNode(T node) {
+        Objects.requireNonNull(node, "node must not be null");
+        dependencies.computeIfAbsent(node, n -> new LinkedHashSet<>());
+        dependents.computeIfAbsent(node, n -> new LinkedHashSet<>());
+    }
+
+    public void addDependency(T dependent, T dependency) {
+        addNode(dependent);
+        addNode(dependency);
+        dependencies.get(dependent).add(dependency);
+        dependents.get(dependency).add(dependent);
+    }
+
+    public Set<T> getNodes() {
+        return Collections.unmodifiableSet(dependencies.keySet());
+    }
+
+    public Set<T> getDependencies(T node) {
+        return Collections.unmodifiableSet(get(dependencies, node));
+    }
+
+    public Set<T> getDependents(T node) {
+        return Collections.unmodifiableSet(get(dependents, node));
+    }
+
+    /**
+     * Searches the graph for a cycle.
+     *
+     * @return The nodes forming the first cycle found, or an empty list if the graph is acyclic
+     */
+    public List<T> findCycle() {
+        Map<T, Boolean> visiting = new HashMap<>();
+        List<T> path = new ArrayList<>();
+        for (T node : dependencies.keySet()) {
+            List<T> cycle = findCycle(node, visiting, path);
+            if (cycle != null)
+                return cycle;
+        }
+        return Collections.emptyList();
+    }
+
+    /**
+     * Groups the nodes into layers. Every node only depends on nodes of previous layers, so all nodes of the same layer
+     * may be processed concurrently.
+     *
+     * @throws CyclicDependencyException if the graph contains a cycle
+     */
+    public List<List<T>> getLayers() {
+        Map<T, Integer> remaining = new HashMap<>();
+        List<T> current = new ArrayList<>();
+        for (Map.Entry<T, Set<T>> entry : dependencies.entrySet()) {
+            int count = entry.getValue().size();
+            if (count == 0)
+                current.add(entry.getKey());
+            else
+                remaining.put(entry.getKey(), count);
+        }
+
+        List<List<T>> layers = new ArrayList<>();
+        while (!current.isEmpty()) {
+            layers.add(Collections.unmodifiableList(current));
+            List<T> next = new ArrayList<>();
+            for (T node : current) {
+                for (T dependent : dependents.get(node)) {
+                    int count = remaining.merge(dependent, -1, Integer::sum);
+                    if (count == 0) {
+                        remaining.remove(dependent);
+                        next.add(dependent);
+                    }
+                }
+            }
+            current = next;
+        }
+        if (!remaining.isEmpty())
+            throw new CyclicDependencyException(findCycle());
+        return Collections.unmodifiableList(layers);
+    }
+
+    public List<T> getTopologicalOrder() {
+        List<T> result = new ArrayList<>(dependencies.size());
+        for (List<T> layer : getLayers())
+            result.addAll(layer);
+        return result;
+    }
+
+    /**
+     * Schedules a task for every node. The task of a node is applied as soon as the tasks of all of its dependencies
+     * (or dependents if {@code reverse} is set) are completed, regardless of whether they completed normally or
+     * exceptionally. Tasks are applied on the thread completing the last predecessor, so long running tasks should hand
+     * off their work to an executor and return the resulting stage.
+     *
+     * @param task The task to apply for each node
+     * @param reverse Whether dependents should be processed before their dependencies
+     * @param <R> The result type of the task
+     * @return The futures of all nodes
+     * @throws CyclicDependencyException if the graph contains a cycle
+     */
+    public <R> Map<T, CompletableFuture<R>> schedule(Function<? super T, ? extends CompletionStage<R>> task, boolean reverse) {
+        List<T> order = getTopologicalOrder();
+        if (reverse)
+            Collections.reverse(order);
+
+        Map<T, CompletableFuture<R>> futures = new LinkedHashMap<>();
+        for (T node : order) {
+            Set<T> predecessors = reverse ? dependents.get(node) : dependencies.get(node);
+            CompletableFuture<?>[] predecessorFutures = new CompletableFuture[predecessors.size()];
+            int i = 0;
+            for (T predecessor : predecessors)
+                predecessorFutures[i++] = futures.get(predecessor);
+            futures.put(node, CompletableFuture.allOf(predecessorFutures)
+                    .handle((ignore, throwable) -> node)
+                    .thenCompose(task));
+        }
+        return futures;
+    }
+
+    /**
+     * Finds the path through the graph with the highest total weight. If every node is weighted by its processing time,
+     * this is the chain of nodes limiting the overall processing time when all independent nodes run concurrently.
+     *
+     * @param weight The weight of each node
+     * @return The nodes of the heaviest path, beginning with the node without dependencies
+     * @throws CyclicDependencyException if the graph contains a cycle
+     */
+    public List<T> getCriticalPath(ToLongFunction<? super T> weight) {
+        Map<T, Long> distances = new HashMap<>();
+        Map<T, T> previous = new HashMap<>();
+        T last = null;
+        long maxDistance = Long.MIN_VALUE;
+        for (T node : getTopologicalOrder()) {
+            T heaviestDependency = null;
+            long distance = 0;
+            for (T dependency : dependencies.get(node)) {
+                long dependencyDistance = distances.get(dependency);
+                if (heaviestDependency == null || dependencyDistance > distance) {
+                    heaviestDependency = dependency;
+                    distance = dependencyDistance;
+                }
+            }
+            distance += weight.applyAsLong(node);
+            distances.put(node, distance);
+            if (heaviestDependency != null)
+                previous.put(node, heaviestDependency);
+            if (distance > maxDistance) {
+                maxDistance = distance;
+                last = node;
+            }
+        }
+
+        List<T> path = new ArrayList<>();
+        for (T node = last; node != null; node = previous.get(node))
+            path.add(node);
+        Collections.reverse(path);
+        return path;
+    }
+
+    private List<T> findCycle(T node, Map<T, Boolean> visiting, List<T> path) {
+        Boolean state = visiting.get(node);
+        if (state == Boolean.FALSE)
+            return null;
+        if (state == Boolean.TRUE)
+            return new ArrayList<>(path.subList(path.indexOf(node), path.size()));
+
+        visiting.put(node, Boolean.TRUE);
+        path.add(node);
+        for (T dependency : dependencies.get(node)) {
+            List<T> cycle = findCycle(dependency, visiting, path);
+            if (cycle != null)
+                return cycle;
+        }
+        path.remove(path.size() - 1);
+        visiting.put(node, Boolean.FALSE);
+        return null;
+    }
+
+    private static <T> Set<T> get(Map<T, Set<T>> map, T node) {
+        Set<T> result = map.get(node);
+        if (result == null)
+            throw new IllegalArgumentException("Unknown node: " + node);
+        return result;
+    }
+}
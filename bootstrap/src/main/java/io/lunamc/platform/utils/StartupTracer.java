@@ -0,0 +1,212 @@
+/*
+ *  Copyright 2017 LunaMC.io
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package io.lunamc.platform.utils;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Records spans of the startup phases and writes them as a Chrome trace (viewable in {@code chrome://tracing} or
+ * Perfetto). Spans opened while no recording is active cost nothing but a volatile read.
+ */
+public final class StartupTracer {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(StartupTracer.class);
+    private static final String TRACE_FILE;
+    private static final Span NOOP = new Span(null, null, null);
+    private static volatile Recording recording;
+
+    static {
+        TRACE_FILE = System.getProperty("io.lunamc.platform.startupTraceFile", "luna-startup-trace.json");
+    }
+
+    private StartupTracer() {
+        throw new UnsupportedOperationException(getClass().getSimpleName() + " is a utility class and should not be constructed");
+    }
+
+    /**
+     * Starts a new recording unless tracing is disabled by an empty {@code io.lunamc.platform.startupTraceFile}.
+     */
+    public static void startRecording() {
+        if (!TRACE_FILE.isEmpty())
+            recording = new Recording();
+    }
+
+    /**
+     * Stops the current recording and writes it to the configured trace file. Failures are only logged, as the trace
+     * is a diagnostic aid.
+     */
+    public static void stopRecording() {
+        stopRecording(new File(TRACE_FILE));
+    }
+
+    public static void stopRecording(File file) {
+        Recording recording = StartupTracer.recording;
+        StartupTracer.recording = null;
+        if (recording == null)
+            return;
+        try {
+            write(recording.events, file);
+            LOGGER.info("Startup trace written to {}", file.getAbsolutePath());
+        } catch (IOException e) {
+            LOGGER.warn("Failed to write startup trace to {}", file.getAbsolutePath(), e);
+        }
+    }
+
+    public static boolean isRecording() {
+        return recording != null;
+    }
+
+    /**
+     * Opens a span which ends when it is closed. Use it in a try-with-resources statement.
+     */
+    public static Span span(String category, String name) {
+        Recording recording = StartupTracer.recording;
+        return recording != null ? new Span(recording, category, name) : NOOP;
+    }
+
+    /**
+     * Opens a span named {@code action + ' ' + subject}. The name is only built while a recording is active, so call
+     * sites on hot paths do not pay for the concatenation when tracing is off.
+     */
+    public static Span span(String category, String action, Object subject) {
+        Recording recording = StartupTracer.recording;
+        return recording != null ? new Span(recording, category, action + ' ' + subject) : NOOP;
+    }
+
+    static void write(Iterable<Event> events, File file) throws IOException {
+        File parent = file.getAbsoluteFile().getParentFile();
+        if (parent != null)
+            //noinspection ResultOfMethodCallIgnored
+            parent.mkdirs();
+        try (Writer writer = new OutputStreamWriter(Files.newOutputStream(file.toPath()), StandardCharsets.UTF_8)) {
+            write(events, writer);
+        }
+    }
+
+    static void write(Iterable<Event> events, Writer writer) throws IOException {
+        Map<Long, String> threads = new LinkedHashMap<>();
+        List<Event> sorted = new ArrayList<>();
+        for (Event event : events) {
+            threads.putIfAbsent(event.threadId, event.threadName);
+            sorted.add(event);
+        }
+        sorted.sort((a, b) -> Long.compare(a.start, b.start));
+
+        writer.write("{\"displayTimeUnit\":\"ms\",\"traceEvents\":[");
+        boolean comma = false;
+        for (Map.Entry<Long, String> thread : threads.entrySet()) {
+            if (comma)
+                writer.write(',');
+            comma = true;
+            writer.write("\n{\"ph\":\"M\",\"pid\":1,\"tid\":" + thread.getKey() + ",\"name\":\"thread_name\",\"args\":{\"name\":");
+            writeString(writer, thread.getValue());
+            writer.write("}}");
+        }
+        for (Event event : sorted) {
+            if (comma)
+                writer.write(',');
+            comma = true;
+            writer.write("\n{\"ph\":\"X\",\"pid\":1,\"tid\":" + event.threadId + ",\"cat\":");
+            writeString(writer, event.category);
+            writer.write(",\"name\":");
+            writeString(writer, event.name);
+            writer.write(",\"ts\":" + TimeUnit.NANOSECONDS.toMicros(event.start) + ",\"dur\":" + TimeUnit.NANOSECONDS.toMicros(event.duration) + '}');
+        }
+        writer.write("\n]}\n");
+    }
+
+    private static void writeString(Writer writer, String value) throws IOException {
+        writer.write('"');
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c == '"' || c == '\\') {
+                writer.write('\\');
+                writer.write(c);
+            } else if (c < 0x20) {
+                writer.write(String.format("\\u%04x", (int) c));
+            } else {
+                writer.write(c);
+            }
+        }
+        writer.write('"');
+    }
+
+    public static final class Span implements AutoCloseable {
+
+        private final Recording recording;
+        private final String category;
+        private final String name;
+        private final Thread thread;
+        private final long start;
+
+        private Span(Recording recording, String category, String name) {
+            this.recording = recording;
+            this.category = category;
+            this.name = name;
+            // Spans of asynchronous actions may be closed by another thread, they belong to the one which began them
+            this.thread = recording != null ? Thread.currentThread() : null;
+            this.start = recording != null ? System.nanoTime() : 0;
+        }
+
+        @Override
+        public void close() {
+            if (recording == null)
+                return;
+            recording.events.add(new Event(category, name, thread.getId(), thread.getName(), start - recording.origin, System.nanoTime() - start));
+        }
+    }
+
+    static final class Event {
+
+        private final String category;
+        private final String name;
+        private final long threadId;
+        private final String threadName;
+        private final long start;
+        private final long duration;
+
+        Event(String category, String name, long threadId, String threadName, long start, long duration) {
+            this.category = category;
+            this.name = name;
+            this.threadId = threadId;
+            this.threadName = threadName;
+            this.start = start;
+            this.duration = duration;
+        }
+    }
+
+    private static final class Recording {
+
+        private final long origin = System.nanoTime();
+        private final Queue<Event> events = new ConcurrentLinkedQueue<>();
+    }
+}
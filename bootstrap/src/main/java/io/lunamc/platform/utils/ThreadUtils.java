@@ -0,0 +1,38 @@
+/*
+ *  Copyright 2017 LunaMC.io
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package io.lunamc.platform.utils;
+
+public class ThreadUtils {
+
+    private ThreadUtils() {
+        throw new UnsupportedOperationException(getClass().getSimpleName() + " is a utility class and should not be constructed");
+    }
+
+    public static String describe(Thread thread) {
+        return describe(thread, thread.getStackTrace());
+    }
+
+    public static String describe(Thread thread, StackTraceElement[] stackTrace) {
+        StringBuilder sb = new StringBuilder(thread.getName())
+                .append(" (current state: ")
+                .append(thread.getState())
+                .append(')');
+        for (StackTraceElement stackTraceElement : stackTrace)
+            sb.append(System.lineSeparator()).append('\t').append(stackTraceElement);
+        return sb.toString();
+    }
+}
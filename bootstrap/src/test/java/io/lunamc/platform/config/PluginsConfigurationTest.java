@@ -48,5 +48,7 @@ public class PluginsConfigurationTest {
         plugin = configuration.getPlugins().get(1);
         Assert.assertEquals("test-2", plugin.getId());
         Assert.assertEquals("test2.jar", plugin.getFile());
+        Assert.assertEquals(Long.valueOf(30_000), plugin.getInitializeTimeout());
+        Assert.assertNull(plugin.getStartTimeout());
     }
 }
@@ -0,0 +1,447 @@
+/*
+ *  Copyright 2017 LunaMC.io
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package io.lunamc.platform.plugin;
+
+import io.lunamc.platform.internal.plugin.annotation.processor.ProvidedPlugins;
+import io.lunamc.platform.plugin.classloader.PluginClassLoader;
+import io.lunamc.platform.service.DefaultServiceRegistry;
+import io.lunamc.platform.utils.ClassLoaderLeakDetector;
+import io.lunamc.platform.utils.Snapshot;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.ref.WeakReference;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.jar.JarEntry;
+import java.util.jar.JarOutputStream;
+import java.util.stream.Collectors;
+
+public class DefaultPluginManagerTest {
+
+    private static final String TEST_PLUGIN_RESOURCE = TestPlugin.class.getName().replace('.', '/') + ".class";
+    private static final String ASYNC_TEST_PLUGIN_RESOURCE = AsyncTestPlugin.class.getName().replace('.', '/') + ".class";
+    // Public since the test plugin is defined by another class loader and thus in another runtime package
+    public static final List<String> EVENTS = new CopyOnWriteArrayList<>();
+    public static volatile CountDownLatch asyncLatch;
+    public static volatile Thread lazyInitializeThread;
+
+    @Rule
+    public final TemporaryFolder temporaryFolder = new TemporaryFolder();
+    private DefaultServiceRegistry serviceRegistry;
+    private DefaultPluginManager pluginManager;
+
+    @Before
+    public void setup() throws IOException {
+        EVENTS.clear();
+        System.setProperty("io.lunamc.platform.pluginsDataDirectory", temporaryFolder.newFolder("data").getAbsolutePath());
+        serviceRegistry = new DefaultServiceRegistry();
+        pluginManager = new DefaultPluginManager();
+        pluginManager.initialize(serviceRegistry);
+    }
+
+    @Test
+    public void testRegisterAllResolvesDependenciesIndependentOfOrder() throws Throwable {
+        File file = createPluginFile(
+                plugin("dependent", "dependency"),
+                plugin("dependency"),
+                plugin("cyclic-1", "cyclic-2"),
+                plugin("cyclic-2", "cyclic-1"),
+                plugin("missing-dependency", "missing")
+        );
+        List<PluginRegistrationRequest> requests = new ArrayList<>();
+        for (String id : Arrays.asList("dependent", "dependency", "cyclic-1", "cyclic-2", "missing-dependency", "unknown"))
+            requests.add(new PluginRegistrationRequest(file, id));
+
+        Map<PluginRegistrationRequest, Throwable> failures = pluginManager.registerAll(requests);
+
+        Assert.assertEquals(
+                Arrays.asList("cyclic-1", "cyclic-2", "missing-dependency", "unknown"),
+                failures.keySet().stream().map(PluginRegistrationRequest::getId).sorted().collect(Collectors.toList())
+        );
+        DefaultPluginDescription dependent = pluginManager.getPlugin("dependent").orElseThrow(AssertionError::new);
+        DefaultPluginDescription dependency = pluginManager.getPlugin("dependency").orElseThrow(AssertionError::new);
+        Assert.assertEquals(Collections.singletonList(dependency), dependent.getPluginDependencies());
+        Assert.assertEquals(TestPlugin.class.getName(), dependent.getInstance().getClass().getName());
+        Assert.assertSame(dependent.getClassLoader(), dependent.getInstance().getClass().getClassLoader());
+    }
+
+    @Test
+    public void testRegisterAllClosesClassLoadersOfFailedPlugins() throws Throwable {
+        List<PluginClassLoader> classLoaders = new CopyOnWriteArrayList<>();
+        pluginManager = new DefaultPluginManager() {
+            @Override
+            PluginClassLoader createClassLoader(File file) {
+                PluginClassLoader classLoader = super.createClassLoader(file);
+                classLoaders.add(classLoader);
+                return classLoader;
+            }
+        };
+        pluginManager.initialize(serviceRegistry);
+        File file = createPluginFile(
+                plugin("dependency"),
+                plugin("cyclic-1", "cyclic-2"),
+                plugin("cyclic-2", "cyclic-1"),
+                plugin("missing-dependency", "missing")
+        );
+        List<PluginRegistrationRequest> requests = new ArrayList<>();
+        for (String id : Arrays.asList("dependency", "dependency", "cyclic-1", "cyclic-2", "missing-dependency", "unknown"))
+            requests.add(new PluginRegistrationRequest(file, id));
+
+        Assert.assertEquals(5, pluginManager.registerAll(requests).size());
+
+        Assert.assertEquals(requests.size(), classLoaders.size());
+        ClassLoader registered = pluginManager.getPlugin("dependency").orElseThrow(AssertionError::new).getClassLoader();
+        for (PluginClassLoader classLoader : classLoaders) {
+            if (classLoader == registered) {
+                classLoader.loadClassFromSelf(AsyncTestPlugin.class.getName());
+                continue;
+            }
+            try {
+                classLoader.loadClassFromSelf(AsyncTestPlugin.class.getName());
+                Assert.fail("Class loader of a failed plugin is not closed");
+            } catch (ClassNotFoundException ignore) {
+            }
+        }
+    }
+
+    @Test
+    public void testLifecycleInDependencyOrder() throws Throwable {
+        File file = createPluginFile(
+                plugin("top", "middle-1", "middle-2"),
+                plugin("middle-1", "base"),
+                plugin("middle-2", "base"),
+                plugin("base"),
+                plugin("failing"),
+                plugin("depends-on-failing", "failing")
+        );
+        List<PluginRegistrationRequest> requests = new ArrayList<>();
+        for (String id : Arrays.asList("top", "middle-1", "middle-2", "base", "failing", "depends-on-failing"))
+            requests.add(new PluginRegistrationRequest(file, id));
+        Assert.assertTrue(pluginManager.registerAll(requests).isEmpty());
+
+        pluginManager.initializePlugins();
+        pluginManager.startPlugins();
+
+        for (String action : Arrays.asList("initialize", "start")) {
+            assertBefore(action + ":base", action + ":middle-1");
+            assertBefore(action + ":base", action + ":middle-2");
+            assertBefore(action + ":middle-1", action + ":top");
+            assertBefore(action + ":middle-2", action + ":top");
+            Assert.assertFalse(EVENTS.contains(action + ":depends-on-failing"));
+        }
+        Assert.assertTrue(EVENTS.contains("initialize:failing"));
+        Assert.assertFalse(EVENTS.contains("start:failing"));
+        Assert.assertFalse(pluginManager.getPlugin("failing").orElseThrow(AssertionError::new).isActive());
+        Assert.assertFalse(pluginManager.getPlugin("depends-on-failing").orElseThrow(AssertionError::new).isActive());
+        Assert.assertTrue(pluginManager.getPlugin("top").orElseThrow(AssertionError::new).isActive());
+    }
+
+    @Test
+    public void testAsyncInitializationsOverlap() throws Throwable {
+        // Both plugins only complete their initialization once both have begun it
+        asyncLatch = new CountDownLatch(2);
+        registerAndStart(
+                plugin("async-1", AsyncTestPlugin.class),
+                plugin("async-2", AsyncTestPlugin.class),
+                plugin("dependent", "async-1")
+        );
+
+        Assert.assertTrue(pluginManager.getPlugin("async-1").orElseThrow(AssertionError::new).isActive());
+        Assert.assertTrue(pluginManager.getPlugin("async-2").orElseThrow(AssertionError::new).isActive());
+        assertBefore("initialize:async-2", "initialized:async-1");
+        assertBefore("initialize:async-1", "initialized:async-2");
+        assertBefore("initialized:async-1", "initialize:dependent");
+        assertBefore("initialize:dependent", "start:dependent");
+        Assert.assertTrue(EVENTS.contains("start:async-1"));
+    }
+
+    @Test
+    public void testHangingPluginTimesOut() throws Throwable {
+        File file = createPluginFile(plugin("hanging"), plugin("dependent", "hanging"), plugin("independent"));
+        List<PluginRegistrationRequest> requests = new ArrayList<>();
+        requests.add(new PluginRegistrationRequest(file, "hanging", c -> Collections.emptySet(), false, Collections.singletonMap("initialize", 200L)));
+        requests.add(new PluginRegistrationRequest(file, "dependent"));
+        requests.add(new PluginRegistrationRequest(file, "independent"));
+        Assert.assertTrue(pluginManager.registerAll(requests).isEmpty());
+
+        pluginManager.initializePlugins();
+
+        Assert.assertFalse(pluginManager.getPlugin("hanging").orElseThrow(AssertionError::new).isActive());
+        Assert.assertFalse(EVENTS.contains("initialize:dependent"));
+        Assert.assertTrue(pluginManager.getPlugin("independent").orElseThrow(AssertionError::new).isActive());
+        PluginLifecycleWatchdogMXBean watchdog = pluginManager.getLifecycleWatchdog();
+        Assert.assertEquals(1, watchdog.getTimedOutActionCount());
+        Assert.assertEquals(1, watchdog.getSkippedPluginCount());
+        Assert.assertEquals(Collections.singletonList("hanging:initialize"), watchdog.getTimedOutActions());
+        Assert.assertTrue(watchdog.getActionDurations().containsKey("independent:initialize"));
+    }
+
+    @Test
+    public void testUnregister() throws Throwable {
+        registerAndStart(plugin("base"), plugin("dependent", "base"), plugin("independent"));
+        Assert.assertEquals(3, serviceRegistry.getMultiService(Plugin.class).getInstances().size());
+        Snapshot<DefaultPluginDescription> snapshot = pluginManager.getPluginsSnapshot();
+        Assert.assertEquals(3, snapshot.getElements().size());
+        WeakReference<ClassLoader> baseClassLoader = getClassLoader("base");
+        WeakReference<ClassLoader> dependentClassLoader = getClassLoader("dependent");
+
+        Assert.assertEquals(Arrays.asList("dependent", "base"), pluginManager.unregister("base"));
+
+        assertBefore("stop:dependent", "stop:base");
+        Assert.assertFalse(EVENTS.contains("stop:independent"));
+        Assert.assertFalse(pluginManager.getPlugin("base").isPresent());
+        Assert.assertFalse(pluginManager.getPlugin("dependent").isPresent());
+        Assert.assertTrue(pluginManager.getPlugin("independent").isPresent());
+        Assert.assertEquals(1, serviceRegistry.getMultiService(Plugin.class).getInstances().size());
+        Assert.assertTrue(pluginManager.getPluginsSnapshot().isNewerThan(snapshot.getGeneration()));
+        Assert.assertEquals(3, snapshot.getElements().size());
+        Assert.assertEquals(1, pluginManager.getPlugins().size());
+        // The previous snapshot still references the unregistered plugins
+        snapshot = null;
+        Assert.assertTrue(
+                "Class loaders were not collected",
+                ClassLoaderLeakDetector.awaitCollection(Arrays.asList(baseClassLoader, dependentClassLoader), 10_000)
+        );
+    }
+
+    @Test
+    public void testReload() throws Throwable {
+        registerAndStart(plugin("base"), plugin("dependent", "base"), plugin("independent"));
+        WeakReference<ClassLoader> baseClassLoader = getClassLoader("base");
+        EVENTS.clear();
+
+        Assert.assertTrue(pluginManager.reload("base").isEmpty());
+
+        Assert.assertEquals(Arrays.asList("stop:dependent", "stop:base", "initialize:base", "initialize:dependent", "start:base", "start:dependent"), EVENTS);
+        Assert.assertNotSame(baseClassLoader.get(), pluginManager.getPlugin("base").orElseThrow(AssertionError::new).getClassLoader());
+        Assert.assertTrue(pluginManager.getPlugin("dependent").orElseThrow(AssertionError::new).isActive());
+        Assert.assertEquals(3, serviceRegistry.getMultiService(Plugin.class).getInstances().size());
+    }
+
+    @Test
+    public void testLazyActivationOnServiceDemand() throws Throwable {
+        registerAndStart(lazyPlugin("lazy-service", "base"), plugin("base"));
+
+        Assert.assertEquals(Arrays.asList("initialize:base", "start:base"), EVENTS);
+        Assert.assertNull(pluginManager.getPlugin("lazy-service").orElseThrow(AssertionError::new).getInstance());
+        Assert.assertFalse(serviceRegistry.getService(TestService.class).isRealized());
+
+        Assert.assertEquals("lazy-service", serviceRegistry.getService(TestService.class).getInstance().getPluginId());
+        Assert.assertEquals(Arrays.asList("initialize:base", "start:base", "initialize:lazy-service", "start:lazy-service"), EVENTS);
+        Assert.assertTrue(pluginManager.getPlugin("lazy-service").orElseThrow(AssertionError::new).isActive());
+        // Activated by the lifecycle, not by the thread demanding the service
+        Assert.assertNotSame(Thread.currentThread(), lazyInitializeThread);
+
+        serviceRegistry.getService(TestService.class).getInstance();
+        Assert.assertEquals(4, EVENTS.size());
+    }
+
+    @Test(timeout = 10_000)
+    public void testLazyPluginAccessingItsServiceDuringActivation() throws Throwable {
+        registerAndStart(lazyPlugin("lazy-self-access"));
+
+        Assert.assertEquals("lazy-self-access", serviceRegistry.getService(TestService.class).getInstance().getPluginId());
+        Assert.assertEquals(Arrays.asList("initialize:lazy-self-access", "circular:lazy-self-access", "start:lazy-self-access"), EVENTS);
+    }
+
+    @Test
+    public void testLazyPluginActivatedEagerlyForEagerDependents() throws Throwable {
+        registerAndStart(lazyPlugin("lazy-service"), plugin("dependent", "lazy-service"));
+
+        Assert.assertEquals(Arrays.asList("initialize:lazy-service", "initialize:dependent", "start:lazy-service", "start:dependent"), EVENTS);
+        Assert.assertEquals("lazy-service", serviceRegistry.getService(TestService.class).getInstance().getPluginId());
+        Assert.assertEquals(4, EVENTS.size());
+    }
+
+    @Test
+    public void testLazyPluginReleasesServiceOnUnregister() throws Throwable {
+        registerAndStart(lazyPlugin("lazy-service"));
+
+        pluginManager.unregister("lazy-service");
+
+        Assert.assertTrue(EVENTS.isEmpty());
+        Assert.assertNull(serviceRegistry.getService(TestService.class).getInstance());
+    }
+
+    private void registerAndStart(ProvidedPlugins.ProvidedPlugin... plugins) throws Throwable {
+        File file = createPluginFile(plugins);
+        List<PluginRegistrationRequest> requests = new ArrayList<>();
+        for (ProvidedPlugins.ProvidedPlugin plugin : plugins)
+            requests.add(new PluginRegistrationRequest(file, plugin.getId(), c -> Collections.emptySet(), plugin.getProvidedServices() != null));
+        Assert.assertTrue(pluginManager.registerAll(requests).isEmpty());
+        pluginManager.initializePlugins();
+        serviceRegistry.start();
+        pluginManager.startPlugins();
+    }
+
+    private WeakReference<ClassLoader> getClassLoader(String id) {
+        return new WeakReference<>(pluginManager.getPlugin(id).orElseThrow(AssertionError::new).getClassLoader());
+    }
+
+    private static void assertBefore(String first, String second) {
+        int firstIndex = EVENTS.indexOf(first);
+        int secondIndex = EVENTS.indexOf(second);
+        Assert.assertTrue(first + " missing in " + EVENTS, firstIndex >= 0);
+        Assert.assertTrue(second + " missing in " + EVENTS, secondIndex >= 0);
+        Assert.assertTrue(first + " not before " + second + " in " + EVENTS, firstIndex < secondIndex);
+    }
+
+    private File createPluginFile(ProvidedPlugins.ProvidedPlugin... plugins) throws Throwable {
+        ProvidedPlugins providedPlugins = new ProvidedPlugins();
+        providedPlugins.setProvidedPlugins(Arrays.asList(plugins));
+        File file = temporaryFolder.newFile();
+        try (JarOutputStream out = new JarOutputStream(new FileOutputStream(file))) {
+            out.putNextEntry(new JarEntry("LUNAMC-RESOURCES/providedPlugins.xml"));
+            providedPlugins.write(out);
+            out.closeEntry();
+
+            // The plugin classes are defined again by each plugin class loader
+            for (String resource : Arrays.asList(TEST_PLUGIN_RESOURCE, ASYNC_TEST_PLUGIN_RESOURCE)) {
+                out.putNextEntry(new JarEntry(resource));
+                try (InputStream in = getClass().getClassLoader().getResourceAsStream(resource)) {
+                    byte[] buffer = new byte[4096];
+                    int read;
+                    while ((read = in.read(buffer)) != -1)
+                        out.write(buffer, 0, read);
+                }
+                out.closeEntry();
+            }
+        }
+        return file;
+    }
+
+    private static ProvidedPlugins.ProvidedPlugin plugin(String id, String... dependencies) {
+        return plugin(id, TestPlugin.class, dependencies);
+    }
+
+    private static ProvidedPlugins.ProvidedPlugin plugin(String id, Class<? extends Plugin> pluginClass, String... dependencies) {
+        return ProvidedPlugins.ProvidedPlugin.create(
+                id,
+                "1.0.0",
+                pluginClass.getName(),
+                Arrays.stream(dependencies)
+                        .map(dependency -> ProvidedPlugins.PluginDependency.create(dependency, ">=1.0.0"))
+                        .collect(Collectors.toList())
+        );
+    }
+
+    private static ProvidedPlugins.ProvidedPlugin lazyPlugin(String id, String... dependencies) {
+        ProvidedPlugins.ProvidedPlugin plugin = plugin(id, dependencies);
+        plugin.setProvidedServices(Collections.singletonList(TestService.class.getName()));
+        return plugin;
+    }
+
+    public interface TestService {
+
+        String getPluginId();
+    }
+
+    public static class TestPlugin implements Plugin, TestService {
+
+        private String id;
+
+        @Override
+        public void initialize(PluginContext context) {
+            record("initialize", context);
+            id = context.getDescription().getDescriptor().getId();
+            context.getServiceRegistry().getMultiService(Plugin.class).add(this);
+            if (id.startsWith("lazy-self-access")) {
+                try {
+                    context.getServiceRegistry().getService(TestService.class).getInstance();
+                } catch (IllegalStateException e) {
+                    EVENTS.add("circular:" + id);
+                }
+            }
+            if (id.startsWith("lazy")) {
+                lazyInitializeThread = Thread.currentThread();
+                context.getServiceRegistry().setService(TestService.class, this);
+            }
+        }
+
+        @Override
+        public String getPluginId() {
+            return id;
+        }
+
+        @Override
+        public void start(PluginContext context) {
+            record("start", context);
+        }
+
+        @Override
+        public void stop(PluginContext context) {
+            record("stop", context);
+        }
+
+        private void record(String action, PluginContext context) {
+            if (Thread.currentThread().getContextClassLoader() != getClass().getClassLoader())
+                throw new IllegalStateException("Unexpected context class loader");
+            String id = context.getDescription().getDescriptor().getId();
+            EVENTS.add(action + ':' + id);
+            if (id.startsWith("failing"))
+                throw new IllegalStateException("Plugin failed");
+            if (id.startsWith("hanging")) {
+                try {
+                    Thread.sleep(60_000);
+                } catch (InterruptedException e) {
+                    throw new IllegalStateException("Plugin interrupted", e);
+                }
+            }
+        }
+    }
+
+    public static class AsyncTestPlugin implements AsyncPlugin {
+
+        @Override
+        public CompletionStage<Void> initializeAsync(PluginContext context) {
+            String id = context.getDescription().getDescriptor().getId();
+            EVENTS.add("initialize:" + id);
+            asyncLatch.countDown();
+            return CompletableFuture.runAsync(() -> {
+                try {
+                    if (!asyncLatch.await(10, TimeUnit.SECONDS))
+                        throw new IllegalStateException("Initializations did not overlap");
+                } catch (InterruptedException e) {
+                    throw new IllegalStateException(e);
+                }
+                EVENTS.add("initialized:" + id);
+            });
+        }
+
+        @Override
+        public CompletionStage<Void> startAsync(PluginContext context) {
+            EVENTS.add("start:" + context.getDescription().getDescriptor().getId());
+            return CompletableFuture.completedFuture(null);
+        }
+    }
+}
@@ -0,0 +1,126 @@
+/*
+ *  Copyright 2017 LunaMC.io
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package io.lunamc.platform.plugin;
+
+import io.lunamc.platform.internal.plugin.annotation.processor.ProvidedPlugins;
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.jar.JarEntry;
+import java.util.jar.JarOutputStream;
+
+public class ProvidedPluginsCacheTest {
+
+    @Rule
+    public final TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    @Test
+    public void testWarmStart() throws Throwable {
+        File cacheFile = new File(temporaryFolder.getRoot(), "cache");
+        File pluginFile = createJar("first");
+        AtomicInteger loads = new AtomicInteger();
+
+        ProvidedPluginsCache cache = new ProvidedPluginsCache(cacheFile);
+        cache.get(pluginFile, () -> load(loads));
+        cache.save();
+        Assert.assertEquals(1, loads.get());
+
+        ProvidedPlugins providedPlugins = new ProvidedPluginsCache(cacheFile).get(pluginFile, () -> load(loads));
+        Assert.assertEquals(1, loads.get());
+        ProvidedPlugins.ProvidedPlugin providedPlugin = providedPlugins.getProvidedPlugin("test").orElseThrow(AssertionError::new);
+        Assert.assertEquals("1.0.0", providedPlugin.getVersion());
+        Assert.assertEquals("com.example.TestPlugin", providedPlugin.getImpl());
+        Assert.assertEquals("dependency", providedPlugin.getPluginDependencies().get(0).getId());
+        Assert.assertNull(providedPlugin.getPluginDependencies().get(0).getVersionExpression());
+    }
+
+    @Test
+    public void testChangedFileReloaded() throws Throwable {
+        File cacheFile = new File(temporaryFolder.getRoot(), "cache");
+        File pluginFile = createJar("first");
+        AtomicInteger loads = new AtomicInteger();
+        ProvidedPluginsCache cache = new ProvidedPluginsCache(cacheFile);
+        cache.get(pluginFile, () -> load(loads));
+        cache.save();
+
+        // Same size and modification time, but different content
+        long lastModified = pluginFile.lastModified();
+        byte[] hash = ProvidedPluginsCache.hash(pluginFile);
+        createJar("other", pluginFile);
+        Assert.assertTrue(pluginFile.setLastModified(lastModified));
+        Assert.assertFalse(Arrays.equals(hash, ProvidedPluginsCache.hash(pluginFile)));
+
+        new ProvidedPluginsCache(cacheFile).get(pluginFile, () -> load(loads));
+        Assert.assertEquals(2, loads.get());
+    }
+
+    @Test
+    public void testCorruptCacheRebuilt() throws Throwable {
+        File cacheFile = new File(temporaryFolder.getRoot(), "cache");
+        File pluginFile = createJar("first");
+        AtomicInteger loads = new AtomicInteger();
+        ProvidedPluginsCache cache = new ProvidedPluginsCache(cacheFile);
+        cache.get(pluginFile, () -> load(loads));
+        cache.save();
+
+        byte[] data = Files.readAllBytes(cacheFile.toPath());
+        data[data.length / 2] ^= 0x55;
+        Files.write(cacheFile.toPath(), data);
+
+        cache = new ProvidedPluginsCache(cacheFile);
+        cache.get(pluginFile, () -> load(loads));
+        Assert.assertEquals(2, loads.get());
+        cache.save();
+        new ProvidedPluginsCache(cacheFile).get(pluginFile, () -> load(loads));
+        Assert.assertEquals(2, loads.get());
+    }
+
+    private File createJar(String content) throws IOException {
+        return createJar(content, temporaryFolder.newFile());
+    }
+
+    private static File createJar(String content, File file) throws IOException {
+        try (JarOutputStream out = new JarOutputStream(new FileOutputStream(file))) {
+            out.putNextEntry(new JarEntry("content.txt"));
+            out.write(content.getBytes(StandardCharsets.UTF_8));
+            out.closeEntry();
+        }
+        return file;
+    }
+
+    private static ProvidedPlugins load(AtomicInteger loads) {
+        loads.incrementAndGet();
+        ProvidedPlugins providedPlugins = new ProvidedPlugins();
+        providedPlugins.setProvidedPlugins(Collections.singletonList(ProvidedPlugins.ProvidedPlugin.create(
+                "test",
+                "1.0.0",
+                "com.example.TestPlugin",
+                Collections.singletonList(ProvidedPlugins.PluginDependency.create("dependency", null))
+        )));
+        return providedPlugins;
+    }
+}
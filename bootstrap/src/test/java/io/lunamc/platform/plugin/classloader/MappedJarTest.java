@@ -0,0 +1,97 @@
+/*
+ *  Copyright 2017 LunaMC.io
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package io.lunamc.platform.plugin.classloader;
+
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.jar.Attributes;
+import java.util.jar.JarEntry;
+import java.util.jar.JarOutputStream;
+import java.util.jar.Manifest;
+
+public class MappedJarTest {
+
+    private static final String RESOURCE = "io/lunamc/platform/resource.txt";
+    private static final String VERSIONED_CLASS = "io/lunamc/platform/multirelease/Versioned.class";
+
+    @Rule
+    public final TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    @Test
+    public void testMultiRelease() throws Throwable {
+        File file = createJar("multi-release.jar", true);
+
+        MappedJar java8 = MappedJar.open(file, file.toURI().toURL(), 8);
+        Assert.assertEquals("base", read(java8, RESOURCE));
+        Assert.assertFalse(java8.contains(VERSIONED_CLASS));
+
+        MappedJar java9 = MappedJar.open(file, file.toURI().toURL(), 9);
+        Assert.assertEquals("9", read(java9, RESOURCE));
+        Assert.assertEquals("versioned", read(java9, VERSIONED_CLASS));
+
+        MappedJar java17 = MappedJar.open(file, file.toURI().toURL(), 17);
+        Assert.assertEquals("11", read(java17, RESOURCE));
+        Assert.assertEquals("versioned", read(java17, VERSIONED_CLASS));
+        Assert.assertTrue(java17.getPackages().contains("io.lunamc.platform.multirelease"));
+    }
+
+    @Test
+    public void testVersionsIgnoredWithoutMultiRelease() throws Throwable {
+        File file = createJar("plain.jar", false);
+
+        MappedJar mappedJar = MappedJar.open(file, file.toURI().toURL(), 17);
+        Assert.assertEquals("base", read(mappedJar, RESOURCE));
+        Assert.assertFalse(mappedJar.contains(VERSIONED_CLASS));
+    }
+
+    private File createJar(String fileName, boolean multiRelease) throws Throwable {
+        File file = temporaryFolder.newFile(fileName);
+        Manifest manifest = new Manifest();
+        manifest.getMainAttributes().put(Attributes.Name.MANIFEST_VERSION, "1.0");
+        if (multiRelease)
+            manifest.getMainAttributes().put(new Attributes.Name("Multi-Release"), "true");
+        try (JarOutputStream out = new JarOutputStream(new FileOutputStream(file), manifest)) {
+            write(out, RESOURCE, "base");
+            write(out, "META-INF/versions/9/" + RESOURCE, "9");
+            write(out, "META-INF/versions/9/" + VERSIONED_CLASS, "versioned");
+            write(out, "META-INF/versions/11/" + RESOURCE, "11");
+            // Newer than any runtime, so it is never selected
+            write(out, "META-INF/versions/9999/" + RESOURCE, "9999");
+        }
+        return file;
+    }
+
+    private static void write(JarOutputStream out, String name, String content) throws Throwable {
+        out.putNextEntry(new JarEntry(name));
+        out.write(content.getBytes(StandardCharsets.UTF_8));
+        out.closeEntry();
+    }
+
+    private static String read(MappedJar mappedJar, String name) throws Throwable {
+        ByteBuffer buffer = mappedJar.read(name);
+        byte[] bytes = new byte[buffer.remaining()];
+        buffer.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,302 @@
+/*
+ *  Copyright 2017 LunaMC.io
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package io.lunamc.platform.plugin.classloader;
+
+import com.github.zafarkhaja.semver.Version;
+import io.lunamc.platform.plugin.Plugin;
+import io.lunamc.platform.plugin.PluginDescription;
+import io.lunamc.platform.plugin.PluginDescriptor;
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.mockito.Mockito;
+
+import javax.net.SocketFactory;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.InputStream;
+import java.net.JarURLConnection;
+import java.net.URL;
+import java.net.URLConnection;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.jar.JarEntry;
+import java.util.jar.JarOutputStream;
+import java.util.zip.CRC32;
+import java.util.zip.ZipEntry;
+
+public class PluginClassLoaderTest {
+
+    private static final String PACKAGED_CLASS = PackagedClass.class.getName();
+
+    @Rule
+    public final TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    @Test
+    public void testPackageIndex() throws Throwable {
+        try (PluginClassLoader classLoader = new PluginClassLoader(createJar(), getClass().getClassLoader())) {
+            Assert.assertTrue(classLoader.containsPackage(getClass().getPackage().getName()));
+            Assert.assertTrue(classLoader.containsPackage("io.lunamc.platform.multirelease"));
+            Assert.assertFalse(classLoader.containsPackage(Plugin.class.getPackage().getName()));
+            Assert.assertFalse(classLoader.containsPackage("io.lunamc.platform.plugin.classloader.resources"));
+        }
+    }
+
+    @Test
+    public void testLoadClass() throws Throwable {
+        try (PluginClassLoader classLoader = new PluginClassLoader(createJar(), getClass().getClassLoader())) {
+            Class<?> packagedClass = classLoader.loadClass(PACKAGED_CLASS);
+            Assert.assertSame(classLoader, packagedClass.getClassLoader());
+            Assert.assertSame(packagedClass, classLoader.loadClassFromSelf(PACKAGED_CLASS));
+
+            // Classes of packages the plugin contains are still found on the parent if the plugin lacks them
+            Assert.assertSame(PluginClassLoaderTest.class, classLoader.loadClass(PluginClassLoaderTest.class.getName()));
+            Assert.assertSame(Plugin.class, classLoader.loadClass(Plugin.class.getName()));
+            Assert.assertSame(String.class, classLoader.loadClass(String.class.getName()));
+            Assert.assertSame(PackagedClass.class, classLoader.loadClassFromDependencies(PACKAGED_CLASS));
+        }
+    }
+
+    @Test
+    public void testConcurrentLoadClass() throws Throwable {
+        int threads = 8;
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try (PluginClassLoader classLoader = new PluginClassLoader(createJar(), getClass().getClassLoader())) {
+            CountDownLatch latch = new CountDownLatch(threads);
+            List<Future<Class<?>>> futures = new ArrayList<>();
+            for (int i = 0; i < threads; i++) {
+                futures.add(executor.submit(() -> {
+                    latch.countDown();
+                    latch.await();
+                    return classLoader.loadClass(PACKAGED_CLASS);
+                }));
+            }
+            Class<?> packagedClass = futures.get(0).get();
+            Assert.assertSame(classLoader, packagedClass.getClassLoader());
+            for (Future<Class<?>> future : futures)
+                Assert.assertSame(packagedClass, future.get());
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    @Test(expected = ClassNotFoundException.class)
+    public void testLoadMissingClass() throws Throwable {
+        try (PluginClassLoader classLoader = new PluginClassLoader(createJar(), getClass().getClassLoader())) {
+            classLoader.loadClass(getClass().getPackage().getName() + ".MissingClass");
+        }
+    }
+
+    @Test
+    public void testNegativeCache() throws Throwable {
+        String missingClass = getClass().getPackage().getName() + ".MissingClass";
+        try (PluginClassLoader classLoader = new PluginClassLoader(createJar(), getClass().getClassLoader())) {
+            for (int i = 0; i < 3; i++) {
+                try {
+                    classLoader.loadClass(missingClass);
+                    Assert.fail("Class should not be found");
+                } catch (ClassNotFoundException e) {
+                    Assert.assertEquals(missingClass, e.getMessage());
+                }
+                Assert.assertNull(classLoader.getResource("missing.txt"));
+            }
+            Assert.assertEquals(2, classLoader.getClassNegativeCache().getHits());
+            Assert.assertEquals(1, classLoader.getClassNegativeCache().getMisses());
+            Assert.assertEquals(2, classLoader.getResourceNegativeCache().getHits());
+
+            // The dependencies may provide the names
+            PluginDescription pluginDescription = Mockito.mock(PluginDescription.class);
+            Mockito.when(pluginDescription.getPluginDependencies()).thenReturn(Collections.emptyList());
+            classLoader.initialize(pluginDescription);
+            Assert.assertEquals(0, classLoader.getClassNegativeCache().size());
+            Assert.assertEquals(0, classLoader.getResourceNegativeCache().size());
+        }
+    }
+
+    @Test
+    public void testBootstrapClassPreferred() throws Throwable {
+        File file = temporaryFolder.newFile("bootstrap.jar");
+        try (JarOutputStream out = new JarOutputStream(new FileOutputStream(file))) {
+            // Not a valid definition of the class, so it fails if the plugin source is asked first
+            out.putNextEntry(new JarEntry(SocketFactory.class.getName().replace('.', '/') + ".class"));
+            out.write(readClass(PACKAGED_CLASS));
+            out.closeEntry();
+        }
+        try (PluginClassLoader classLoader = new PluginClassLoader(file, getClass().getClassLoader())) {
+            Assert.assertTrue(classLoader.containsPackage(SocketFactory.class.getPackage().getName()));
+            Assert.assertSame(SocketFactory.class, classLoader.loadClass(SocketFactory.class.getName()));
+        }
+    }
+
+    @Test
+    public void testMappedJar() throws Throwable {
+        File jar = createJar();
+        try (PluginClassLoader classLoader = new PluginClassLoader(new URL[] { jar.toURI().toURL() }, getClass().getClassLoader(), true)) {
+            Assert.assertTrue(classLoader.containsPackage("io.lunamc.platform.multirelease"));
+            Assert.assertFalse(classLoader.containsPackage("io.lunamc.platform.plugin.classloader.resources"));
+
+            Class<?> packagedClass = classLoader.loadClass(PACKAGED_CLASS);
+            Assert.assertSame(classLoader, packagedClass.getClassLoader());
+            Assert.assertNotNull(packagedClass.getPackage());
+            Assert.assertEquals(jar.toURI().toURL(), packagedClass.getProtectionDomain().getCodeSource().getLocation());
+            Assert.assertSame(PluginClassLoaderTest.class, classLoader.loadClass(PluginClassLoaderTest.class.getName()));
+        }
+    }
+
+    @Test
+    public void testMappedJarStoredEntries() throws Throwable {
+        File file = temporaryFolder.newFile("stored.jar");
+        byte[] bytecode = readClass(PACKAGED_CLASS);
+        CRC32 crc = new CRC32();
+        crc.update(bytecode);
+        try (JarOutputStream out = new JarOutputStream(new FileOutputStream(file))) {
+            JarEntry entry = new JarEntry(PACKAGED_CLASS.replace('.', '/') + ".class");
+            entry.setMethod(ZipEntry.STORED);
+            entry.setSize(bytecode.length);
+            entry.setCompressedSize(bytecode.length);
+            entry.setCrc(crc.getValue());
+            out.putNextEntry(entry);
+            out.write(bytecode);
+            out.closeEntry();
+        }
+        try (PluginClassLoader classLoader = new PluginClassLoader(new URL[] { file.toURI().toURL() }, getClass().getClassLoader(), true)) {
+            Assert.assertSame(classLoader, classLoader.loadClass(PACKAGED_CLASS).getClassLoader());
+        }
+    }
+
+    @Test
+    public void testMappedJarResources() throws Throwable {
+        File file = temporaryFolder.newFile("resources.jar");
+        String resource = "io/lunamc/platform/plugin/classloader/resources/resource.txt";
+        byte[] content = "Hello mapped world".getBytes(StandardCharsets.UTF_8);
+        try (JarOutputStream out = new JarOutputStream(new FileOutputStream(file))) {
+            out.putNextEntry(new JarEntry(resource));
+            out.write(content);
+            out.closeEntry();
+        }
+        PluginClassLoader classLoader = new PluginClassLoader(new URL[] { file.toURI().toURL() }, getClass().getClassLoader(), true);
+        try {
+            URL url = classLoader.getResource(resource);
+            Assert.assertNotNull(url);
+            Assert.assertEquals("jar:" + file.toURI().toURL() + "!/" + resource, url.toExternalForm());
+            // Read from the mapping instead of a JarFile
+            URLConnection connection = url.openConnection();
+            Assert.assertFalse(connection instanceof JarURLConnection);
+            Assert.assertEquals(content.length, connection.getContentLengthLong());
+            try (InputStream in = connection.getInputStream()) {
+                Assert.assertArrayEquals(content, readFully(in));
+            }
+            try (InputStream in = classLoader.getResourceAsStream(resource)) {
+                Assert.assertArrayEquals(content, readFully(in));
+            }
+            Assert.assertEquals(Collections.singletonList(url), Collections.list(classLoader.getResources(resource)));
+            Assert.assertNull(classLoader.getResource("missing.txt"));
+            Assert.assertFalse(classLoader.getResources("missing.txt").hasMoreElements());
+        } finally {
+            classLoader.close();
+        }
+        Assert.assertNull(classLoader.findResource(resource));
+    }
+
+    @Test
+    public void testMappedJarClosed() throws Throwable {
+        File jar = createJar();
+        PluginClassLoader classLoader = new PluginClassLoader(new URL[] { jar.toURI().toURL() }, getClass().getClassLoader(), true);
+        Assert.assertTrue(classLoader.containsPackage(getClass().getPackage().getName()));
+        classLoader.close();
+
+        try {
+            classLoader.loadClassFromSelf(PACKAGED_CLASS);
+            Assert.fail();
+        } catch (ClassNotFoundException ignore) {
+        }
+    }
+
+    @Test
+    public void testTransitiveDependencies() throws Throwable {
+        ClassLoader parent = getClass().getClassLoader();
+        try (PluginClassLoader base = new PluginClassLoader(createJar("base.jar"), parent);
+             PluginClassLoader middle = new PluginClassLoader(createJar("middle.jar"), parent);
+             PluginClassLoader top = new PluginClassLoader(temporaryFolder.newFolder("top"), parent)) {
+            PluginDescription baseDescription = mockDescription(base, "base");
+            PluginDescription middleDescription = mockDescription(middle, "middle", baseDescription);
+            PluginDescription topDescription = mockDescription(top, "top", middleDescription);
+            base.initialize(baseDescription);
+            middle.initialize(middleDescription);
+            top.initialize(topDescription);
+
+            // Found on the first plugin of the closure containing the package
+            Assert.assertSame(middle, top.loadClass(PACKAGED_CLASS).getClassLoader());
+            Assert.assertEquals(Arrays.asList("middle", "base"), top.getAmbiguousPackages().get(getClass().getPackage().getName()));
+            Assert.assertTrue(middle.getAmbiguousPackages().isEmpty());
+        }
+    }
+
+    private static PluginDescription mockDescription(PluginClassLoader classLoader, String id, PluginDescription... dependencies) {
+        PluginDescription pluginDescription = Mockito.mock(PluginDescription.class);
+        Mockito.when(pluginDescription.getClassLoader()).thenReturn(classLoader);
+        Mockito.when(pluginDescription.getDescriptor()).thenReturn(new PluginDescriptor(id, Version.valueOf("1.0.0")));
+        Mockito.when(pluginDescription.getPluginDependencies()).thenReturn(Arrays.asList(dependencies));
+        return pluginDescription;
+    }
+
+    private File createJar() throws Throwable {
+        return createJar("plugin.jar");
+    }
+
+    private File createJar(String fileName) throws Throwable {
+        File file = temporaryFolder.newFile(fileName);
+        String resource = PACKAGED_CLASS.replace('.', '/') + ".class";
+        try (JarOutputStream out = new JarOutputStream(new FileOutputStream(file))) {
+            out.putNextEntry(new JarEntry(resource));
+            out.write(readClass(PACKAGED_CLASS));
+            out.closeEntry();
+            out.putNextEntry(new JarEntry("META-INF/versions/9/io/lunamc/platform/multirelease/Versioned.class"));
+            out.closeEntry();
+            out.putNextEntry(new JarEntry("io/lunamc/platform/plugin/classloader/resources/resource.txt"));
+            out.closeEntry();
+        }
+        return file;
+    }
+
+    private byte[] readClass(String className) throws Throwable {
+        try (InputStream in = getClass().getClassLoader().getResourceAsStream(className.replace('.', '/') + ".class")) {
+            return readFully(in);
+        }
+    }
+
+    private static byte[] readFully(InputStream in) throws Throwable {
+        ByteArrayOutputStream result = new ByteArrayOutputStream();
+        byte[] buffer = new byte[4096];
+        int read;
+        while ((read = in.read(buffer)) != -1)
+            result.write(buffer, 0, read);
+        return result.toByteArray();
+    }
+
+    public static class PackagedClass {
+    }
+}
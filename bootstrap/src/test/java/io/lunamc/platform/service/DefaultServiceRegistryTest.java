@@ -16,14 +16,37 @@
 
 package io.lunamc.platform.service;
 
+import io.lunamc.platform.service.di.ServiceFactory;
+import io.lunamc.platform.utils.Snapshot;
+import com.sun.management.ThreadMXBean;
 import org.junit.Assert;
+import org.junit.Assume;
 import org.junit.Test;
 import org.mockito.Mockito;
 
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.management.ManagementFactory;
+import java.lang.reflect.InvocationTargetException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
 import java.util.Objects;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
 
 public class DefaultServiceRegistryTest {
 
+    private static final AtomicLong FOR_EACH_COUNT = new AtomicLong();
+    private static final Consumer<Object> COUNT_INSTANCE = instance -> FOR_EACH_COUNT.incrementAndGet();
+
     @Test
     public void testInstantiateConstructor() throws Throwable {
         ServiceRegistry serviceRegistry = new DefaultServiceRegistry();
@@ -54,6 +77,303 @@ public class DefaultServiceRegistryTest {
         Mockito.validateMockitoUsage();
     }
 
+    @Test
+    public void testFactory() throws Throwable {
+        ServiceRegistry serviceRegistry = new DefaultServiceRegistry();
+        ServiceFactory<DemoClass> factory = serviceRegistry.getFactory(DemoClass.class);
+        Assert.assertSame(factory, serviceRegistry.getFactory(DemoClass.class.getConstructor(ServiceRegistration.class)));
+        DemoClass first = factory.newInstance();
+        DemoClass second = factory.newInstance();
+        Assert.assertNotSame(first, second);
+        Assert.assertSame(first.demoService, second.demoService);
+    }
+
+    @Test
+    public void testFactoryGeneratedForPublicConstructor() throws Throwable {
+        ServiceRegistry serviceRegistry = new DefaultServiceRegistry();
+        ServiceFactory<PublicDemoClass> factory = serviceRegistry.getFactory(PublicDemoClass.class);
+        Assert.assertTrue(((CompiledServiceFactory<?>) factory).isGenerated());
+        Assert.assertSame(serviceRegistry.getService(DemoService.class), factory.newInstance().demoService);
+
+        // Not accessible from another class loader, so reflection is used
+        Assert.assertFalse(((CompiledServiceFactory<?>) serviceRegistry.getFactory(DemoClass.class)).isGenerated());
+    }
+
+    @Test
+    public void testFactoryGeneratedForIsolatedClass() throws Throwable {
+        ClassLoader classLoader = new IsolatingClassLoader(getClass().getClassLoader(), PublicDemoClass.class.getName());
+        Class<?> isolatedClass = classLoader.loadClass(PublicDemoClass.class.getName());
+        Assert.assertNotSame(PublicDemoClass.class, isolatedClass);
+
+        ServiceRegistry serviceRegistry = new DefaultServiceRegistry();
+        ServiceFactory<?> factory = serviceRegistry.getFactory(isolatedClass);
+        Assert.assertTrue(((CompiledServiceFactory<?>) factory).isGenerated());
+        Assert.assertSame(isolatedClass, factory.newInstance().getClass());
+    }
+
+    @Test(expected = InvocationTargetException.class)
+    public void testFactoryWrapsConstructorException() throws Throwable {
+        ServiceRegistry serviceRegistry = new DefaultServiceRegistry();
+        serviceRegistry.getFactory(FailingClass.class).newInstance();
+    }
+
+    @Test
+    public void testGetServiceByKey() {
+        ServiceRegistry serviceRegistry = new DefaultServiceRegistry();
+        ServiceKey<DemoService> serviceKey = ServiceKey.of(DemoService.class);
+        Assert.assertSame(serviceKey, ServiceKey.of(DemoService.class));
+        Assert.assertNotEquals(serviceKey.getIndex(), ServiceKey.of(AnotherDemoService.class).getIndex());
+
+        ServiceRegistration<DemoService> serviceRegistration = serviceRegistry.getService(serviceKey);
+        Assert.assertSame(serviceRegistration, serviceRegistry.getService(DemoService.class));
+        Assert.assertSame(serviceKey, serviceRegistration.getKey());
+        Assert.assertEquals(1, serviceRegistry.getServices().size());
+
+        ServiceCapability capability = serviceRegistry.acquireCapability();
+        Assert.assertSame(serviceRegistration, capability.getService(serviceKey));
+        Assert.assertSame(serviceRegistration, capability.getService(DemoService.class));
+        Assert.assertEquals(1, capability.getServices().size());
+    }
+
+    @Test
+    public void testServicesSnapshot() {
+        ServiceRegistry serviceRegistry = new DefaultServiceRegistry();
+        Snapshot<ServiceRegistration<?>> empty = serviceRegistry.getServicesSnapshot();
+        Assert.assertTrue(empty.getElements().isEmpty());
+
+        ServiceRegistration<DemoService> serviceRegistration = serviceRegistry.getService(DemoService.class);
+        Snapshot<ServiceRegistration<?>> snapshot = serviceRegistry.getServicesSnapshot();
+        Assert.assertTrue(snapshot.isNewerThan(empty.getGeneration()));
+        Assert.assertEquals(Collections.singletonList(serviceRegistration), snapshot.getElements());
+        Assert.assertTrue(empty.getElements().isEmpty());
+
+        // Neither lookups of existing services nor bindings change the set of registrations
+        serviceRegistry.getService(DemoService.class);
+        serviceRegistry.setService(DemoService.class, Mockito.mock(DemoService.class));
+        Assert.assertSame(snapshot, serviceRegistry.getServicesSnapshot());
+        Assert.assertSame(snapshot.getElements(), serviceRegistry.getServices());
+    }
+
+    @Test
+    public void testStartInDependencyOrder() throws Throwable {
+        ServiceRegistry serviceRegistry = new DefaultServiceRegistry();
+        List<Class<?>> order = new CopyOnWriteArrayList<>();
+        serviceRegistry.setService(DependentStartable.class, serviceRegistry.instantiate(DependentStartable.class));
+        serviceRegistry.setService(DependencyStartable.class, new DependencyStartable(order));
+
+        serviceRegistry.start();
+
+        Assert.assertEquals(2, order.size());
+        Assert.assertEquals(DependencyStartable.class, order.get(0));
+        Assert.assertEquals(DependentStartable.class, order.get(1));
+    }
+
+    @Test
+    public void testShutdownInReverseDependencyOrder() throws Throwable {
+        ServiceRegistry serviceRegistry = new DefaultServiceRegistry();
+        List<Class<?>> order = new CopyOnWriteArrayList<>();
+        serviceRegistry.setService(DependentStartable.class, serviceRegistry.instantiate(DependentStartable.class));
+        serviceRegistry.setService(DependencyStartable.class, new DependencyStartable(order));
+
+        serviceRegistry.shutdown();
+
+        Assert.assertEquals(2, order.size());
+        Assert.assertEquals(DependentStartable.class, order.get(0));
+        Assert.assertEquals(DependencyStartable.class, order.get(1));
+    }
+
+    @Test
+    public void testLazyServiceRealizedOnce() throws Throwable {
+        ServiceRegistry serviceRegistry = new DefaultServiceRegistry();
+        AtomicInteger invocations = new AtomicInteger();
+        ServiceRegistration<DemoService> serviceRegistration = serviceRegistry.setLazyService(DemoService.class, () -> {
+            invocations.incrementAndGet();
+            return Mockito.mock(DemoService.class);
+        });
+        Assert.assertFalse(serviceRegistration.isRealized());
+
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            List<Future<DemoService>> futures = new ArrayList<>();
+            for (int i = 0; i < 16; i++)
+                futures.add(executor.submit(serviceRegistration::requireInstance));
+            for (Future<DemoService> future : futures)
+                Assert.assertSame(serviceRegistration.getInstance(), future.get());
+        } finally {
+            executor.shutdown();
+        }
+        Assert.assertTrue(serviceRegistration.isRealized());
+        Assert.assertEquals(1, invocations.get());
+    }
+
+    @Test
+    public void testLazyServiceStartedOnRealization() throws Throwable {
+        DefaultServiceRegistry serviceRegistry = new DefaultServiceRegistry();
+        List<Class<?>> order = new CopyOnWriteArrayList<>();
+        ServiceRegistration<DependencyStartable> serviceRegistration = serviceRegistry.setLazyService(DependencyStartable.class, () -> new DependencyStartable(order));
+
+        serviceRegistry.start();
+        Assert.assertFalse(serviceRegistration.isRealized());
+        Assert.assertEquals(Collections.singletonList(serviceRegistration), serviceRegistry.getUnrealizedServices());
+        Assert.assertTrue(order.isEmpty());
+
+        serviceRegistration.requireInstance();
+        Assert.assertEquals(1, order.size());
+        Assert.assertTrue(serviceRegistry.getUnrealizedServices().isEmpty());
+
+        serviceRegistry.shutdown();
+        Assert.assertEquals(2, order.size());
+    }
+
+    @Test
+    public void testLazyServiceStartFailure() throws Throwable {
+        ServiceRegistry serviceRegistry = new DefaultServiceRegistry();
+        DependencyStartable instance = Mockito.mock(DependencyStartable.class);
+        IllegalStateException failure = new IllegalStateException("start");
+        Mockito.doThrow(failure).when(instance).start();
+        AtomicInteger invocations = new AtomicInteger();
+        ServiceRegistration<DependencyStartable> serviceRegistration = serviceRegistry.setLazyService(DependencyStartable.class, () -> {
+            invocations.incrementAndGet();
+            return instance;
+        });
+        serviceRegistry.start();
+
+        try {
+            serviceRegistration.requireInstance();
+            Assert.fail();
+        } catch (IllegalStateException e) {
+            Assert.assertSame(failure, e);
+        }
+        Mockito.verify(instance).shutdown();
+
+        try {
+            serviceRegistration.requireInstance();
+            Assert.fail();
+        } catch (IllegalStateException e) {
+            Assert.assertSame(failure, e.getCause());
+        }
+        Assert.assertEquals(1, invocations.get());
+        Assert.assertFalse(serviceRegistration.isRealized());
+    }
+
+    @Test
+    public void testLazyServiceByClass() throws Throwable {
+        ServiceRegistry serviceRegistry = new DefaultServiceRegistry();
+        ServiceRegistration<DemoClass> serviceRegistration = serviceRegistry.setLazyService(DemoClass.class, DemoClass.class);
+        Assert.assertFalse(serviceRegistration.isRealized());
+        Assert.assertSame(serviceRegistry.getService(DemoService.class), serviceRegistration.requireInstance().demoService);
+    }
+
+    @Test
+    public void testListenersNotifiedInVersionOrder() throws Throwable {
+        ServiceRegistry serviceRegistry = new DefaultServiceRegistry();
+        ServiceRegistration<DemoService> serviceRegistration = serviceRegistry.getService(DemoService.class);
+        Assert.assertEquals(0, serviceRegistration.getVersion());
+
+        List<Long> versions = new CopyOnWriteArrayList<>();
+        ServiceListener<DemoService> listener = (registration, version) -> {
+            Assert.assertSame(serviceRegistration, registration);
+            versions.add(version);
+        };
+        serviceRegistration.addListener(listener);
+
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (int i = 0; i < 100; i++)
+                futures.add(executor.submit(() -> serviceRegistration.setInstance(Mockito.mock(DemoService.class))));
+            for (Future<?> future : futures)
+                future.get();
+        } finally {
+            executor.shutdown();
+        }
+
+        Assert.assertEquals(100, serviceRegistration.getVersion());
+        Assert.assertEquals(100, versions.size());
+        for (int i = 0; i < versions.size(); i++)
+            Assert.assertEquals(i + 1, versions.get(i).longValue());
+
+        serviceRegistration.removeListener(listener);
+        serviceRegistration.setLazyInstance(() -> Mockito.mock(DemoService.class));
+        Assert.assertEquals(101, serviceRegistration.getVersion());
+        Assert.assertEquals(100, versions.size());
+    }
+
+    @Test
+    public void testMultiServiceRanking() {
+        ServiceRegistry serviceRegistry = new DefaultServiceRegistry();
+        MultiServiceRegistration<DemoService> multiService = serviceRegistry.getMultiService(DemoService.class);
+        Assert.assertSame(multiService, serviceRegistry.getMultiService(DemoService.class));
+        Assert.assertTrue(multiService.getInstances().isEmpty());
+
+        DemoService low = Mockito.mock(DemoService.class);
+        DemoService high = Mockito.mock(DemoService.class);
+        DemoService sameRank = Mockito.mock(DemoService.class);
+        multiService.add(low, -10);
+        MultiServiceRegistration.Binding<DemoService> highBinding = multiService.add(high, 10);
+        multiService.add(sameRank);
+        List<DemoService> snapshot = multiService.getInstances();
+        Assert.assertEquals(Arrays.asList(high, sameRank, low), snapshot);
+        Assert.assertEquals(3, multiService.getVersion());
+
+        highBinding.remove();
+        highBinding.remove();
+        Assert.assertEquals(Arrays.asList(sameRank, low), multiService.getInstances());
+        Assert.assertEquals(4, multiService.getVersion());
+        // Snapshots are never modified
+        Assert.assertEquals(Arrays.asList(high, sameRank, low), snapshot);
+    }
+
+    @Test
+    public void testMultiServiceSnapshotIterationDoesNotAllocate() {
+        java.lang.management.ThreadMXBean threadBean = ManagementFactory.getThreadMXBean();
+        Assume.assumeTrue(threadBean instanceof ThreadMXBean && ((ThreadMXBean) threadBean).isThreadAllocatedMemorySupported());
+        ThreadMXBean allocationBean = (ThreadMXBean) threadBean;
+        allocationBean.setThreadAllocatedMemoryEnabled(true);
+
+        ServiceRegistry serviceRegistry = new DefaultServiceRegistry();
+        MultiServiceRegistration<DemoService> multiService = serviceRegistry.getMultiService(DemoService.class);
+        for (int i = 0; i < 3; i++)
+            multiService.add(Mockito.mock(DemoService.class), i);
+        Snapshot<DemoService> snapshot = multiService.getSnapshot();
+        Assert.assertEquals(multiService.getInstances(), snapshot.getElements());
+        Assert.assertEquals(multiService.getVersion(), snapshot.getGeneration());
+
+        long threadId = Thread.currentThread().getId();
+        int iterations = 10_000;
+        long count = iterateSnapshot(multiService, 1);
+        // The measurement itself may allocate, so it is subtracted
+        long start = allocationBean.getThreadAllocatedBytes(threadId);
+        long baseline = allocationBean.getThreadAllocatedBytes(threadId) - start;
+        start = allocationBean.getThreadAllocatedBytes(threadId);
+        count += iterateSnapshot(multiService, iterations);
+        long allocated = allocationBean.getThreadAllocatedBytes(threadId) - start - baseline;
+        Assert.assertEquals(6 * (iterations + 1), count);
+        // An iterator per pass would take at least 16 bytes each
+        Assert.assertTrue("Allocated " + allocated + " bytes", allocated < iterations);
+    }
+
+    private static long iterateSnapshot(MultiServiceRegistration<DemoService> multiService, int iterations) {
+        long count = 0;
+        for (int iteration = 0; iteration < iterations; iteration++) {
+            Snapshot<DemoService> snapshot = multiService.getSnapshot();
+            for (int i = 0; i < snapshot.size(); i++) {
+                if (snapshot.get(i) != null)
+                    count++;
+            }
+            snapshot.forEach(COUNT_INSTANCE);
+        }
+        return count + FOR_EACH_COUNT.getAndSet(0);
+    }
+
+    @Test(expected = UnsupportedOperationException.class)
+    public void testMultiServiceSnapshotImmutable() {
+        ServiceRegistry serviceRegistry = new DefaultServiceRegistry();
+        MultiServiceRegistration<DemoService> multiService = serviceRegistry.getMultiService(DemoService.class);
+        multiService.add(Mockito.mock(DemoService.class));
+        multiService.getInstances().set(0, Mockito.mock(DemoService.class));
+    }
+
     private interface DemoService {
 
         void test();
@@ -74,4 +394,101 @@ public class DefaultServiceRegistryTest {
             demoService.requireInstance().test();
         }
     }
+
+    public static class PublicDemoClass {
+
+        private final ServiceRegistration<DemoService> demoService;
+
+        public PublicDemoClass(ServiceRegistration<DemoService> demoService) {
+            this.demoService = Objects.requireNonNull(demoService, "demoService must not be null");
+        }
+    }
+
+    public static class FailingClass {
+
+        public FailingClass(ServiceRegistration<DemoService> demoService) {
+            throw new IllegalStateException("Constructor failed");
+        }
+    }
+
+    public static class DependencyStartable implements Startable, Shutdownable {
+
+        private final List<Class<?>> order;
+
+        public DependencyStartable(List<Class<?>> order) {
+            this.order = order;
+        }
+
+        @Override
+        public void start() {
+            try {
+                Thread.sleep(50);
+            } catch (InterruptedException ignore) {
+            }
+            order.add(DependencyStartable.class);
+        }
+
+        @Override
+        public void shutdown() {
+            order.add(DependencyStartable.class);
+        }
+    }
+
+    public static class DependentStartable implements Startable, Shutdownable {
+
+        private final ServiceRegistration<DependencyStartable> dependency;
+
+        public DependentStartable(ServiceRegistration<DependencyStartable> dependency) {
+            this.dependency = Objects.requireNonNull(dependency, "dependency must not be null");
+        }
+
+        @Override
+        public void start() {
+            dependency.requireInstance().order.add(DependentStartable.class);
+        }
+
+        @Override
+        public void shutdown() {
+            try {
+                Thread.sleep(50);
+            } catch (InterruptedException ignore) {
+            }
+            dependency.requireInstance().order.add(DependentStartable.class);
+        }
+    }
+
+    /**
+     * Defines a copy of a class, so it is not visible from the class loader of the test.
+     */
+    private static class IsolatingClassLoader extends ClassLoader {
+
+        private final String isolatedClassName;
+
+        private IsolatingClassLoader(ClassLoader parent, String isolatedClassName) {
+            super(parent);
+            this.isolatedClassName = isolatedClassName;
+        }
+
+        @Override
+        protected Class<?> loadClass(String name, boolean resolve) throws ClassNotFoundException {
+            if (!name.equals(isolatedClassName))
+                return super.loadClass(name, resolve);
+            synchronized (getClassLoadingLock(name)) {
+                Class<?> aClass = findLoadedClass(name);
+                if (aClass != null)
+                    return aClass;
+                try (InputStream in = getParent().getResourceAsStream(name.replace('.', '/') + ".class")) {
+                    ByteArrayOutputStream out = new ByteArrayOutputStream();
+                    byte[] buffer = new byte[4096];
+                    int read;
+                    while ((read = in.read(buffer)) != -1)
+                        out.write(buffer, 0, read);
+                    byte[] bytecode = out.toByteArray();
+                    return defineClass(name, bytecode, 0, bytecode.length);
+                } catch (IOException e) {
+                    throw new ClassNotFoundException(name, e);
+                }
+            }
+        }
+    }
 }
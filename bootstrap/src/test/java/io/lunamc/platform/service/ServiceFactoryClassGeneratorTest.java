@@ -0,0 +1,187 @@
+/*
+ *  Copyright 2017 LunaMC.io
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package io.lunamc.platform.service;
+
+import org.junit.Assert;
+import org.junit.Assume;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import javax.tools.JavaCompiler;
+import javax.tools.ToolProvider;
+import java.io.File;
+import java.lang.reflect.Constructor;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.Supplier;
+
+public class ServiceFactoryClassGeneratorTest {
+
+    @Rule
+    public final TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    @Test
+    public void testPrimitiveParameters() throws Throwable {
+        Constructor<Primitives> constructor = Primitives.class.getConstructor(boolean.class, byte.class, char.class, short.class, int.class, long.class, float.class, double.class);
+        Object[] arguments = { true, (byte) 1, 'c', (short) 2, 3, 4L, 5F, 6D };
+        Primitives instance = generate(constructor, arguments).get();
+        Assert.assertEquals(Arrays.asList(arguments), instance.values);
+    }
+
+    @Test
+    public void testWideParametersBetweenReferences() throws Throwable {
+        Constructor<Wide> constructor = Wide.class.getConstructor(long.class, String.class, double.class, Object.class, long.class);
+        Wide instance = generate(constructor, new Object[] { Long.MAX_VALUE, "a", Double.MIN_VALUE, null, -1L }).get();
+        Assert.assertEquals(Arrays.asList(Long.MAX_VALUE, "a", Double.MIN_VALUE, null, -1L), instance.values);
+    }
+
+    @Test
+    public void testArrayParameters() throws Throwable {
+        Constructor<ArrayParameters> constructor = ArrayParameters.class.getConstructor(String[].class, int[].class, Object[][].class);
+        String[] strings = { "a" };
+        int[] ints = { 1 };
+        Object[][] objects = { { "b" } };
+        ArrayParameters instance = generate(constructor, new Object[] { strings, ints, objects }).get();
+        Assert.assertSame(strings, instance.strings);
+        Assert.assertSame(ints, instance.ints);
+        Assert.assertSame(objects, instance.objects);
+    }
+
+    @Test
+    public void testArgumentsNeedingReflection() throws Throwable {
+        Constructor<Wide> constructor = Wide.class.getConstructor(long.class, String.class, double.class, Object.class, long.class);
+        // Widening and null for primitives are left to reflection
+        Assert.assertNull(ServiceFactoryClassGenerator.generate(constructor, new Object[] { 1, "a", 1D, null, 1L }));
+        Assert.assertNull(ServiceFactoryClassGenerator.generate(constructor, new Object[] { null, "a", 1D, null, 1L }));
+        Assert.assertNull(ServiceFactoryClassGenerator.generate(constructor, new Object[] { 1L, 1, 1D, null, 1L }));
+        Assert.assertNull(ServiceFactoryClassGenerator.generate(constructor, new Object[] { 1L, "a", 1D }));
+
+        CompiledServiceFactory<Wide> factory = new CompiledServiceFactory<>(constructor, new Object[] { 1, "a", 1F, null, 1L });
+        Assert.assertFalse(factory.isGenerated());
+        Assert.assertEquals(Arrays.asList(1L, "a", 1D, null, 1L), factory.newInstance().values);
+    }
+
+    @Test
+    public void testNonPublicConstructor() throws Throwable {
+        Assert.assertNull(ServiceFactoryClassGenerator.generate(Hidden.class.getDeclaredConstructor(), new Object[0]));
+    }
+
+    @Test
+    public void testMaximumReferenceParameters() throws Throwable {
+        // The receiver takes one of the 255 parameter slots
+        int count = 254;
+        Class<?>[] parameterTypes = new Class<?>[count];
+        Object[] arguments = new Object[count];
+        for (int i = 0; i < count; i++) {
+            parameterTypes[i] = Object.class;
+            arguments[i] = i;
+        }
+        Object[] values = (Object[]) newInstance(compileParameters("Object", count), parameterTypes, arguments);
+        Assert.assertArrayEquals(arguments, values);
+    }
+
+    @Test
+    public void testMaximumWideParameters() throws Throwable {
+        int count = 127;
+        Class<?>[] parameterTypes = new Class<?>[count];
+        Object[] arguments = new Object[count];
+        for (int i = 0; i < count; i++) {
+            parameterTypes[i] = long.class;
+            arguments[i] = (long) i << 32;
+        }
+        Object[] values = (Object[]) newInstance(compileParameters("long", count), parameterTypes, arguments);
+        Assert.assertArrayEquals(arguments, values);
+    }
+
+    private Object newInstance(Class<?> aClass, Class<?>[] parameterTypes, Object[] arguments) throws Throwable {
+        Supplier<?> supplier = generate(aClass.getConstructor(parameterTypes), arguments);
+        return aClass.getField("values").get(supplier.get());
+    }
+
+    private Class<?> compileParameters(String type, int count) throws Exception {
+        JavaCompiler compiler = ToolProvider.getSystemJavaCompiler();
+        Assume.assumeNotNull(compiler);
+
+        StringBuilder parameters = new StringBuilder();
+        StringBuilder values = new StringBuilder();
+        for (int i = 0; i < count; i++) {
+            if (i > 0) {
+                parameters.append(", ");
+                values.append(", ");
+            }
+            parameters.append(type).append(" p").append(i);
+            values.append('p').append(i);
+        }
+        File directory = temporaryFolder.newFolder();
+        File source = new File(directory, "Parameters.java");
+        String content = "public class Parameters {\n" +
+                "    public final Object[] values;\n" +
+                "    public Parameters(" + parameters + ") { values = new Object[] { " + values + " }; }\n" +
+                "}\n";
+        Files.write(source.toPath(), content.getBytes(StandardCharsets.UTF_8));
+        Assert.assertEquals(0, compiler.run(null, null, null, "-d", directory.getPath(), source.getPath()));
+        return new URLClassLoader(new URL[] { directory.toURI().toURL() }, getClass().getClassLoader()).loadClass("Parameters");
+    }
+
+    private static <T> Supplier<T> generate(Constructor<T> constructor, Object[] arguments) throws ReflectiveOperationException {
+        Supplier<T> supplier = ServiceFactoryClassGenerator.generate(constructor, arguments);
+        Assert.assertNotNull(supplier);
+        return supplier;
+    }
+
+    public static class Primitives {
+
+        private final List<Object> values;
+
+        public Primitives(boolean z, byte b, char c, short s, int i, long j, float f, double d) {
+            values = Arrays.asList(z, b, c, s, i, j, f, d);
+        }
+    }
+
+    public static class Wide {
+
+        private final List<Object> values;
+
+        public Wide(long first, String second, double third, Object fourth, long fifth) {
+            values = Arrays.asList(first, second, third, fourth, fifth);
+        }
+    }
+
+    public static class ArrayParameters {
+
+        private final String[] strings;
+        private final int[] ints;
+        private final Object[][] objects;
+
+        public ArrayParameters(String[] strings, int[] ints, Object[][] objects) {
+            this.strings = strings;
+            this.ints = ints;
+            this.objects = objects;
+        }
+    }
+
+    public static class Hidden {
+
+        Hidden() {
+        }
+    }
+}
@@ -0,0 +1,92 @@
+/*
+ *  Copyright 2017 LunaMC.io
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package io.lunamc.platform.utils;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.lang.ref.WeakReference;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+public class ClassLoaderLeakDetectorTest {
+
+    @Test
+    public void testFindRetentionPaths() {
+        ClassLoader classLoader = new URLClassLoader(new URL[0], null);
+        List<Object> list = new ArrayList<>();
+        list.add("unrelated");
+        list.add(new Holder(classLoader));
+        Map<String, Object> roots = new HashMap<>();
+        roots.put("root", list);
+        roots.put("weak", new WeakReference<>(classLoader));
+
+        List<String> paths = ClassLoaderLeakDetector.findRetentionPaths(classLoader, roots, 5);
+        if (isAccessible(ArrayList.class, "elementData")) {
+            Assert.assertEquals(Collections.singletonList(
+                    "root -> java.util.ArrayList.elementData -> [Ljava.lang.Object;.[1] -> " + Holder.class.getName() + ".value -> the class loader"
+            ), paths);
+        } else {
+            // Java 9 and later without java.util opened, paths through the list are not visible
+            Assert.assertEquals(Collections.emptyList(), paths);
+        }
+    }
+
+    @Test
+    public void testFindRetentionPathsThroughOwnClasses() {
+        ClassLoader classLoader = new URLClassLoader(new URL[0], null);
+        Map<String, Object> roots = new HashMap<>();
+        roots.put("root", new Holder(new Holder(classLoader)));
+
+        List<String> paths = ClassLoaderLeakDetector.findRetentionPaths(classLoader, roots, 5);
+        Assert.assertEquals(Collections.singletonList(
+                "root -> " + Holder.class.getName() + ".value -> " + Holder.class.getName() + ".value -> the class loader"
+        ), paths);
+    }
+
+    @Test
+    public void testAwaitCollection() throws Throwable {
+        WeakReference<Object> reference = new WeakReference<>(new Object());
+        Assert.assertTrue(ClassLoaderLeakDetector.awaitCollection(Collections.singletonList(reference), 10_000));
+        Object retained = new Object();
+        Assert.assertFalse(ClassLoaderLeakDetector.awaitCollection(Collections.singletonList(new WeakReference<>(retained)), 100));
+        Assert.assertNotNull(retained);
+    }
+
+    private static boolean isAccessible(Class<?> aClass, String fieldName) {
+        try {
+            aClass.getDeclaredField(fieldName).setAccessible(true);
+            return true;
+        } catch (ReflectiveOperationException | RuntimeException e) {
+            return false;
+        }
+    }
+
+    private static class Holder {
+
+        private final Object value;
+
+        private Holder(Object value) {
+            this.value = value;
+        }
+    }
+}
@@ -0,0 +1,99 @@
+/*
+ *  Copyright 2017 LunaMC.io
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package io.lunamc.platform.utils;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+public class DependencyGraphTest {
+
+    @Test
+    public void testLayers() {
+        DependencyGraph<String> graph = new DependencyGraph<>();
+        graph.addDependency("b", "a");
+        graph.addDependency("c", "a");
+        graph.addDependency("d", "b");
+        graph.addDependency("d", "c");
+        graph.addNode("e");
+
+        List<List<String>> layers = graph.getLayers();
+        Assert.assertEquals(3, layers.size());
+        Assert.assertEquals(Arrays.asList("a", "e"), layers.get(0));
+        Assert.assertEquals(Arrays.asList("b", "c"), layers.get(1));
+        Assert.assertEquals(Collections.singletonList("d"), layers.get(2));
+    }
+
+    @Test
+    public void testFindCycle() {
+        DependencyGraph<String> graph = new DependencyGraph<>();
+        graph.addDependency("a", "b");
+        graph.addDependency("b", "c");
+        Assert.assertTrue(graph.findCycle().isEmpty());
+
+        graph.addDependency("c", "a");
+        Assert.assertEquals(Arrays.asList("a", "b", "c"), graph.findCycle());
+    }
+
+    @Test(expected = CyclicDependencyException.class)
+    public void testLayersWithCycle() {
+        DependencyGraph<String> graph = new DependencyGraph<>();
+        graph.addDependency("a", "b");
+        graph.addDependency("b", "a");
+        graph.getLayers();
+    }
+
+    @Test
+    public void testSchedule() {
+        DependencyGraph<String> graph = new DependencyGraph<>();
+        graph.addDependency("b", "a");
+        graph.addDependency("c", "b");
+
+        List<String> order = new CopyOnWriteArrayList<>();
+        Map<String, CompletableFuture<Void>> futures = graph.schedule(node -> CompletableFuture.runAsync(() -> order.add(node)), false);
+        CompletableFuture.allOf(futures.values().toArray(new CompletableFuture[futures.size()])).join();
+        Assert.assertEquals(Arrays.asList("a", "b", "c"), order);
+
+        order.clear();
+        futures = graph.schedule(node -> CompletableFuture.runAsync(() -> order.add(node)), true);
+        CompletableFuture.allOf(futures.values().toArray(new CompletableFuture[futures.size()])).join();
+        Assert.assertEquals(Arrays.asList("c", "b", "a"), order);
+    }
+
+    @Test
+    public void testCriticalPath() {
+        DependencyGraph<String> graph = new DependencyGraph<>();
+        graph.addDependency("b", "a");
+        graph.addDependency("c", "a");
+        graph.addDependency("d", "b");
+        graph.addDependency("d", "c");
+
+        Map<String, Long> weights = new HashMap<>();
+        weights.put("a", 1L);
+        weights.put("b", 10L);
+        weights.put("c", 2L);
+        weights.put("d", 1L);
+        Assert.assertEquals(Arrays.asList("a", "b", "d"), graph.getCriticalPath(weights::get));
+    }
+}
@@ -0,0 +1,113 @@
+/*
+ *  Copyright 2017 LunaMC.io
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package io.lunamc.platform.utils;
+
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.StringWriter;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Arrays;
+
+public class StartupTracerTest {
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    @Test
+    public void testRecording() throws Throwable {
+        File file = new File(temporaryFolder.getRoot(), "trace/startup.json");
+        StartupTracer.startRecording();
+        try (StartupTracer.Span ignored = StartupTracer.span("phase", "outer")) {
+            Thread thread = new Thread(() -> {
+                try (StartupTracer.Span ignored1 = StartupTracer.span("plugin", "inner \"quoted\"")) {
+                    Thread.yield();
+                }
+            }, "tracer-test");
+            thread.start();
+            thread.join();
+        }
+        StartupTracer.stopRecording(file);
+        Assert.assertFalse(StartupTracer.isRecording());
+
+        String trace = new String(Files.readAllBytes(file.toPath()), StandardCharsets.UTF_8);
+        Assert.assertTrue(trace.startsWith("{\"displayTimeUnit\":\"ms\",\"traceEvents\":["));
+        Assert.assertTrue(trace.contains("\"name\":\"thread_name\",\"args\":{\"name\":\"tracer-test\"}"));
+        Assert.assertTrue(trace.contains("\"cat\":\"phase\",\"name\":\"outer\""));
+        Assert.assertTrue(trace.contains("\"cat\":\"plugin\",\"name\":\"inner \\\"quoted\\\"\""));
+        Assert.assertTrue(trace.indexOf("\"outer\"") < trace.indexOf("\"inner"));
+    }
+
+    @Test
+    public void testNotRecording() throws Throwable {
+        File file = new File(temporaryFolder.getRoot(), "startup.json");
+        try (StartupTracer.Span ignored = StartupTracer.span("phase", "ignored")) {
+            Assert.assertFalse(StartupTracer.isRecording());
+        }
+        StartupTracer.stopRecording(file);
+        Assert.assertFalse(file.exists());
+    }
+
+    @Test
+    public void testSpanClosedByOtherThread() throws Throwable {
+        File file = new File(temporaryFolder.getRoot(), "startup.json");
+        StartupTracer.startRecording();
+        StartupTracer.Span span = StartupTracer.span("plugin", "enable", "test");
+        Thread thread = new Thread(span::close, "tracer-closer");
+        thread.start();
+        thread.join();
+        StartupTracer.stopRecording(file);
+
+        String trace = new String(Files.readAllBytes(file.toPath()), StandardCharsets.UTF_8);
+        Assert.assertTrue(trace.contains("\"tid\":" + Thread.currentThread().getId() + ",\"cat\":\"plugin\",\"name\":\"enable test\""));
+        Assert.assertFalse(trace.contains("tracer-closer"));
+    }
+
+    @Test
+    public void testNameNotBuiltWhenNotRecording() {
+        Object subject = new Object() {
+            @Override
+            public String toString() {
+                throw new AssertionError("Span name built while not recording");
+            }
+        };
+        try (StartupTracer.Span ignored = StartupTracer.span("service", "start", subject)) {
+            Assert.assertFalse(StartupTracer.isRecording());
+        }
+    }
+
+    @Test
+    public void testWrite() throws Throwable {
+        StringWriter writer = new StringWriter();
+        StartupTracer.write(Arrays.asList(
+                new StartupTracer.Event("service", "start b", 2, "main", 5_000, 1_000),
+                new StartupTracer.Event("service", "start a", 2, "main", 1_000, 2_000)
+        ), writer);
+        Assert.assertEquals(
+                "{\"displayTimeUnit\":\"ms\",\"traceEvents\":[\n" +
+                "{\"ph\":\"M\",\"pid\":1,\"tid\":2,\"name\":\"thread_name\",\"args\":{\"name\":\"main\"}},\n" +
+                "{\"ph\":\"X\",\"pid\":1,\"tid\":2,\"cat\":\"service\",\"name\":\"start a\",\"ts\":1,\"dur\":2},\n" +
+                "{\"ph\":\"X\",\"pid\":1,\"tid\":2,\"cat\":\"service\",\"name\":\"start b\",\"ts\":5,\"dur\":1}\n" +
+                "]}\n",
+                writer.toString()
+        );
+    }
+}